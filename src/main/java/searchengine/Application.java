@@ -4,10 +4,20 @@ import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.context.annotation.ComponentScan;
 
+import java.security.Security;
+
 @SpringBootApplication
 @ComponentScan(basePackages = "searchengine")
 public class Application {
+    /** Crawling sends many requests to few hosts; the JDK default caches addresses for 30 seconds. */
+    private static final String DNS_CACHE_SECONDS = "300";
+
     public static void main(String[] args) {
+        // must be set before the first lookup; an explicit setting of either property wins
+        if (Security.getProperty("networkaddress.cache.ttl") == null
+                && System.getProperty("sun.net.inetaddr.ttl") == null) {
+            Security.setProperty("networkaddress.cache.ttl", DNS_CACHE_SECONDS);
+        }
         SpringApplication.run(Application.class, args);
     }
 }
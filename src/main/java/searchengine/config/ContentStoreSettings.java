@@ -0,0 +1,21 @@
+package searchengine.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "indexing-settings.content-store")
+public class ContentStoreSettings {
+    private ContentStoreType type = ContentStoreType.INLINE;
+    private int compressionLevel = 6;
+    /** Optional file with a deflate dictionary built from typical pages; a built-in HTML dictionary is used otherwise. */
+    private String dictionaryFile;
+
+    public enum ContentStoreType {
+        INLINE, COMPRESSED
+    }
+}
@@ -0,0 +1,103 @@
+package searchengine.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "indexing-settings.crawler")
+public class CrawlerSettings {
+    private VisitedSet visitedSet = new VisitedSet();
+    private Fetch fetch = new Fetch();
+    private NearDuplicates nearDuplicates = new NearDuplicates();
+    private Sitemaps sitemaps = new Sitemaps();
+    private Urls urls = new Urls();
+    private Budget budget = new Budget();
+
+    @Getter
+    @Setter
+    public static class VisitedSet {
+        private VisitedSetType type = VisitedSetType.FINGERPRINT;
+        private int expectedUrls = 100_000;
+        private double falsePositiveRate = 0.001;
+        /** Directory for memory-mapped Bloom filter slices; empty keeps everything on the heap. */
+        private String spillDirectory;
+        /** Slices larger than this are memory-mapped from spillDirectory instead of allocated on the heap. */
+        private long maxHeapBytes = 64L * 1024 * 1024;
+    }
+
+    @Getter
+    @Setter
+    public static class Fetch {
+        private int connectTimeoutMillis = 5_000;
+        /** Time to wait for the response headers. */
+        private int timeoutMillis = 10_000;
+        /** Time to read the whole body once the headers arrived, so a trickling server cannot hold a worker. */
+        private int readTimeoutMillis = 30_000;
+        /** Use HTTP/2 where the server offers it, HTTP/1.1 otherwise. */
+        private boolean http2 = true;
+        /** Bodies are cut at this many bytes; responses announcing a larger Content-Length are skipped. */
+        private int maxBodySize = 5 * 1024 * 1024;
+        private List<String> allowedContentTypes = List.of("text/html", "application/xhtml+xml");
+    }
+
+    @Getter
+    @Setter
+    public static class NearDuplicates {
+        private boolean enabled = true;
+        /** Pages whose SimHash differs from an indexed page of the same site in at most this many bits are duplicates. */
+        private int maxHammingDistance = 3;
+        private int shingleSize = 3;
+        /** Shorter texts get no fingerprint, their SimHash is too unstable. */
+        private int minWords = 50;
+    }
+
+    @Getter
+    @Setter
+    public static class Sitemaps {
+        /** Seed the crawl with the sitemaps listed in robots.txt, or /sitemap.xml when there are none. */
+        private boolean enabled = true;
+        /** Sitemap entries taken per site; the rest is left to link discovery. */
+        private int maxUrls = 100_000;
+        /** Sitemap and sitemap index files read per site. */
+        private int maxFiles = 50;
+        /** Entries whose lastmod is older than this are not seeded; 0 seeds all of them. */
+        private int maxAgeDays = 0;
+    }
+
+    @Getter
+    @Setter
+    public static class Urls {
+        /** Treat www.site.ru and site.ru as one host. */
+        private boolean ignoreWww = true;
+        /**
+         * Opt-in allowlist of the query parameters kept in page addresses; empty keeps all that are
+         * not denied. A trailing * matches a prefix.
+         */
+        private List<String> allowedQueryParameters = List.of();
+        /** Tracking and session parameters dropped from page addresses. */
+        private List<String> deniedQueryParameters = List.of("utm_*", "fbclid", "gclid", "yclid", "msclkid",
+                "sessionid", "sid", "phpsessid", "jsessionid");
+        /** Store a page under the address of its rel=canonical link when that belongs to the site. */
+        private boolean followCanonical = true;
+    }
+
+    /** Default crawl limits per site; 0 means no limit. */
+    @Getter
+    @Setter
+    public static class Budget {
+        private int maxPages = 0;
+        /** Sum of the page sizes. */
+        private long maxBytes = 0;
+        private int maxDurationMinutes = 0;
+    }
+
+    public enum VisitedSetType {
+        EXACT, FINGERPRINT, BLOOM
+    }
+}
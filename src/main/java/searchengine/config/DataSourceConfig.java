@@ -0,0 +1,55 @@
+package searchengine.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.Map;
+
+/**
+ * Separate connection pools for indexing writes and search reads, so a running crawl cannot
+ * exhaust the connections interactive queries need. The lazy proxy defers picking a pool until
+ * the first statement, after the route of the thread is known.
+ */
+@Configuration
+public class DataSourceConfig {
+
+    @Bean(destroyMethod = "close")
+    public HikariDataSource writeDataSource(DataSourceProperties properties, DatabaseSettings settings) {
+        return createPool(properties, settings.getWrite(), "write");
+    }
+
+    @Bean(destroyMethod = "close")
+    public HikariDataSource readDataSource(DataSourceProperties properties, DatabaseSettings settings) {
+        return createPool(properties, settings.getRead(), "read");
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(HikariDataSource writeDataSource, HikariDataSource readDataSource) {
+        RoutingDataSource routingDataSource = new RoutingDataSource();
+        routingDataSource.setTargetDataSources(Map.of(
+                RoutingDataSource.Route.WRITE, writeDataSource,
+                RoutingDataSource.Route.READ, readDataSource));
+        routingDataSource.setDefaultTargetDataSource(writeDataSource);
+        routingDataSource.afterPropertiesSet();
+        return new LazyConnectionDataSourceProxy(routingDataSource);
+    }
+
+    private HikariDataSource createPool(DataSourceProperties properties, DatabaseSettings.Pool pool, String name) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        if (pool.getUrl() != null && !pool.getUrl().isBlank()) {
+            dataSource.setJdbcUrl(pool.getUrl());
+            dataSource.setUsername(pool.getUsername());
+            dataSource.setPassword(pool.getPassword());
+        }
+        dataSource.setPoolName(name);
+        dataSource.setMaximumPoolSize(pool.getMaximumPoolSize());
+        dataSource.setConnectionTimeout(pool.getConnectionTimeoutMillis());
+        return dataSource;
+    }
+}
@@ -0,0 +1,35 @@
+package searchengine.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "database-settings")
+public class DatabaseSettings {
+    private Pool write = new Pool(6);
+    private Pool read = new Pool(10);
+    /** Indexing threads allowed to write at the same time. */
+    private int indexingWritePermits = 2;
+
+    @Getter
+    @Setter
+    public static class Pool {
+        private int maximumPoolSize;
+        private long connectionTimeoutMillis = 30_000;
+        /** Overrides spring.datasource for this pool, e.g. a read replica; empty means the primary. */
+        private String url;
+        private String username;
+        private String password;
+
+        public Pool() {
+        }
+
+        Pool(int maximumPoolSize) {
+            this.maximumPoolSize = maximumPoolSize;
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package searchengine.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "indexing-settings.ingestion")
+public class IngestionSettings {
+    private int workers = 2;
+    /** Pages written in one transaction. */
+    private int batchSize = 50;
+    /** How long a worker waits for a batch to fill up after its first page. */
+    private long lingerMillis = 200;
+    /** Pages waiting in the queue; further requests are refused. */
+    private int capacity = 10_000;
+    /** Finished jobs kept for status requests. */
+    private int retainedJobs = 10_000;
+}
@@ -0,0 +1,22 @@
+package searchengine.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "indexing-settings.link-rank")
+public class LinkRankSettings {
+    private boolean enabled = true;
+    /** Static scores of indexed sites are recomputed this often. */
+    private long intervalMinutes = 60;
+    private double damping = 0.85;
+    private int maxIterations = 50;
+    /** Iteration stops once the scores change by less than this in total. */
+    private double tolerance = 1e-6;
+    /** Threads of one computation; 0 uses all processors. */
+    private int threads = 0;
+}
@@ -0,0 +1,25 @@
+package searchengine.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+import searchengine.repository.IndexRepository;
+import searchengine.services.storage.JdbcPostingStore;
+import searchengine.services.storage.MvPostingStore;
+import searchengine.services.storage.PostingStore;
+
+@Configuration
+public class PostingStoreConfig {
+
+    @Bean(destroyMethod = "close")
+    public PostingStore postingStore(PostingStoreSettings settings, IndexRepository indexRepository,
+                                     JdbcTemplate jdbcTemplate) {
+        switch (settings.getType()) {
+            case MVSTORE:
+                return new MvPostingStore(settings);
+            case JDBC:
+            default:
+                return new JdbcPostingStore(indexRepository, jdbcTemplate);
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package searchengine.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "indexing-settings.posting-store")
+public class PostingStoreSettings {
+    private PostingStoreType type = PostingStoreType.JDBC;
+    /** File of the MVSTORE store, created on first start. */
+    private String file = "./data/postings.mv";
+    private int cacheSizeMb = 64;
+
+    public enum PostingStoreType {
+        /** The search_index table, in the same database and transactions as pages and lemmas. */
+        JDBC,
+        /** A local key-value file of H2 MVStore, read and written without JDBC or Hibernate. */
+        MVSTORE
+    }
+}
@@ -0,0 +1,19 @@
+package searchengine.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "indexing-settings.progress")
+public class ProgressSettings {
+    /** How often rates are recomputed and progress is pushed to subscribers. */
+    private long publishIntervalMillis = 1000;
+    /** How often status_time and last_error of sites being indexed are written to the database. */
+    private long persistIntervalMillis = 10_000;
+    /** Subscriptions are closed after this long; the browser reconnects on its own. */
+    private long streamTimeoutMillis = 30 * 60 * 1000;
+}
@@ -0,0 +1,27 @@
+package searchengine.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "indexing-settings.recrawl")
+public class RecrawlSettings {
+    private boolean enabled = true;
+    /** Re-fetches of all sites together; unused budget of quiet hours is not saved up. */
+    private int fetchesPerHour = 600;
+    private int tickSeconds = 60;
+    /** Revisit interval of a page seen once. */
+    private long initialIntervalMinutes = 24 * 60;
+    private long minIntervalMinutes = 60;
+    private long maxIntervalMinutes = 30 * 24 * 60;
+    /** Visits planned per expected change; above 1 catches changes sooner at the cost of more fetches. */
+    private double visitsPerChange = 1.0;
+    /** An address whose re-fetch failed this many times in a row is no longer re-crawled. */
+    private int maxFailures = 5;
+    /** Fetches buffered in memory before they are written to the history in one batch. */
+    private int historyBatchSize = 500;
+}
@@ -0,0 +1,36 @@
+package searchengine.config;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+import java.util.function.Supplier;
+
+/**
+ * Sends connections of code wrapped in {@link #read} to the read pool and everything else to
+ * the write pool. The route is bound to the thread explicitly rather than derived from
+ * read-only transactions, so indexing never reads its own writes from a lagging replica.
+ */
+public class RoutingDataSource extends AbstractRoutingDataSource {
+    public enum Route { WRITE, READ }
+
+    private static final ThreadLocal<Route> CURRENT_ROUTE = new ThreadLocal<>();
+
+    public static <T> T read(Supplier<T> action) {
+        Route previous = CURRENT_ROUTE.get();
+        CURRENT_ROUTE.set(Route.READ);
+        try {
+            return action.get();
+        } finally {
+            if (previous == null) {
+                CURRENT_ROUTE.remove();
+            } else {
+                CURRENT_ROUTE.set(previous);
+            }
+        }
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        Route route = CURRENT_ROUTE.get();
+        return route != null ? route : Route.WRITE;
+    }
+}
@@ -0,0 +1,19 @@
+package searchengine.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "indexing-settings.scheduler")
+public class SchedulerSettings {
+    /** Sites crawled at the same time; the rest wait in the queue. */
+    private int maxConcurrentSites = 2;
+    /** Pages a site crawls before its thread goes back to the scheduler, which may then run another site. */
+    private int slicePages = 20;
+    /** Priority of jobs started without one; higher runs first. */
+    private int defaultPriority = 0;
+}
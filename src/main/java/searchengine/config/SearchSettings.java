@@ -0,0 +1,54 @@
+package searchengine.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "search-settings")
+public class SearchSettings {
+    private Fuzzy fuzzy = new Fuzzy();
+    /** Threads loading pages and building snippets of the returned results. */
+    private int resultThreads = 4;
+    /** Searches taking at least this long are written to the slow query log. */
+    private long slowQueryMillis = 1000;
+    /** Larger result page sizes are reduced to this. */
+    private int maxLimit = 50;
+    private Admission admission = new Admission();
+    /** Share of the link-based static score of a page in its result score; the rest is text relevance. */
+    private float staticScoreWeight = 0.2f;
+    /** Postings of each query lemma read by rank in the first round of top-k selection; every round reads twice as many. */
+    private int impactBlockSize = 1000;
+
+    @Getter
+    @Setter
+    public static class Fuzzy {
+        private boolean enabled = true;
+        private int maxDistance = 2;
+        /** Shorter terms are matched exactly only. */
+        private int minLengthForOneEdit = 4;
+        private int minLengthForTwoEdits = 7;
+        private int maxExpansions = 3;
+    }
+
+    @Getter
+    @Setter
+    public static class Admission {
+        private boolean enabled = true;
+        private int initialConcurrency = 8;
+        private int minConcurrency = 2;
+        private int maxConcurrency = 32;
+        /** Completions slower than this shrink the concurrency limit. */
+        private long targetLatencyMillis = 500;
+        private double backoffRatio = 0.9;
+        /** Part of the limit heavy queries may occupy; the rest is kept for cheap ones. */
+        private double heavyShare = 0.75;
+        /** Queries whose terms have more postings than this in total are heavy. */
+        private long heavyQueryPostings = 20_000;
+        private int maxQueueLength = 50;
+        private long queueTimeoutMillis = 2000;
+    }
+}
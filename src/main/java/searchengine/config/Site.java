@@ -8,4 +8,8 @@ import lombok.Setter;
 public class Site {
     private String url;
     private String name;
+    /** Crawl budget of this site; unset takes indexing-settings.crawler.budget. */
+    private Integer maxPages;
+    private Long maxBytes;
+    private Integer maxDurationMinutes;
 }
@@ -1,13 +1,28 @@
 package searchengine.controllers;
 
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import searchengine.dto.indexing.IndexPageStatusResponse;
+import searchengine.dto.indexing.IndexingJobsResponse;
 import searchengine.dto.indexing.IndexingResponse;
 import searchengine.dto.search.SearchResponse;
+import searchengine.dto.snapshot.SnapshotResponse;
 import searchengine.dto.statistics.StatisticsResponse;
+import searchengine.dto.suggest.SuggestResponse;
 import searchengine.services.IndexingService;
+import searchengine.services.SearchOverloadedException;
 import searchengine.services.SearchService;
+import searchengine.services.SnapshotService;
 import searchengine.services.StatisticsService;
+import searchengine.services.SuggestService;
+import searchengine.services.progress.CrawlProgressTracker;
+
+import java.io.InputStream;
 
 @RestController
 @RequestMapping("/api")
@@ -16,13 +31,22 @@ public class ApiController {
     private final StatisticsService statisticsService;
     private final IndexingService indexingService;
     private final SearchService searchService;
+    private final SuggestService suggestService;
+    private final SnapshotService snapshotService;
+    private final CrawlProgressTracker crawlProgressTracker;
 
     public ApiController(StatisticsService statisticsService, 
                         IndexingService indexingService,
-                        SearchService searchService) {
+                        SearchService searchService,
+                        SuggestService suggestService,
+                        SnapshotService snapshotService,
+                        CrawlProgressTracker crawlProgressTracker) {
         this.statisticsService = statisticsService;
         this.indexingService = indexingService;
         this.searchService = searchService;
+        this.suggestService = suggestService;
+        this.snapshotService = snapshotService;
+        this.crawlProgressTracker = crawlProgressTracker;
     }
 
     @GetMapping("/statistics")
@@ -31,13 +55,36 @@ public class ApiController {
     }
 
     @GetMapping("/startIndexing")
-    public ResponseEntity<IndexingResponse> startIndexing() {
-        return ResponseEntity.ok(indexingService.startIndexing());
+    public ResponseEntity<IndexingResponse> startIndexing(
+            @RequestParam(required = false) String site,
+            @RequestParam(required = false) Integer priority) {
+        if (site == null) {
+            return ResponseEntity.ok(indexingService.startIndexing());
+        }
+        return ResponseEntity.ok(indexingService.startIndexing(site, priority));
+    }
+
+    @GetMapping("/indexing/jobs")
+    public ResponseEntity<IndexingJobsResponse> indexingJobs() {
+        return ResponseEntity.ok(indexingService.getIndexingJobs());
+    }
+
+    @PostMapping("/indexing/priority")
+    public ResponseEntity<IndexingResponse> indexingPriority(@RequestParam String site, @RequestParam int priority) {
+        return ResponseEntity.ok(indexingService.setIndexingPriority(site, priority));
+    }
+
+    @GetMapping(value = "/indexing/progress", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter indexingProgress() {
+        return crawlProgressTracker.subscribe();
     }
 
     @GetMapping("/stopIndexing")
-    public ResponseEntity<IndexingResponse> stopIndexing() {
-        return ResponseEntity.ok(indexingService.stopIndexing());
+    public ResponseEntity<IndexingResponse> stopIndexing(@RequestParam(required = false) String site) {
+        if (site == null) {
+            return ResponseEntity.ok(indexingService.stopIndexing());
+        }
+        return ResponseEntity.ok(indexingService.stopIndexing(site));
     }
 
     @PostMapping("/indexPage")
@@ -45,12 +92,54 @@ public class ApiController {
         return ResponseEntity.ok(indexingService.indexPage(url));
     }
 
+    @GetMapping("/indexPage/status")
+    public ResponseEntity<IndexPageStatusResponse> indexPageStatus(@RequestParam String jobId) {
+        return ResponseEntity.ok(indexingService.getIndexPageStatus(jobId));
+    }
+
     @GetMapping("/search")
     public ResponseEntity<SearchResponse> search(
             @RequestParam String query,
             @RequestParam(required = false) String site,
             @RequestParam(defaultValue = "0") int offset,
-            @RequestParam(defaultValue = "20") int limit) {
-        return ResponseEntity.ok(searchService.search(query, site, offset, limit));
+            @RequestParam(defaultValue = "20") int limit,
+            @RequestParam(defaultValue = "false") boolean debug) {
+        try {
+            return ResponseEntity.ok(searchService.search(query, site, offset, limit, debug));
+        } catch (SearchOverloadedException e) {
+            SearchResponse response = new SearchResponse();
+            response.setError(e.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                    .body(response);
+        }
+    }
+
+    @GetMapping("/suggest")
+    public ResponseEntity<SuggestResponse> suggest(
+            @RequestParam String query,
+            @RequestParam(required = false) String site,
+            @RequestParam(defaultValue = "10") int limit) {
+        return ResponseEntity.ok(suggestService.suggest(query, site, limit));
+    }
+
+    @GetMapping("/snapshot")
+    public ResponseEntity<?> exportSnapshot() {
+        String error = snapshotService.checkExport();
+        if (error != null) {
+            SnapshotResponse response = new SnapshotResponse();
+            response.setError(error);
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(response);
+        }
+        StreamingResponseBody body = snapshotService::exportSnapshot;
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"search-index.snapshot\"")
+                .body(body);
+    }
+
+    @PostMapping(value = "/snapshot", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<SnapshotResponse> importSnapshot(InputStream body) {
+        return ResponseEntity.ok(snapshotService.importSnapshot(body));
     }
 }
@@ -0,0 +1,19 @@
+package searchengine.dto.indexing;
+
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+@Data
+public class IndexPageStatusResponse {
+    private boolean result;
+    private String error;
+    private String jobId;
+    private String url;
+    /** QUEUED, RUNNING, DONE or FAILED */
+    private String state;
+    /** Why the page could not be indexed, for FAILED jobs. */
+    private String jobError;
+    private LocalDateTime queuedAt;
+    private LocalDateTime finishedAt;
+}
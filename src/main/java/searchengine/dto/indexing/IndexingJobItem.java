@@ -0,0 +1,19 @@
+package searchengine.dto.indexing;
+
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+@Data
+public class IndexingJobItem {
+    private String site;
+    private String name;
+    /** QUEUED, RUNNING, DONE or STOPPED */
+    private String state;
+    private int priority;
+    private LocalDateTime submittedAt;
+    private LocalDateTime startedAt;
+    private LocalDateTime finishedAt;
+    /** Crawl time the job has had so far. */
+    private long runMillis;
+}
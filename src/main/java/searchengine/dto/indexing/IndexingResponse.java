@@ -1,10 +1,14 @@
 package searchengine.dto.indexing;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.Data;
 
 @Data
 public class IndexingResponse {
     private boolean result;
     private String error;
+    /** Id of the queued page for /api/indexPage. */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String jobId;
 }
 
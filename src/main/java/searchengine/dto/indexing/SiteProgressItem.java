@@ -0,0 +1,21 @@
+package searchengine.dto.indexing;
+
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+@Data
+public class SiteProgressItem {
+    private String url;
+    private String name;
+    private String status;
+    private LocalDateTime startedAt;
+    private long pagesFetched;
+    private long pagesFailed;
+    private long pagesQueued;
+    private long bytes;
+    private double pagesPerSecond;
+    /** null while the rate is unknown */
+    private Long etaSeconds;
+    private String lastError;
+}
@@ -0,0 +1,21 @@
+package searchengine.dto.search;
+
+import lombok.Data;
+
+import java.util.List;
+import java.util.Map;
+
+@Data
+public class SearchProfile {
+    private double totalMillis;
+    private int dbQueries;
+    private List<Phase> phases;
+    private Map<String, Long> counts;
+
+    @Data
+    public static class Phase {
+        private String name;
+        private double millis;
+        private int dbQueries;
+    }
+}
@@ -1,5 +1,6 @@
 package searchengine.dto.search;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.Data;
 import java.util.List;
 
@@ -9,5 +10,8 @@ public class SearchResponse {
     private String error;
     private int count;
     private List<SearchResult> data;
+    /** Only with debug=true. */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private SearchProfile profile;
 }
 
@@ -0,0 +1,13 @@
+package searchengine.dto.snapshot;
+
+import lombok.Data;
+
+@Data
+public class SnapshotResponse {
+    private boolean result;
+    private String error;
+    private long sites;
+    private long pages;
+    private long lemmas;
+    private long postings;
+}
@@ -0,0 +1,12 @@
+package searchengine.dto.suggest;
+
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class SuggestResponse {
+    private boolean result;
+    private String error;
+    private List<String> data;
+}
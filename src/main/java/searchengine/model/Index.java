@@ -7,7 +7,8 @@ import javax.persistence.*;
 
 @Entity
 @Table(name = "search_index", indexes = {
-    @javax.persistence.Index(name = "page_lemma_index", columnList = "page_id, lemma_id")
+    @javax.persistence.Index(name = "page_lemma_index", columnList = "page_id, lemma_id"),
+    @javax.persistence.Index(name = "lemma_rank_index", columnList = "lemma_id, rank_value, page_id")
 })
 @Getter
 @Setter
@@ -26,5 +27,9 @@ public class Index {
 
     @Column(name = "rank_value", nullable = false)
     private float rank;
+
+    /** Word positions of the lemma on the page, gap-encoded by PositionCodec; null when positions are not recorded. */
+    @Column(name = "positions", columnDefinition = "BLOB")
+    private byte[] positions;
 }
 
@@ -8,7 +8,7 @@ import java.util.List;
 
 @Entity
 @Table(name = "lemma", indexes = {
-    @javax.persistence.Index(name = "lemma_site_index", columnList = "lemma, site_id")
+    @javax.persistence.Index(name = "lemma_site_unique", columnList = "lemma, site_id", unique = true)
 })
 @Getter
 @Setter
@@ -30,6 +30,12 @@ public class Page {
     @Column(nullable = false, columnDefinition = "MEDIUMTEXT")
     private String content;
 
+    @Column(name = "fingerprint")
+    private Long fingerprint;
+
+    @Column(name = "duplicate_of")
+    private Integer duplicateOf;
+
     @OneToMany(mappedBy = "page", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
     private List<Index> indexes;
 }
@@ -0,0 +1,20 @@
+package searchengine.model;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import javax.persistence.*;
+
+@Entity
+@Table(name = "page_content")
+@Getter
+@Setter
+public class PageContent {
+    @Id
+    @Column(name = "page_id")
+    private int pageId;
+
+    @Lob
+    @Column(nullable = false, columnDefinition = "MEDIUMBLOB")
+    private byte[] data;
+}
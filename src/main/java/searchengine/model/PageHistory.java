@@ -0,0 +1,62 @@
+package searchengine.model;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Fetch history of one page address. Keyed by the address, not by page id, so the history
+ * survives a full reindex that recreates the site and its pages.
+ */
+@Entity
+@Table(name = "page_history", indexes = {
+    @javax.persistence.Index(name = "page_history_url_hash", columnList = "url_hash", unique = true),
+    @javax.persistence.Index(name = "page_history_next_fetch", columnList = "next_fetch")
+})
+@Getter
+@Setter
+public class PageHistory {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private int id;
+
+    @Column(name = "url_hash", nullable = false)
+    private long urlHash;
+
+    @Column(name = "site_url", nullable = false)
+    private String siteUrl;
+
+    @Column(nullable = false, columnDefinition = "VARCHAR(500)")
+    private String path;
+
+    @Column(name = "content_hash", nullable = false)
+    private long contentHash;
+
+    /** Fetches compared with the one before them. */
+    @Column(nullable = false)
+    private int visits;
+
+    /** Visits that found different content. */
+    @Column(nullable = false)
+    private int changes;
+
+    /** Sum of the intervals between compared fetches. */
+    @Column(name = "observed_seconds", nullable = false)
+    private long observedSeconds;
+
+    /** Re-fetches that failed in a row since the last successful one. */
+    @Column(nullable = false, columnDefinition = "INT NOT NULL DEFAULT 0")
+    private int failures;
+
+    /** Estimated changes per day. */
+    @Column(name = "change_rate", nullable = false)
+    private double changeRate;
+
+    @Column(name = "last_fetched", nullable = false)
+    private LocalDateTime lastFetched;
+
+    @Column(name = "next_fetch", nullable = false)
+    private LocalDateTime nextFetch;
+}
@@ -0,0 +1,29 @@
+package searchengine.model;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import javax.persistence.*;
+
+/**
+ * Outgoing links of one page to pages of its site, as hashes of the target paths encoded by
+ * LinkCodec. Targets are kept as hashes since they may not be stored yet when the page is.
+ */
+@Entity
+@Table(name = "page_links", indexes = {
+    @javax.persistence.Index(name = "page_links_site", columnList = "site_id")
+})
+@Getter
+@Setter
+public class PageLinks {
+    @Id
+    @Column(name = "page_id")
+    private int pageId;
+
+    @Column(name = "site_id", nullable = false)
+    private int siteId;
+
+    @Lob
+    @Column(nullable = false, columnDefinition = "MEDIUMBLOB")
+    private byte[] targets;
+}
@@ -0,0 +1,25 @@
+package searchengine.model;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+/** Static scores of the pages of one site from the last link analysis, encoded by StaticScores. */
+@Entity
+@Table(name = "site_rank")
+@Getter
+@Setter
+public class SiteRank {
+    @Id
+    @Column(name = "site_id")
+    private int siteId;
+
+    @Column(name = "computed_at", nullable = false)
+    private LocalDateTime computedAt;
+
+    @Lob
+    @Column(nullable = false, columnDefinition = "MEDIUMBLOB")
+    private byte[] scores;
+}
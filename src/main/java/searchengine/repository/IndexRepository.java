@@ -1,9 +1,11 @@
 package searchengine.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import searchengine.model.Index;
 import searchengine.model.Lemma;
 import searchengine.model.Page;
@@ -20,10 +22,32 @@ public interface IndexRepository extends JpaRepository<Index, Integer> {
     @Query(value = "SELECT DISTINCT i.page_id FROM search_index i WHERE i.lemma_id = :lemmaId", nativeQuery = true)
     List<Integer> findPageIdsByLemmaId(@Param("lemmaId") Integer lemmaId);
     
+    @Query(value = "SELECT DISTINCT i.page_id FROM search_index i WHERE i.lemma_id IN :lemmaIds ORDER BY i.page_id", nativeQuery = true)
+    List<Integer> findPageIdsByLemmaIds(@Param("lemmaIds") List<Integer> lemmaIds);
+    
     @Query(value = "SELECT DISTINCT i.page_id FROM search_index i WHERE i.lemma_id IN :lemmaIds GROUP BY i.page_id HAVING COUNT(DISTINCT i.lemma_id) = :lemmaCount", nativeQuery = true)
     List<Integer> findPageIdsByAllLemmaIds(@Param("lemmaIds") List<Integer> lemmaIds, @Param("lemmaCount") long lemmaCount);
     
     @Query(value = "SELECT SUM(i.rank_value) FROM search_index i WHERE i.page_id = :pageId AND i.lemma_id IN :lemmaIds", nativeQuery = true)
     Float calculateAbsoluteRelevanceByIds(@Param("pageId") Integer pageId, @Param("lemmaIds") List<Integer> lemmaIds);
-}
 
+    @Query("SELECT i.page.id AS pageId, i.rank AS rank FROM Index i WHERE i.page.id IN :pageIds AND i.lemma.id IN :lemmaIds")
+    List<PagePosting> findPostingsByPageIdsAndLemmaIds(@Param("pageIds") List<Integer> pageIds,
+                                                       @Param("lemmaIds") List<Integer> lemmaIds);
+
+    @Query("SELECT i.page.id AS pageId, i.positions AS positions FROM Index i WHERE i.lemma.id IN :lemmaIds ORDER BY i.page.id")
+    List<PagePositions> findPositionsByLemmaIds(@Param("lemmaIds") List<Integer> lemmaIds);
+
+    @Query("SELECT i.lemma.id FROM Index i WHERE i.page.id = :pageId")
+    List<Integer> findLemmaIdsByPageId(@Param("pageId") int pageId);
+
+    @Transactional
+    @Modifying
+    @Query(value = "DELETE FROM search_index WHERE page_id = :pageId", nativeQuery = true)
+    int deleteByPageId(@Param("pageId") int pageId);
+
+    @Transactional
+    @Modifying
+    @Query(value = "DELETE FROM search_index WHERE page_id BETWEEN :fromId AND :toId AND page_id IN (SELECT p.id FROM page p WHERE p.site_id = :siteId)", nativeQuery = true)
+    int deleteBySiteIdAndPageIdBetween(@Param("siteId") int siteId, @Param("fromId") int fromId, @Param("toId") int toId);
+}
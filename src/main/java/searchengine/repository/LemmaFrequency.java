@@ -0,0 +1,7 @@
+package searchengine.repository;
+
+public interface LemmaFrequency {
+    int getId();
+    String getLemma();
+    int getFrequency();
+}
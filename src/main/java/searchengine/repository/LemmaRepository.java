@@ -1,12 +1,15 @@
 package searchengine.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import searchengine.model.Lemma;
 import searchengine.model.Site;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -23,5 +26,25 @@ public interface LemmaRepository extends JpaRepository<Lemma, Integer> {
     
     @Query("SELECT l FROM Lemma l WHERE l.lemma IN :lemmas ORDER BY l.frequency ASC")
     List<Lemma> findByLemmaInOrderByFrequencyAsc(@Param("lemmas") List<String> lemmas);
-}
 
+    @Query("SELECT l.id AS id, l.lemma AS lemma, l.frequency AS frequency FROM Lemma l WHERE l.site.id = :siteId")
+    List<LemmaFrequency> findFrequenciesBySiteId(@Param("siteId") int siteId);
+
+    @Query(value = "SELECT l.id FROM lemma l WHERE l.site_id = :siteId AND l.id > :afterId ORDER BY l.id LIMIT :limit", nativeQuery = true)
+    List<Integer> findIdsBySiteIdAfter(@Param("siteId") int siteId, @Param("afterId") int afterId, @Param("limit") int limit);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE Lemma l SET l.frequency = l.frequency - 1 WHERE l.id IN :ids")
+    int decrementFrequencyByIdIn(@Param("ids") Collection<Integer> ids);
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM Lemma l WHERE l.id IN :ids AND l.frequency <= 0")
+    int deleteUnusedByIdIn(@Param("ids") Collection<Integer> ids);
+
+    @Transactional
+    @Modifying
+    @Query(value = "DELETE FROM lemma WHERE site_id = :siteId AND id BETWEEN :fromId AND :toId", nativeQuery = true)
+    int deleteBySiteIdAndIdBetween(@Param("siteId") int siteId, @Param("fromId") int fromId, @Param("toId") int toId);
+}
@@ -0,0 +1,17 @@
+package searchengine.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import searchengine.model.PageContent;
+
+@Repository
+public interface PageContentRepository extends JpaRepository<PageContent, Integer> {
+    @Transactional
+    @Modifying
+    @Query(value = "DELETE FROM page_content WHERE page_id BETWEEN :fromId AND :toId AND page_id IN (SELECT p.id FROM page p WHERE p.site_id = :siteId)", nativeQuery = true)
+    int deleteBySiteIdAndPageIdBetween(@Param("siteId") int siteId, @Param("fromId") int fromId, @Param("toId") int toId);
+}
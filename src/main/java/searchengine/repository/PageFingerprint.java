@@ -0,0 +1,7 @@
+package searchengine.repository;
+
+public interface PageFingerprint {
+    int getId();
+    String getPath();
+    long getFingerprint();
+}
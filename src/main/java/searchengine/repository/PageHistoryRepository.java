@@ -0,0 +1,20 @@
+package searchengine.repository;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+import searchengine.model.PageHistory;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface PageHistoryRepository extends JpaRepository<PageHistory, Integer> {
+    Optional<PageHistory> findByUrlHash(long urlHash);
+
+    List<PageHistory> findByUrlHashIn(Collection<Long> urlHashes);
+
+    List<PageHistory> findByNextFetchLessThanEqualOrderByNextFetchAsc(LocalDateTime time, Pageable pageable);
+}
@@ -0,0 +1,21 @@
+package searchengine.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import searchengine.model.PageLinks;
+
+import java.util.List;
+
+@Repository
+public interface PageLinksRepository extends JpaRepository<PageLinks, Integer> {
+    List<PageLinks> findBySiteId(int siteId);
+
+    @Transactional
+    @Modifying
+    @Query(value = "DELETE FROM page_links WHERE site_id = :siteId AND page_id BETWEEN :fromId AND :toId", nativeQuery = true)
+    int deleteBySiteIdAndPageIdBetween(@Param("siteId") int siteId, @Param("fromId") int fromId, @Param("toId") int toId);
+}
@@ -0,0 +1,6 @@
+package searchengine.repository;
+
+public interface PagePath {
+    int getId();
+    String getPath();
+}
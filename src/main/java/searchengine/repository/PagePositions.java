@@ -0,0 +1,6 @@
+package searchengine.repository;
+
+public interface PagePositions {
+    int getPageId();
+    byte[] getPositions();
+}
@@ -0,0 +1,6 @@
+package searchengine.repository;
+
+public interface PagePosting {
+    int getPageId();
+    float getRank();
+}
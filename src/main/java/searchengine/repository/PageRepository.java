@@ -1,7 +1,11 @@
 package searchengine.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import searchengine.model.Page;
 import searchengine.model.Site;
 
@@ -13,6 +17,21 @@ public interface PageRepository extends JpaRepository<Page, Integer> {
     Optional<Page> findBySiteAndPath(Site site, String path);
     List<Page> findAllBySite(Site site);
     long countBySite(Site site);
+    long countBySiteId(int siteId);
     List<Page> findByIdIn(List<Integer> ids);
-}
 
+    @Query("SELECT p.id AS id, p.path AS path, p.fingerprint AS fingerprint FROM Page p " +
+            "WHERE p.site = :site AND p.fingerprint IS NOT NULL AND p.duplicateOf IS NULL")
+    List<PageFingerprint> findFingerprintsBySite(@Param("site") Site site);
+
+    @Query("SELECT p.id AS id, p.path AS path FROM Page p WHERE p.site.id = :siteId ORDER BY p.id")
+    List<PagePath> findPathsBySiteId(@Param("siteId") int siteId);
+
+    @Query(value = "SELECT p.id FROM page p WHERE p.site_id = :siteId AND p.id > :afterId ORDER BY p.id LIMIT :limit", nativeQuery = true)
+    List<Integer> findIdsBySiteIdAfter(@Param("siteId") int siteId, @Param("afterId") int afterId, @Param("limit") int limit);
+
+    @Transactional
+    @Modifying
+    @Query(value = "DELETE FROM page WHERE site_id = :siteId AND id BETWEEN :fromId AND :toId", nativeQuery = true)
+    int deleteBySiteIdAndIdBetween(@Param("siteId") int siteId, @Param("fromId") int fromId, @Param("toId") int toId);
+}
@@ -0,0 +1,9 @@
+package searchengine.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+import searchengine.model.SiteRank;
+
+@Repository
+public interface SiteRankRepository extends JpaRepository<SiteRank, Integer> {
+}
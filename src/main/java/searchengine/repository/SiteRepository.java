@@ -1,13 +1,30 @@
 package searchengine.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import searchengine.model.Site;
 
+import java.time.LocalDateTime;
 import java.util.Optional;
 
 @Repository
 public interface SiteRepository extends JpaRepository<Site, Integer> {
     Optional<Site> findByUrl(String url);
-}
 
+    @Transactional
+    @Modifying
+    @Query(value = "DELETE FROM site WHERE id = :siteId", nativeQuery = true)
+    int deleteBySiteId(@Param("siteId") int siteId);
+
+    /** Leaves the row alone once indexing of the site has finished or failed. */
+    @Transactional
+    @Modifying
+    @Query("UPDATE Site s SET s.statusTime = :statusTime, s.lastError = :lastError " +
+            "WHERE s.id = :siteId AND s.status = :status")
+    int updateProgress(@Param("siteId") int siteId, @Param("statusTime") LocalDateTime statusTime,
+                       @Param("lastError") String lastError, @Param("status") Site.StatusType status);
+}
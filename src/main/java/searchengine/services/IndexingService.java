@@ -1,11 +1,18 @@
 package searchengine.services;
 
+import searchengine.dto.indexing.IndexPageStatusResponse;
+import searchengine.dto.indexing.IndexingJobsResponse;
 import searchengine.dto.indexing.IndexingResponse;
 
 public interface IndexingService {
     IndexingResponse startIndexing();
+    IndexingResponse startIndexing(String siteUrl, Integer priority);
     IndexingResponse stopIndexing();
+    IndexingResponse stopIndexing(String siteUrl);
+    IndexingResponse setIndexingPriority(String siteUrl, int priority);
+    IndexingJobsResponse getIndexingJobs();
     IndexingResponse indexPage(String url);
+    IndexPageStatusResponse getIndexPageStatus(String jobId);
     boolean isIndexing();
 }
 
@@ -1,76 +1,139 @@
 package searchengine.services;
 
 import lombok.RequiredArgsConstructor;
-import org.jsoup.Connection;
-import org.jsoup.Jsoup;
-import org.jsoup.nodes.Document;
+import lombok.extern.slf4j.Slf4j;
 import org.jsoup.nodes.Element;
 import org.jsoup.select.Elements;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import searchengine.config.CrawlerSettings;
 import searchengine.config.Site;
+import searchengine.config.IngestionSettings;
+import searchengine.config.SchedulerSettings;
 import searchengine.config.SitesList;
+import searchengine.dto.indexing.IndexPageStatusResponse;
+import searchengine.dto.indexing.IndexingJobItem;
+import searchengine.dto.indexing.IndexingJobsResponse;
 import searchengine.dto.indexing.IndexingResponse;
 import searchengine.model.*;
 import searchengine.repository.*;
-
+import searchengine.services.crawl.CrawlBudget;
+import searchengine.services.crawl.CrawlFrontier;
+import searchengine.services.crawl.FetchResult;
+import searchengine.services.crawl.NearDuplicateDetector;
+import searchengine.services.crawl.PageFetcher;
+import searchengine.services.crawl.SitemapReader;
+import searchengine.services.crawl.UrlCanonicalizer;
+import searchengine.services.crawl.VisitedUrlSet;
+import searchengine.services.crawl.VisitedUrlSetFactory;
+import searchengine.services.dictionary.LemmaDictionaries;
+import searchengine.services.dictionary.TermDictionary;
+import searchengine.services.ingest.IngestionJob;
+import searchengine.services.ingest.IngestionQueue;
+import searchengine.services.progress.CrawlProgress;
+import searchengine.services.progress.CrawlProgressTracker;
+import searchengine.services.rank.LinkCodec;
+import searchengine.services.rank.StaticScores;
+import searchengine.services.recrawl.FetchHistory;
+import searchengine.services.scheduler.IndexingScheduler;
+import searchengine.services.scheduler.SiteTask;
+import searchengine.services.storage.PostingStore;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import java.io.IOException;
 import java.net.URI;
-import java.net.URL;
+import java.time.Instant;
 import java.time.LocalDateTime;
 import java.util.Comparator;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.BooleanSupplier;
+import java.util.function.IntFunction;
+import java.util.function.ToIntFunction;
 import java.util.regex.Pattern;
-import java.util.Objects;
 
+@Slf4j
 @Service
 @RequiredArgsConstructor
 public class IndexingServiceImpl implements IndexingService {
     private final SiteRepository siteRepository;
     private final PageRepository pageRepository;
     private final LemmaRepository lemmaRepository;
-    private final IndexRepository indexRepository;
+    private final PostingStore postingStore;
+    private final PageContentRepository pageContentRepository;
+    private final PageLinksRepository pageLinksRepository;
     private final MorphologyService morphologyService;
+    private final PageIndexService pageIndexService;
+    private final VisitedUrlSetFactory visitedUrlSetFactory;
+    private final PageFetcher pageFetcher;
+    private final NearDuplicateDetector nearDuplicateDetector;
+    private final LemmaDictionaries lemmaDictionaries;
+    private final TermDictionary termDictionary;
+    private final IndexingWriteGate indexingWriteGate;
+    private final IngestionQueue ingestionQueue;
+    private final SitemapReader sitemapReader;
+    private final UrlCanonicalizer urlCanonicalizer;
+    private final CrawlerSettings crawlerSettings;
+    private final CrawlProgressTracker crawlProgressTracker;
+    private final IndexingScheduler indexingScheduler;
+    private final FetchHistory fetchHistory;
+    private final StaticScores staticScores;
+    private final SchedulerSettings schedulerSettings;
+    private final IngestionSettings ingestionSettings;
+    private final TransactionTemplate transactionTemplate;
     private final SitesList sitesList;
     
-    @Value("${indexing-settings.user-agent}")
-    private String userAgent;
+    private int deleteBatchSize;
     
-    private volatile boolean isIndexing = false;
-    private ForkJoinPool forkJoinPool;
-    private final Set<String> indexedUrls = ConcurrentHashMap.newKeySet();
+    private ExecutorService ingestionWorkers;
     private final Pattern fileExtensionPattern = Pattern.compile(".*\\.(pdf|zip|jpg|jpeg|png|gif|doc|docx|xls|xlsx|ppt|pptx)$", Pattern.CASE_INSENSITIVE);
     private static final Pattern HTTP_SCHEME_PATTERN = Pattern.compile("(?i)^https?://.+");
     private static final int MAX_DEPTH = 10;
+    private static final String SNAPSHOT_IMPORT_RUNNING = "Идёт загрузка снимка индекса";
 
+    /** Queues a job for every configured site; refused while any site job is still active. */
     @Override
     public IndexingResponse startIndexing() {
-        if (isIndexing) {
-            IndexingResponse response = new IndexingResponse();
+        IndexingResponse response = new IndexingResponse();
+        if (indexingScheduler.isExclusive()) {
+            response.setResult(false);
+            response.setError(SNAPSHOT_IMPORT_RUNNING);
+            return response;
+        }
+        if (indexingScheduler.isActive()) {
             response.setResult(false);
             response.setError("Индексация уже запущена");
             return response;
         }
-        
-        isIndexing = true;
-        forkJoinPool = new ForkJoinPool();
-        
-        forkJoinPool.submit(() -> {
-            try {
-                for (Site configSite : sitesList.getSites()) {
-                    if (!isIndexing) {
-                        break;
-                    }
-                    indexSite(configSite);
-                }
-            } finally {
-                isIndexing = false;
-            }
-        });
-        
+
+        for (Site configSite : sitesList.getSites()) {
+            indexingScheduler.submit(configSite.getUrl(), configSite.getName(),
+                    schedulerSettings.getDefaultPriority(), new SiteCrawl(configSite));
+        }
+        response.setResult(true);
+        return response;
+    }
+
+    @Override
+    public IndexingResponse startIndexing(String siteUrl, Integer priority) {
         IndexingResponse response = new IndexingResponse();
+        Site configSite = findConfigSite(siteUrl);
+        if (configSite == null) {
+            response.setResult(false);
+            response.setError("Сайт не указан в конфигурационном файле");
+            return response;
+        }
+
+        int jobPriority = priority != null ? priority : schedulerSettings.getDefaultPriority();
+        if (indexingScheduler.submit(configSite.getUrl(), configSite.getName(), jobPriority,
+                new SiteCrawl(configSite)) == null) {
+            response.setResult(false);
+            response.setError(indexingScheduler.isExclusive() ? SNAPSHOT_IMPORT_RUNNING : "Индексация сайта уже запущена");
+            return response;
+        }
         response.setResult(true);
         return response;
     }
@@ -79,7 +142,7 @@ public class IndexingServiceImpl implements IndexingService {
     public IndexingResponse stopIndexing() {
         IndexingResponse response = new IndexingResponse();
         
-        if (!isIndexing) {
+        if (!indexingScheduler.isActive()) {
             List<searchengine.model.Site> indexingSites = siteRepository.findAll().stream()
                     .filter(s -> s.getStatus() == searchengine.model.Site.StatusType.INDEXING)
                     .collect(java.util.stream.Collectors.toList());
@@ -89,7 +152,7 @@ public class IndexingServiceImpl implements IndexingService {
                 response.setError("Индексация не запущена");
                 return response;
             } else {
-                isIndexing = false;
+                // left over from a crawl that did not finish, e.g. before a restart
                 for (searchengine.model.Site site : indexingSites) {
                     site.setStatus(searchengine.model.Site.StatusType.FAILED);
                     site.setLastError("Индексация остановлена пользователем");
@@ -101,50 +164,241 @@ public class IndexingServiceImpl implements IndexingService {
             }
         }
         
-        isIndexing = false;
-        if (forkJoinPool != null) {
-            forkJoinPool.shutdownNow();
+        // running jobs mark their sites as stopped after the current page
+        indexingScheduler.stopAll();
+        response.setResult(true);
+        return response;
+    }
+
+    @Override
+    public IndexingResponse stopIndexing(String siteUrl) {
+        IndexingResponse response = new IndexingResponse();
+        Site configSite = findConfigSite(siteUrl);
+        if (configSite == null || !indexingScheduler.stop(configSite.getUrl())) {
+            response.setResult(false);
+            response.setError("Индексация сайта не запущена");
+            return response;
         }
-        
-        List<searchengine.model.Site> indexingSites = siteRepository.findAll().stream()
-                .filter(s -> s.getStatus() == searchengine.model.Site.StatusType.INDEXING)
-                .collect(java.util.stream.Collectors.toList());
-        
-        for (searchengine.model.Site site : indexingSites) {
-            site.setStatus(searchengine.model.Site.StatusType.FAILED);
-            site.setLastError("Индексация остановлена пользователем");
-            site.setStatusTime(LocalDateTime.now());
-            siteRepository.save(site);
+        response.setResult(true);
+        return response;
+    }
+
+    @Override
+    public IndexingResponse setIndexingPriority(String siteUrl, int priority) {
+        IndexingResponse response = new IndexingResponse();
+        Site configSite = findConfigSite(siteUrl);
+        if (configSite == null || !indexingScheduler.setPriority(configSite.getUrl(), priority)) {
+            response.setResult(false);
+            response.setError("Индексация сайта не запущена");
+            return response;
         }
-        
         response.setResult(true);
         return response;
     }
 
+    @Override
+    public IndexingJobsResponse getIndexingJobs() {
+        IndexingJobsResponse response = new IndexingJobsResponse();
+        response.setResult(true);
+        response.setJobs(indexingScheduler.getJobs().stream().map(job -> {
+            IndexingJobItem item = new IndexingJobItem();
+            item.setSite(job.getSiteUrl());
+            item.setName(job.getSiteName());
+            item.setState(job.getState().name());
+            item.setPriority(job.getPriority());
+            item.setSubmittedAt(job.getSubmittedAt());
+            item.setStartedAt(job.getStartedAt());
+            item.setFinishedAt(job.getFinishedAt());
+            item.setRunMillis(job.getRunMillis());
+            return item;
+        }).collect(java.util.stream.Collectors.toList()));
+        return response;
+    }
+
+    private Site findConfigSite(String siteUrl) {
+        if (siteUrl == null) {
+            return null;
+        }
+        String wanted = stripTrailingSlash(siteUrl.trim());
+        return sitesList.getSites().stream()
+                .filter(configSite -> stripTrailingSlash(configSite.getUrl()).equalsIgnoreCase(wanted))
+                .findFirst()
+                .orElse(null);
+    }
+
+    private static String stripTrailingSlash(String url) {
+        return url.endsWith("/") ? url.substring(0, url.length() - 1) : url;
+    }
+
+    /** A batch size below 1 would make deleteInChunks find no ids and leave the rows behind. */
+    @Value("${indexing-settings.delete-batch-size:5000}")
+    public void setDeleteBatchSize(int deleteBatchSize) {
+        if (deleteBatchSize < 1) {
+            throw new IllegalArgumentException(
+                    "indexing-settings.delete-batch-size must be at least 1, got " + deleteBatchSize);
+        }
+        this.deleteBatchSize = deleteBatchSize;
+    }
+
+    @PostConstruct
+    public void startIngestionWorkers() {
+        ingestionWorkers = Executors.newFixedThreadPool(ingestionSettings.getWorkers());
+        for (int i = 0; i < ingestionSettings.getWorkers(); i++) {
+            ingestionWorkers.submit(this::drainIngestionQueue);
+        }
+    }
+
+    @PreDestroy
+    public void stopIngestionWorkers() {
+        ingestionWorkers.shutdownNow();
+    }
+
+    /**
+     * Validates the address and queues the page; fetching and indexing happen on the ingestion
+     * workers. The response carries the job id for {@link #getIndexPageStatus}.
+     */
     @Override
     public IndexingResponse indexPage(String url) {
         IndexingResponse response = new IndexingResponse();
         
-        try {
-            IndexPageRequest req = normalizeAndValidateIndexPageRequest(url);
-            if (!req.isOk()) {
-                response.setResult(false);
-                response.setError(req.getError());
-                return response;
-            }
+        IndexPageRequest req = normalizeAndValidateIndexPageRequest(url);
+        if (!req.isOk()) {
+            response.setResult(false);
+            response.setError(req.getError());
+            return response;
+        }
+        if (indexingScheduler.isExclusive()) {
+            response.setResult(false);
+            response.setError(SNAPSHOT_IMPORT_RUNNING);
+            return response;
+        }
+
+        IngestionJob job = ingestionQueue.enqueue(req.getSiteRootUrl(), req.getSiteName(),
+                normalizePath(req.getPath()), req.getFullUrl());
+        if (job == null) {
+            response.setResult(false);
+            response.setError("Очередь индексации страниц переполнена, повторите запрос позже");
+            return response;
+        }
 
-            searchengine.model.Site site = getOrCreateSiteForSinglePage(req.getSiteRootUrl(), req.getSiteName());
-            indexSinglePage(site, req.getPath(), req.getFullUrl());
+        response.setResult(true);
+        response.setJobId(job.getId());
+        return response;
+    }
 
-            response.setResult(true);
-        } catch (Exception e) {
+    @Override
+    public IndexPageStatusResponse getIndexPageStatus(String jobId) {
+        IndexPageStatusResponse response = new IndexPageStatusResponse();
+        IngestionJob job = jobId == null ? null : ingestionQueue.find(jobId);
+        if (job == null) {
             response.setResult(false);
-            response.setError("Ошибка индексации: " + e.getMessage());
+            response.setError("Задание не найдено");
+            return response;
         }
-        
+        response.setResult(true);
+        response.setJobId(job.getId());
+        response.setUrl(job.getUrl());
+        response.setState(job.getState().name());
+        response.setJobError(job.getError());
+        response.setQueuedAt(job.getQueuedAt());
+        response.setFinishedAt(job.getFinishedAt());
         return response;
     }
 
+    private void drainIngestionQueue() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                List<IngestionJob> batch = ingestionQueue.takeBatch();
+                try {
+                    ingestBatch(batch);
+                } finally {
+                    ingestionQueue.finished(batch);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                log.error("Page ingestion worker failed", e);
+            }
+        }
+    }
+
+    /**
+     * Fetches and lemmatizes the pages of a batch without a transaction, then writes them all
+     * in one. If that transaction fails, the pages are written one by one so that a single bad
+     * page only fails its own job.
+     */
+    private void ingestBatch(List<IngestionJob> jobs) {
+        Map<IngestionJob, PreparedPage> prepared = new LinkedHashMap<>();
+        for (IngestionJob job : jobs) {
+            try {
+                PreparedPage page = prepareSinglePage(job);
+                if (page == null) {
+                    job.complete();
+                } else {
+                    prepared.put(job, page);
+                }
+            } catch (Exception e) {
+                job.fail("Ошибка индексации: " + e.getMessage());
+            }
+        }
+
+        try {
+            List<Page> written = indexingWriteGate.write(() -> transactionTemplate.execute(status ->
+                    prepared.values().stream().map(this::writePage).collect(java.util.stream.Collectors.toList())));
+            Iterator<Page> pages = written.iterator();
+            prepared.forEach((job, page) -> {
+                registerPage(page, pages.next());
+                job.complete();
+            });
+        } catch (Exception e) {
+            log.warn("Batch of {} pages failed, writing them one by one: {}", prepared.size(), e.getMessage());
+            prepared.forEach((job, page) -> {
+                try {
+                    registerPage(page, indexingWriteGate.write(() -> writePage(page)));
+                    job.complete();
+                } catch (Exception pageError) {
+                    job.fail("Ошибка индексации: " + pageError.getMessage());
+                }
+            });
+        }
+
+        Map<Integer, searchengine.model.Site> sites = new LinkedHashMap<>();
+        prepared.values().forEach(page -> sites.putIfAbsent(page.site.getId(), page.site));
+        sites.values().forEach(this::touchSiteStatusTime);
+        fetchHistory.flush();
+    }
+
+    /** @return null when the address is not indexed at all, such as a link to a file */
+    private PreparedPage prepareSinglePage(IngestionJob job) throws IOException {
+        if (isFileLink(job.getPath())) {
+            return null;
+        }
+        searchengine.model.Site site = getOrCreateSiteForSinglePage(job.getSiteUrl(), job.getSiteName());
+        FetchResult fetched;
+        try {
+            fetched = pageFetcher.fetch(job.getUrl());
+            if (fetched.isSkipped()) {
+                throw new IOException(fetched.getSkipReason());
+            }
+        } catch (IOException e) {
+            if (job.isRecrawl()) {
+                fetchHistory.recordFailure(site.getUrl(), job.getPath());
+            }
+            throw e;
+        }
+        if (job.isRecrawl() && isUnchanged(site, job.getPath(), fetched)) {
+            fetchHistory.record(site.getUrl(), job.getPath(), FetchHistory.hash(fetched.getText()));
+            return null;
+        }
+        return preparePage(site, job.getPath(), fetched, sitePaths(site, fetched));
+    }
+
+    /** A re-crawled page whose text did not change needs no lemmatization and no writes. */
+    private boolean isUnchanged(searchengine.model.Site site, String path, FetchResult fetched) {
+        return fetchHistory.isUnchanged(site.getUrl(), path, FetchHistory.hash(fetched.getText()))
+                && pageRepository.findBySiteAndPath(site, path).isPresent();
+    }
+
     private searchengine.model.Site getOrCreateSiteForSinglePage(String siteRootUrl, String siteName) {
         return siteRepository.findByUrl(siteRootUrl)
                 .orElseGet(() -> {
@@ -179,15 +433,11 @@ public class IndexingServiceImpl implements IndexingService {
             return IndexPageRequest.error("Некорректный URL");
         }
 
-        String path = uri.getPath();
-        if (path == null || path.isEmpty()) {
-            path = "/";
-        }
-
         // Check that the page belongs to one of the configured sites (spec requirement)
         final String finalNormalizedUrl = normalizedUrl;
         Site matchedSite = sitesList.getSites().stream()
-                .filter(s -> finalNormalizedUrl.startsWith(s.getUrl()))
+                .filter(s -> finalNormalizedUrl.startsWith(s.getUrl())
+                        || urlCanonicalizer.sitePath(s.getUrl(), finalNormalizedUrl) != null)
                 // Prefer the longest prefix match in case of nested configs
                 .max(Comparator.comparingInt(s -> s.getUrl().length()))
                 .orElse(null);
@@ -196,11 +446,16 @@ public class IndexingServiceImpl implements IndexingService {
             return IndexPageRequest.error("Данная страница находится за пределами сайтов, указанных в конфигурационном файле");
         }
 
+        String path = urlCanonicalizer.sitePath(matchedSite.getUrl(), finalNormalizedUrl);
+        if (path == null) {
+            path = uri.getPath() == null || uri.getPath().isEmpty() ? "/" : uri.getPath();
+        }
+
         return IndexPageRequest.ok(
                 matchedSite.getUrl(),
                 matchedSite.getName(),
                 path,
-                finalNormalizedUrl
+                urlCanonicalizer.origin(matchedSite.getUrl()) + path
         );
     }
 
@@ -254,86 +509,16 @@ public class IndexingServiceImpl implements IndexingService {
         }
     }
 
-    /**
-     * Index exactly one page (add/update), without requiring global indexing to be running
-     * and without crawling links.
-     */
-    private void indexSinglePage(searchengine.model.Site site, String path, String fullUrl) throws IOException {
-        String normalizedPath = normalizePath(path);
-        if (fileExtensionPattern.matcher(normalizedPath).matches()) {
-            return;
-        }
-
-        Connection.Response response = Jsoup.connect(fullUrl)
-                .userAgent(userAgent)
-                .referrer("http://www.google.com")
-                .timeout(10000)
-                .ignoreHttpErrors(true)
-                .execute();
-
-        String html = response.body();
-        int statusCode = response.statusCode();
-        Document doc = Jsoup.parse(html, fullUrl);
-        String contentText = doc.body() != null ? doc.body().text() : "";
-
-        Optional<Page> existingPageOpt = pageRepository.findBySiteAndPath(site, normalizedPath);
-        Page page;
-        if (existingPageOpt.isPresent()) {
-            page = existingPageOpt.get();
-            deletePageData(page);
-        } else {
-            page = new Page();
-            page.setSite(site);
-            page.setPath(normalizedPath);
-        }
-
-        page.setCode(statusCode);
-        page.setContent(html);
-        page = pageRepository.save(page);
-        touchSiteStatusTime(site);
-
-        Map<String, Integer> lemmas = morphologyService.getLemmas(contentText);
-        indexLemmas(site, page, lemmas);
-    }
-
     @Override
     public boolean isIndexing() {
-        return isIndexing;
-    }
-
-    private void indexSite(Site configSite) {
-        searchengine.model.Site site = recreateSiteForIndexing(configSite);
-        
-        indexedUrls.clear();
-        
-        boolean success = true;
-        try {
-            indexPage(site, "/", configSite.getUrl(), 0);
-        } catch (Exception e) {
-            success = false;
-            markSiteFailed(site, "Ошибка индексации: " + e.getMessage());
-        }
-
-        if (!isIndexing) {
-            // stop requested
-            if (site.getStatus() == searchengine.model.Site.StatusType.INDEXING) {
-                markSiteFailed(site, "Индексация остановлена пользователем");
-            }
-            return;
-        }
-
-        if (success && site.getStatus() == searchengine.model.Site.StatusType.INDEXING) {
-            site.setStatus(searchengine.model.Site.StatusType.INDEXED);
-            site.setLastError(null);
-            touchSiteStatusTime(site);
-            siteRepository.save(site);
-        }
+        return indexingScheduler.isActive();
     }
 
     private searchengine.model.Site recreateSiteForIndexing(Site configSite) {
         siteRepository.findByUrl(configSite.getUrl()).ifPresent(existing -> {
             deleteSiteData(existing);
-            siteRepository.delete(Objects.requireNonNull(existing));
+            siteRepository.deleteBySiteId(existing.getId());
+            lemmaDictionaries.forgetSite(existing.getId());
         });
 
         searchengine.model.Site site = new searchengine.model.Site();
@@ -345,98 +530,360 @@ public class IndexingServiceImpl implements IndexingService {
         return siteRepository.save(site);
     }
 
+    /**
+     * Removes all rows of the site with bulk DELETE statements over page/lemma id ranges,
+     * so neither the persistence context nor a single transaction grows with the site size.
+     * The ranges are cut from the ids the site actually has, so gaps left by other sites cost
+     * no empty statements.
+     */
     private void deleteSiteData(searchengine.model.Site site) {
-        List<Page> sitePages = pageRepository.findAllBySite(site);
-        if (!sitePages.isEmpty()) {
-            indexRepository.deleteAllByPageIn(sitePages);
-            pageRepository.deleteAll(sitePages);
-        }
+        int siteId = site.getId();
+        nearDuplicateDetector.forgetSite(siteId);
+        termDictionary.forgetSite(siteId);
+        staticScores.forgetSite(siteId);
+        IntFunction<List<Integer>> pageIds = afterId -> pageRepository.findIdsBySiteIdAfter(siteId, afterId, deleteBatchSize);
+        deleteInChunks(site, "postings", pageIds, ids -> postingStore.deletePages(siteId, ids));
+        deleteInChunks(site, "page_content", pageIds, ids -> pageContentRepository.deleteBySiteIdAndPageIdBetween(
+                siteId, ids.get(0), ids.get(ids.size() - 1)));
+        deleteInChunks(site, "page_links", pageIds, ids -> pageLinksRepository.deleteBySiteIdAndPageIdBetween(
+                siteId, ids.get(0), ids.get(ids.size() - 1)));
+        deleteInChunks(site, "page", pageIds, ids -> pageRepository.deleteBySiteIdAndIdBetween(
+                siteId, ids.get(0), ids.get(ids.size() - 1)));
+        deleteInChunks(site, "lemma", afterId -> lemmaRepository.findIdsBySiteIdAfter(siteId, afterId, deleteBatchSize),
+                ids -> lemmaRepository.deleteBySiteIdAndIdBetween(siteId, ids.get(0), ids.get(ids.size() - 1)));
+    }
 
-        List<Lemma> siteLemmas = lemmaRepository.findAllBySite(site);
-        if (!siteLemmas.isEmpty()) {
-            lemmaRepository.deleteAll(siteLemmas);
+    /**
+     * @param nextIds     the next ascending ids of the site after the given one, at most a batch
+     * @param chunkDelete deletes the rows of a batch of ids, returning their number
+     */
+    private void deleteInChunks(searchengine.model.Site site, String table, IntFunction<List<Integer>> nextIds,
+                                ToIntFunction<List<Integer>> chunkDelete) {
+        long start = System.currentTimeMillis();
+        long deleted = 0;
+        int chunks = 0;
+        int lastId = 0;
+        List<Integer> ids;
+        while (!(ids = nextIds.apply(lastId)).isEmpty()) {
+            int fromId = ids.get(0);
+            int toId = ids.get(ids.size() - 1);
+            List<Integer> chunk = ids;
+            int chunkDeleted = indexingWriteGate.write(() -> chunkDelete.applyAsInt(chunk));
+            deleted += chunkDeleted;
+            chunks++;
+            lastId = toId;
+            log.debug("Deleting {} rows of site {}: ids {}..{}, {} deleted, {} so far",
+                    table, site.getUrl(), fromId, toId, chunkDeleted, deleted);
+        }
+        if (chunks > 0) {
+            log.info("Deleted {} rows of {} of site {} in {} chunks, {} ms",
+                    deleted, table, site.getUrl(), chunks, System.currentTimeMillis() - start);
         }
     }
 
-    private void indexPage(searchengine.model.Site site, String path, String fullUrl, int depth) {
-        if (!isIndexing || depth > MAX_DEPTH) {
-            return;
+    private void releaseVisitedUrls(searchengine.model.Site site, VisitedUrlSet visitedUrls) {
+        log.info("Visited set of {}: {} urls, {} bytes, {} bytes per url", site.getUrl(),
+                visitedUrls.size(), visitedUrls.memoryBytes(), String.format("%.1f", visitedUrls.bytesPerUrl()));
+        visitedUrls.close();
+    }
+
+    /**
+     * Crawl of one configured site, run by the scheduler in slices. The site is recreated only
+     * when the job starts, so a queued site stays searchable until its turn. Slices of a job
+     * never overlap, and the scheduler lock orders them, so the fields need no synchronization.
+     */
+    private class SiteCrawl implements SiteTask {
+        private final Site configSite;
+        private final CrawlFrontier frontier = new CrawlFrontier();
+        private searchengine.model.Site site;
+        private VisitedUrlSet visitedUrls;
+        private CrawlProgress progress;
+        private String origin;
+        private CrawlBudget budget;
+        private boolean failed;
+
+        SiteCrawl(Site configSite) {
+            this.configSite = configSite;
+        }
+
+        @Override
+        public void start(BooleanSupplier cancelled) {
+            site = recreateSiteForIndexing(configSite);
+            try {
+                visitedUrls = visitedUrlSetFactory.create();
+                progress = crawlProgressTracker.start(site);
+                origin = urlCanonicalizer.origin(site.getUrl());
+                budget = new CrawlBudget(crawlerSettings.getBudget(), configSite);
+                budget.resume();
+                try {
+                    enqueue("/", configSite.getUrl(), 0, null, 1.0);
+                    seedFromSitemaps(cancelled);
+                } finally {
+                    budget.pause();
+                }
+            } catch (RuntimeException e) {
+                // The old index is gone by now; the site must not end up INDEXED and empty.
+                failed = true;
+                markSiteFailed(site, "Ошибка индексации: " + e.getMessage());
+                throw e;
+            }
         }
-        
-        String normalizedPath = normalizePath(path);
-        String urlKey = site.getUrl() + normalizedPath;
-        if (indexedUrls.contains(urlKey)) {
-            return;
+
+        @Override
+        public boolean runSlice(int maxPages, BooleanSupplier cancelled) {
+            budget.resume();
+            try {
+                for (int i = 0; i < maxPages && !cancelled.getAsBoolean(); i++) {
+                    progress.setPagesQueued(frontier.size());
+                    String exhausted = budget.exhausted();
+                    if (exhausted != null) {
+                        log.info("Crawl budget of {} spent after {}, {} pages left unvisited",
+                                site.getUrl(), exhausted, frontier.size());
+                        return true;
+                    }
+                    CrawlFrontier.Entry entry = frontier.poll();
+                    if (entry == null) {
+                        return true;
+                    }
+                    crawlPage(entry);
+                }
+                progress.setPagesQueued(frontier.size());
+                return cancelled.getAsBoolean() || frontier.size() == 0;
+            } catch (Exception e) {
+                failed = true;
+                markSiteFailed(site, "Ошибка индексации: " + e.getMessage());
+                return true;
+            } finally {
+                budget.pause();
+            }
         }
-        
-        if (fileExtensionPattern.matcher(normalizedPath).matches()) {
-            return;
+
+        @Override
+        public void finish(boolean stopped) {
+            if (site == null) {
+                return;
+            }
+            if (visitedUrls != null) {
+                releaseVisitedUrls(site, visitedUrls);
+            }
+            fetchHistory.flush();
+
+            if (site.getStatus() == searchengine.model.Site.StatusType.INDEXING) {
+                if (stopped) {
+                    markSiteFailed(site, "Индексация остановлена пользователем");
+                } else if (!failed) {
+                    site.setStatus(searchengine.model.Site.StatusType.INDEXED);
+                    site.setLastError(null);
+                    touchSiteStatusTime(site);
+                }
+            }
+            if (progress != null) {
+                crawlProgressTracker.finish(progress, site);
+            }
         }
-        
-        try {
-            Connection.Response response = Jsoup.connect(fullUrl)
-                    .userAgent(userAgent)
-                    .referrer("http://www.google.com")
-                    .timeout(10000)
-                    .ignoreHttpErrors(true)
-                    .execute();
-
-            String html = response.body();
-            int statusCode = response.statusCode();
-            Document doc = Jsoup.parse(html, fullUrl);
-            String content = doc.body() != null ? doc.body().text() : "";
-            
-            Optional<Page> existingPageOpt = pageRepository.findBySiteAndPath(site, normalizedPath);
-            Page page;
-            if (existingPageOpt.isPresent()) {
-                page = existingPageOpt.get();
-                deletePageData(page);
-            } else {
-                page = new Page();
-                page.setSite(site);
-                page.setPath(normalizedPath);
+
+        /**
+         * Adds the sitemap entries of the site to the frontier without cash: they go after the
+         * pages that links have given cash to, newest {@code lastmod} first, unless links to
+         * them turn up.
+         */
+        private void seedFromSitemaps(BooleanSupplier cancelled) {
+            if (!crawlerSettings.getSitemaps().isEnabled()) {
+                return;
             }
-            
-            page.setCode(statusCode);
-            page.setContent(html);
-            page = pageRepository.save(page);
-            touchSiteStatusTime(site);
-            
-            indexedUrls.add(site.getUrl() + normalizedPath);
-            
-            Map<String, Integer> lemmas = morphologyService.getLemmas(content);
-            indexLemmas(site, page, lemmas);
-            
-            if (statusCode >= 200 && statusCode < 400) {
-                Elements links = doc.select("a[href]");
-                for (Element link : links) {
-                    if (!isIndexing) {
-                        break;
-                    }
-                    String href = link.attr("abs:href");
-                    if (href.startsWith(site.getUrl()) && !href.contains("#") && !href.contains("?")) {
-                        try {
-                            URL linkUrl = new URL(href);
-                            String linkPath = linkUrl.getPath();
-                            if (linkPath.isEmpty()) {
-                                linkPath = "/";
-                            }
-                            String normalizedLinkPath = normalizePath(linkPath);
-                            if (!indexedUrls.contains(site.getUrl() + normalizedLinkPath)) {
-                                indexPage(site, normalizedLinkPath, href, depth + 1);
-                            }
-                        } catch (Exception e) {
-                            // skip invalid URLs
-                        }
-                    }
+            sitemapReader.read(site.getUrl(),
+                    entry -> enqueueLink(entry.getUrl(), 1, entry.getLastModified(), 0),
+                    () -> !cancelled.getAsBoolean());
+        }
+
+        /**
+         * Fetches and stores one page. Progress is only counted in memory here; the tracker
+         * writes status_time and last_error of the site on its own timer.
+         */
+        private void crawlPage(CrawlFrontier.Entry entry) {
+            try {
+                FetchResult fetched = pageFetcher.fetch(entry.getUrl());
+                if (fetched.isSkipped()) {
+                    budget.spend(0);
+                    return;
+                }
+                budget.spend(fetched.getBodySize());
+
+                Set<String> links = sitePaths(site, fetched);
+                String path = storedPath(entry.getPath(), fetched);
+                if (path != null) {
+                    storePage(site, path, fetched, links);
+                }
+                progress.pageFetched(fetched.getBodySize());
+
+                if (entry.getDepth() < MAX_DEPTH) {
+                    followLinks(entry, links);
                 }
+            } catch (IOException e) {
+                budget.spend(0);
+                // Non-fatal for the whole site: just record the error and continue.
+                String error = "Ошибка загрузки страницы: " + e.getMessage();
+                site.setLastError(error);
+                progress.pageFailed(error);
             }
-        } catch (IOException e) {
-            // Non-fatal for the whole site: just record the error and continue.
-            // If the root page fails, the caller will mark the whole site as FAILED.
-            site.setLastError("Ошибка загрузки страницы: " + e.getMessage());
-            touchSiteStatusTime(site);
-            siteRepository.save(site);
+        }
+
+        /**
+         * A page whose rel=canonical link points to another page of the site is stored under
+         * that address, which then counts as visited.
+         *
+         * @return the path to store the page under, or null when the canonical page is queued or stored already
+         */
+        private String storedPath(String path, FetchResult fetched) {
+            if (!crawlerSettings.getUrls().isFollowCanonical()) {
+                return path;
+            }
+            Element canonical = fetched.getDocument().selectFirst("link[rel=canonical][href]");
+            String canonicalPath = canonical == null ? null
+                    : urlCanonicalizer.sitePath(site.getUrl(), canonical.absUrl("href"));
+            if (canonicalPath == null || canonicalPath.equals(path)) {
+                return path;
+            }
+            if (visitedUrls.contains(canonicalPath)) {
+                return null;
+            }
+            visitedUrls.add(canonicalPath);
+            return canonicalPath;
+        }
+
+        /** Queues the distinct links of the site and shares the cash of the page among them. */
+        private void followLinks(CrawlFrontier.Entry entry, Set<String> links) {
+            Set<String> paths = new LinkedHashSet<>(links);
+            paths.remove(entry.getPath());
+            double share = paths.isEmpty() ? 0 : entry.getCash() / paths.size();
+            for (String path : paths) {
+                enqueue(path, origin + path, entry.getDepth() + 1, null, share);
+            }
+        }
+
+        /** @return whether the link belongs to the site and was not queued before */
+        private boolean enqueueLink(String href, int depth, Instant lastModified, double cash) {
+            String path = urlCanonicalizer.sitePath(site.getUrl(), href);
+            return path != null && enqueue(path, origin + path, depth, lastModified, cash);
+        }
+
+        /**
+         * Marks the page as visited when it is queued, so a page linked from many others waits
+         * in the frontier once and collects the cash of all of them. Cash sent to pages fetched
+         * already is dropped.
+         */
+        private boolean enqueue(String path, String fullUrl, int depth, Instant lastModified, double cash) {
+            String normalizedPath = normalizePath(path);
+            if (isFileLink(normalizedPath) || frontier.addCash(normalizedPath, cash, depth)
+                    || visitedUrls.contains(normalizedPath)) {
+                return false;
+            }
+            visitedUrls.add(normalizedPath);
+            frontier.offer(normalizedPath, fullUrl, depth, lastModified, cash);
+            return true;
+        }
+    }
+
+    /**
+     * Saves a fetched page. Near-duplicates of an already indexed page of the site are stored
+     * without lemmatization and postings.
+     */
+    private void storePage(searchengine.model.Site site, String path, FetchResult fetched, Set<String> links) {
+        PreparedPage page = preparePage(site, path, fetched, links);
+        registerPage(page, indexingWriteGate.write(() -> writePage(page)));
+        fetchHistory.flushIfFull();
+    }
+
+    /**
+     * Canonical paths of the pages of the site that the page links to, in document order;
+     * none for error responses.
+     */
+    private Set<String> sitePaths(searchengine.model.Site site, FetchResult fetched) {
+        Set<String> paths = new LinkedHashSet<>();
+        int statusCode = fetched.getStatusCode();
+        if (statusCode < 200 || statusCode >= 400) {
+            return paths;
+        }
+        Elements links = fetched.getDocument().select("a[href]");
+        for (Element link : links) {
+            String href = link.attr("href");
+            String path = urlCanonicalizer.sitePath(site.getUrl(),
+                    UrlCanonicalizer.isRelative(href) ? link.absUrl("href") : href);
+            if (path != null) {
+                paths.add(normalizePath(path));
+            }
+        }
+        return paths;
+    }
+
+    private PreparedPage preparePage(searchengine.model.Site site, String path, FetchResult fetched,
+                                     Set<String> links) {
+        String text = fetched.getText();
+        long contentHash = FetchHistory.hash(text);
+        long fingerprint = nearDuplicateDetector.fingerprint(text);
+        Integer originalPageId = nearDuplicateDetector.findOriginal(site, path, fingerprint);
+        Map<String, List<Integer>> lemmaPositions = originalPageId != null
+                ? Collections.emptyMap()
+                : morphologyService.getLemmaPositions(text);
+        long[] linkHashes = links.stream()
+                .filter(link -> !link.equals(path))
+                .mapToLong(FetchHistory::hash)
+                .toArray();
+        return new PreparedPage(site, path, fetched, contentHash, fingerprint, originalPageId, lemmaPositions,
+                LinkCodec.encode(linkHashes));
+    }
+
+    /**
+     * Also stores the links of the page, in the same transaction when there is one, and buffers
+     * the fetch for the page history once the page is committed.
+     */
+    private Page writePage(PreparedPage page) {
+        FetchResult fetched = page.fetched;
+        Page saved = page.originalPageId != null
+                ? pageIndexService.saveDuplicatePage(page.site, page.path, fetched.getStatusCode(),
+                        fetched.getHtml(), page.fingerprint, page.originalPageId)
+                : pageIndexService.savePage(page.site, page.path, fetched.getStatusCode(), fetched.getHtml(),
+                        page.fingerprint, page.lemmaPositions);
+        fetchHistory.record(page.site.getUrl(), page.path, page.contentHash);
+        PageLinks links = new PageLinks();
+        links.setPageId(saved.getId());
+        links.setSiteId(page.site.getId());
+        links.setTargets(page.links);
+        pageLinksRepository.save(links);
+        return saved;
+    }
+
+    /** Updates the near-duplicate index once the page is committed. */
+    private void registerPage(PreparedPage page, Page saved) {
+        if (page.originalPageId != null) {
+            nearDuplicateDetector.unregister(page.site, page.path);
+        } else {
+            nearDuplicateDetector.register(page.site, page.path, saved.getId(), page.fingerprint);
+        }
+    }
+
+    private static class PreparedPage {
+        private final searchengine.model.Site site;
+        private final String path;
+        private final FetchResult fetched;
+        private final long contentHash;
+        private final long fingerprint;
+        private final Integer originalPageId;
+        private final Map<String, List<Integer>> lemmaPositions;
+        /** Link targets encoded by LinkCodec. */
+        private final byte[] links;
+
+        PreparedPage(searchengine.model.Site site, String path, FetchResult fetched, long contentHash,
+                     long fingerprint, Integer originalPageId, Map<String, List<Integer>> lemmaPositions,
+                     byte[] links) {
+            this.site = site;
+            this.path = path;
+            this.fetched = fetched;
+            this.contentHash = contentHash;
+            this.fingerprint = fingerprint;
+            this.originalPageId = originalPageId;
+            this.lemmaPositions = lemmaPositions;
+            this.links = links;
         }
     }
 
@@ -451,6 +898,12 @@ public class IndexingServiceImpl implements IndexingService {
         touchSiteStatusTime(site);
     }
 
+    /** Checks the extension of the path without its query. */
+    private boolean isFileLink(String path) {
+        int query = path.indexOf('?');
+        return fileExtensionPattern.matcher(query >= 0 ? path.substring(0, query) : path).matches();
+    }
+
     private String normalizePath(String path) {
         if (path.isEmpty() || path.equals("/")) {
             return "/";
@@ -463,46 +916,4 @@ public class IndexingServiceImpl implements IndexingService {
         }
         return path;
     }
-
-    private void deletePageData(Page page) {
-        List<Index> indexes = indexRepository.findByPage(page);
-        for (Index index : indexes) {
-            Lemma lemma = index.getLemma();
-            lemma.setFrequency(lemma.getFrequency() - 1);
-            if (lemma.getFrequency() <= 0) {
-                lemmaRepository.delete(lemma);
-            } else {
-                lemmaRepository.save(lemma);
-            }
-        }
-        indexRepository.deleteAll(Objects.requireNonNull(indexes));
-    }
-
-    private void indexLemmas(searchengine.model.Site site, Page page, Map<String, Integer> lemmas) {
-        int totalLemmas = lemmas.values().stream().mapToInt(Integer::intValue).sum();
-        
-        for (Map.Entry<String, Integer> entry : lemmas.entrySet()) {
-            String lemmaText = entry.getKey();
-            int count = entry.getValue();
-            
-            Lemma lemma = lemmaRepository.findBySiteAndLemma(site, lemmaText)
-                    .orElseGet(() -> {
-                        Lemma newLemma = new Lemma();
-                        newLemma.setSite(site);
-                        newLemma.setLemma(lemmaText);
-                        newLemma.setFrequency(0);
-                        return newLemma;
-                    });
-            
-            lemma.setFrequency(lemma.getFrequency() + 1);
-            lemma = lemmaRepository.save(lemma);
-            
-            Index index = new Index();
-            index.setPage(page);
-            index.setLemma(lemma);
-            index.setRank((float) count / totalLemmas);
-            indexRepository.save(index);
-        }
-    }
 }
-
@@ -0,0 +1,34 @@
+package searchengine.services;
+
+import org.springframework.stereotype.Component;
+import searchengine.config.DatabaseSettings;
+
+import java.util.concurrent.Semaphore;
+import java.util.function.Supplier;
+
+/**
+ * Limits how many indexing threads write to the database at once. Crawling keeps fetching and
+ * lemmatizing while it waits here, but never holds more write connections than permitted.
+ */
+@Component
+public class IndexingWriteGate {
+    private final Semaphore permits;
+
+    public IndexingWriteGate(DatabaseSettings databaseSettings) {
+        this.permits = new Semaphore(databaseSettings.getIndexingWritePermits(), true);
+    }
+
+    public <T> T write(Supplier<T> action) {
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a database write permit", e);
+        }
+        try {
+            return action.get();
+        } finally {
+            permits.release();
+        }
+    }
+}
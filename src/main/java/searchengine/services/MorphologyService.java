@@ -2,9 +2,22 @@ package searchengine.services;
 
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 public interface MorphologyService {
     Map<String, Integer> getLemmas(String text);
+
+    /**
+     * Word positions of every lemma of the text. Positions count all words, including the
+     * ones that produce no lemma, so gaps between lemmas are preserved.
+     */
+    Map<String, List<Integer>> getLemmaPositions(String text);
+
+    /**
+     * Lemmas of a search query. A Russian word without any normal form, typically a typo, is
+     * kept as its lowercased surface form so that it can still be matched fuzzily.
+     */
+    Set<String> getQueryLemmas(String query);
     List<String> getNormalForms(String word);
     boolean isRussianWord(String word);
 }
@@ -23,34 +23,61 @@ public class MorphologyServiceImpl implements MorphologyService {
     @Override
     public Map<String, Integer> getLemmas(String text) {
         Map<String, Integer> lemmas = new HashMap<>();
-        String[] words = text.toLowerCase()
+        getLemmaPositions(text).forEach((lemma, positions) -> lemmas.put(lemma, positions.size()));
+        return lemmas;
+    }
+
+    @Override
+    public Map<String, List<Integer>> getLemmaPositions(String text) {
+        Map<String, List<Integer>> lemmas = new HashMap<>();
+        String[] words = words(text);
+        
+        for (int position = 0; position < words.length; position++) {
+            String lemma = toLemma(words[position]);
+            if (lemma != null) {
+                lemmas.computeIfAbsent(lemma, key -> new ArrayList<>()).add(position);
+            }
+        }
+        
+        return lemmas;
+    }
+
+    @Override
+    public Set<String> getQueryLemmas(String query) {
+        Set<String> lemmas = new LinkedHashSet<>();
+        for (String word : words(query)) {
+            String lemma = toLemma(word);
+            if (lemma != null) {
+                lemmas.add(lemma);
+            } else if (isRussianWord(word) && getNormalForms(word).isEmpty()) {
+                lemmas.add(word);
+            }
+        }
+        return lemmas;
+    }
+
+    private static String[] words(String text) {
+        return text.toLowerCase()
                 .replaceAll("[^а-яёa-z\\s]", " ")
                 .trim()
                 .split("\\s+");
+    }
+
+    private String toLemma(String word) {
+        if (word.isEmpty() || word.length() < 2) {
+            return null;
+        }
         
-        for (String word : words) {
-            if (word.isEmpty() || word.length() < 2) {
-                continue;
+        if (isRussianWord(word)) {
+            List<String> normalForms = getNormalForms(word);
+            if (normalForms.isEmpty()) {
+                return null;
             }
             
-            if (isRussianWord(word)) {
-                List<String> normalForms = getNormalForms(word);
-                if (normalForms.isEmpty()) {
-                    continue;
-                }
-                
-                String normalForm = normalForms.get(0);
-                if (isParticle(normalForm)) {
-                    continue;
-                }
-                
-                lemmas.put(normalForm, lemmas.getOrDefault(normalForm, 0) + 1);
-            } else if (isEnglishWord(word)) {
-                lemmas.put(word, lemmas.getOrDefault(word, 0) + 1);
-            }
+            String normalForm = normalForms.get(0);
+            return isParticle(normalForm) ? null : normalForm;
         }
-        
-        return lemmas;
+        return isEnglishWord(word) ? word : null;
     }
 
     @Override
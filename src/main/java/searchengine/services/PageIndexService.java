@@ -0,0 +1,20 @@
+package searchengine.services;
+
+import searchengine.model.Page;
+import searchengine.model.Site;
+
+import java.util.List;
+import java.util.Map;
+
+public interface PageIndexService {
+    /**
+     * @param lemmaPositions word positions of every lemma of the page text
+     */
+    Page savePage(Site site, String path, int code, String content, long fingerprint,
+                  Map<String, List<Integer>> lemmaPositions);
+
+    /**
+     * Stores a near-duplicate of another page of the site: the page row is kept, but without postings.
+     */
+    Page saveDuplicatePage(Site site, String path, int code, String content, long fingerprint, int originalPageId);
+}
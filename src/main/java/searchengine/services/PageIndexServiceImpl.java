@@ -0,0 +1,174 @@
+package searchengine.services;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import searchengine.model.Lemma;
+import searchengine.model.Page;
+import searchengine.model.Site;
+import searchengine.repository.LemmaRepository;
+import searchengine.repository.PageRepository;
+import searchengine.services.content.PageContentStore;
+import searchengine.services.crawl.SimHash;
+import searchengine.services.dictionary.LemmaDictionaries;
+import searchengine.services.dictionary.TermDictionary;
+import searchengine.services.search.PositionCodec;
+import searchengine.services.storage.Posting;
+import searchengine.services.storage.PostingStore;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Writes a page together with its postings in one transaction. When a page is re-indexed,
+ * only the lemmas that disappeared from or newly appeared on the page have their frequency
+ * changed; lemmas present in both versions keep their row untouched. The same changes are
+ * applied to the term dictionary and the completion dictionaries once the transaction commits.
+ * New lemmas go in as a JDBC batch: their ids are IDENTITY generated, which Hibernate would
+ * insert one statement per row. Postings are written through the {@link PostingStore}.
+ */
+@Service
+@RequiredArgsConstructor
+public class PageIndexServiceImpl implements PageIndexService {
+    /** Lemmas are unique per site, so a lemma inserted concurrently by another page is counted, not duplicated. */
+    private static final String UPSERT_LEMMA =
+            "INSERT INTO lemma (site_id, lemma, frequency) VALUES (?, ?, 1) ON DUPLICATE KEY UPDATE frequency = frequency + 1";
+
+    private final PageRepository pageRepository;
+    private final LemmaRepository lemmaRepository;
+    private final PostingStore postingStore;
+    private final PageContentStore pageContentStore;
+    private final TermDictionary termDictionary;
+    private final LemmaDictionaries lemmaDictionaries;
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${indexing-settings.record-positions:true}")
+    private boolean recordPositions;
+
+    @Override
+    @Transactional
+    public Page savePage(Site site, String path, int code, String content, long fingerprint,
+                         Map<String, List<Integer>> lemmaPositions) {
+        return writePage(site, path, code, content, fingerprint, null, lemmaPositions);
+    }
+
+    @Override
+    @Transactional
+    public Page saveDuplicatePage(Site site, String path, int code, String content, long fingerprint, int originalPageId) {
+        return writePage(site, path, code, content, fingerprint, originalPageId, Collections.emptyMap());
+    }
+
+    private Page writePage(Site site, String path, int code, String content, long fingerprint,
+                           Integer duplicateOf, Map<String, List<Integer>> lemmas) {
+        Page page = pageRepository.findBySiteAndPath(site, path).orElseGet(() -> newPage(site, path));
+        boolean added = page.getId() == 0;
+        Map<String, Lemma> oldLemmas = page.getId() == 0
+                ? Collections.emptyMap()
+                : lemmaRepository.findAllById(postingStore.findLemmaIds(page.getId())).stream()
+                        .collect(Collectors.toMap(Lemma::getLemma, Function.identity(), (first, second) -> first));
+
+        page.setCode(code);
+        page.setFingerprint(fingerprint == SimHash.NONE ? null : fingerprint);
+        page.setDuplicateOf(duplicateOf);
+        page = pageContentStore.save(page, content);
+        replacePostings(site, page, added, oldLemmas, lemmas);
+        return page;
+    }
+
+    private Page newPage(Site site, String path) {
+        Page page = new Page();
+        page.setSite(site);
+        page.setPath(path);
+        return page;
+    }
+
+    private void replacePostings(Site site, Page page, boolean added, Map<String, Lemma> oldLemmas,
+                                 Map<String, List<Integer>> lemmas) {
+        if (!oldLemmas.isEmpty()) {
+            postingStore.deletePage(page.getId());
+        }
+
+        List<Lemma> removed = oldLemmas.values().stream()
+                .filter(lemma -> !lemmas.containsKey(lemma.getLemma()))
+                .collect(Collectors.toList());
+        releaseLemmas(removed.stream().map(Lemma::getId).collect(Collectors.toList()));
+
+        Map<String, Lemma> pageLemmas = new HashMap<>(oldLemmas);
+        pageLemmas.keySet().retainAll(lemmas.keySet());
+        List<String> addedTexts = lemmas.keySet().stream()
+                .filter(text -> !oldLemmas.containsKey(text))
+                .collect(Collectors.toList());
+        Map<String, Lemma> acquired = acquireLemmas(site, addedTexts);
+        pageLemmas.putAll(acquired);
+
+        saveIndexes(page, pageLemmas, lemmas);
+        afterCommit(() -> updateDictionaries(site.getId(), added, removed, acquired));
+    }
+
+    private void updateDictionaries(int siteId, boolean added, List<Lemma> removed, Map<String, Lemma> acquired) {
+        if (added) {
+            termDictionary.addPage(siteId);
+        }
+        removed.forEach(lemma -> termDictionary.release(siteId, lemma.getLemma()));
+        acquired.values().forEach(lemma -> termDictionary.acquire(siteId, lemma.getLemma(), lemma.getId()));
+
+        Map<String, Integer> changes = new HashMap<>();
+        removed.forEach(lemma -> changes.merge(lemma.getLemma(), -1, Integer::sum));
+        acquired.keySet().forEach(lemma -> changes.merge(lemma, 1, Integer::sum));
+        lemmaDictionaries.change(siteId, changes);
+    }
+
+    private void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    private void releaseLemmas(List<Integer> lemmaIds) {
+        if (lemmaIds.isEmpty()) {
+            return;
+        }
+        lemmaRepository.decrementFrequencyByIdIn(lemmaIds);
+        lemmaRepository.deleteUnusedByIdIn(lemmaIds);
+    }
+
+    /**
+     * Inserts the lemmas or counts the page in their frequency with one batched upsert, then
+     * reads their ids back. Sorted, so concurrent pages lock shared lemma rows in the same order.
+     */
+    private Map<String, Lemma> acquireLemmas(Site site, List<String> lemmaTexts) {
+        if (lemmaTexts.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        List<Object[]> rows = lemmaTexts.stream()
+                .sorted()
+                .map(text -> new Object[]{site.getId(), text})
+                .collect(Collectors.toList());
+        jdbcTemplate.batchUpdate(UPSERT_LEMMA, rows);
+        return lemmaRepository.findBySiteAndLemmaIn(site, lemmaTexts).stream()
+                .collect(Collectors.toMap(Lemma::getLemma, Function.identity(), (first, second) -> first));
+    }
+
+    private void saveIndexes(Page page, Map<String, Lemma> pageLemmas, Map<String, List<Integer>> lemmas) {
+        int totalLemmas = lemmas.values().stream().mapToInt(List::size).sum();
+        List<Posting> postings = new ArrayList<>(lemmas.size());
+        for (Map.Entry<String, List<Integer>> entry : lemmas.entrySet()) {
+            postings.add(new Posting(page.getId(), pageLemmas.get(entry.getKey()).getId(),
+                    (float) entry.getValue().size() / totalLemmas,
+                    recordPositions ? PositionCodec.encode(entry.getValue()) : null));
+        }
+        postingStore.insert(postings);
+    }
+}
@@ -0,0 +1,15 @@
+package searchengine.services;
+
+import lombok.Getter;
+
+@Getter
+public class SearchOverloadedException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    private final long retryAfterSeconds;
+
+    public SearchOverloadedException(long retryAfterSeconds) {
+        super("Сервис поиска перегружен, повторите запрос позже");
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+}
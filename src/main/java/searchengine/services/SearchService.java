@@ -3,6 +3,6 @@ package searchengine.services;
 import searchengine.dto.search.SearchResponse;
 
 public interface SearchService {
-    SearchResponse search(String query, String siteUrl, int offset, int limit);
+    SearchResponse search(String query, String siteUrl, int offset, int limit, boolean debug);
 }
 
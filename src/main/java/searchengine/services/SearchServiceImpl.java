@@ -1,16 +1,39 @@
 package searchengine.services;
 
 import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
 import org.springframework.stereotype.Service;
+import searchengine.config.RoutingDataSource;
+import searchengine.config.SearchSettings;
+import searchengine.dto.search.SearchProfile;
 import searchengine.dto.search.SearchResponse;
 import searchengine.dto.search.SearchResult;
 import searchengine.model.*;
 import searchengine.repository.*;
+import searchengine.services.content.PageContentStore;
+import searchengine.services.dictionary.FuzzyLemmaExpander;
+import searchengine.services.dictionary.TermDictionary;
+import searchengine.services.dictionary.TermEntry;
+import searchengine.services.search.BooleanQueryEvaluator;
+import searchengine.services.search.QueryProfile;
+import searchengine.services.search.SearchAdmission;
+import searchengine.services.search.QueryParser;
+import searchengine.services.search.ScoredPage;
+import searchengine.services.search.SnippetBuilder;
+import searchengine.services.search.TopKSelector;
+import searchengine.services.storage.PostingStore;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.stream.Collectors;
 
 @Service
@@ -18,83 +41,107 @@ import java.util.stream.Collectors;
 public class SearchServiceImpl implements SearchService {
     private final SiteRepository siteRepository;
     private final PageRepository pageRepository;
-    private final LemmaRepository lemmaRepository;
-    private final IndexRepository indexRepository;
+    private final PostingStore postingStore;
     private final MorphologyService morphologyService;
+    private final PageContentStore pageContentStore;
+    private final FuzzyLemmaExpander fuzzyLemmaExpander;
+    private final TermDictionary termDictionary;
+    private final BooleanQueryEvaluator booleanQueryEvaluator;
+    private final SnippetBuilder snippetBuilder;
+    private final SearchSettings searchSettings;
+    private final SearchAdmission searchAdmission;
+    private final TopKSelector topKSelector;
     
     private static final int MAX_FREQUENCY_PERCENT = 80;
+    private static final Logger SLOW_QUERY_LOG = LoggerFactory.getLogger("searchengine.slow-queries");
+
+    private ExecutorService resultExecutor;
+
+    @PostConstruct
+    public void init() {
+        resultExecutor = Executors.newFixedThreadPool(searchSettings.getResultThreads());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        resultExecutor.shutdownNow();
+    }
 
     @Override
-    public SearchResponse search(String query, String siteUrl, int offset, int limit) {
-        SearchResponse response = new SearchResponse();
-        
+    public SearchResponse search(String query, String siteUrl, int offset, int limit, boolean debug) {
         if (query == null || query.trim().isEmpty()) {
+            SearchResponse response = new SearchResponse();
             response.setResult(false);
             response.setError("Задан пустой поисковый запрос");
             return response;
         }
+        int boundedLimit = Math.max(1, Math.min(limit, searchSettings.getMaxLimit()));
+
+        QueryProfile profile = new QueryProfile();
+        profile.phase("site");
+        Optional<Site> siteOpt = siteUrl != null && !siteUrl.isEmpty()
+                ? QueryProfile.run(profile, () -> RoutingDataSource.read(() -> siteRepository.findByUrl(siteUrl)))
+                : Optional.empty();
+        profile.phase("admission");
+        if (!searchAdmission.acquire(isHeavy(query, siteOpt.orElse(null)))) {
+            throw new SearchOverloadedException(searchAdmission.retryAfterSeconds());
+        }
+        long startNanos = System.nanoTime();
+        SearchResponse response = null;
+        try {
+            response = QueryProfile.run(profile,
+                    () -> RoutingDataSource.read(() -> searchOnReadPool(query, siteOpt, offset, boundedLimit, profile)));
+        } finally {
+            searchAdmission.release(startNanos, response != null && response.isResult());
+        }
+        SearchProfile summary = profile.finish();
+        if (summary.getTotalMillis() >= searchSettings.getSlowQueryMillis()) {
+            logSlowQuery(query, siteUrl, offset, limit, response, summary);
+        }
+        if (debug) {
+            response.setProfile(summary);
+        }
+        return response;
+    }
+
+    /**
+     * Estimates the cost of a query from the postings of its terms in the searched site, or in all
+     * sites, using only the resident term dictionary.
+     */
+    private boolean isHeavy(String query, Site site) {
+        Set<String> lemmas = morphologyService.getQueryLemmas(query);
+        long postings = termDictionary.find(lemmas, siteId(site)).stream().mapToLong(TermEntry::getFrequency).sum();
+        return postings > searchSettings.getAdmission().getHeavyQueryPostings();
+    }
+
+    private SearchResponse searchOnReadPool(String query, Optional<Site> siteOpt, int offset, int limit, QueryProfile profile) {
+        SearchResponse response = new SearchResponse();
         
         try {
-            Map<String, Integer> queryLemmas = morphologyService.getLemmas(query);
-            if (queryLemmas.isEmpty()) {
-                response.setResult(true);
-                response.setCount(0);
-                response.setData(Collections.emptyList());
-                return response;
-            }
-            
-            List<String> lemmaList = new ArrayList<>(queryLemmas.keySet());
-            
-            Optional<Site> siteOpt = siteUrl != null && !siteUrl.isEmpty() 
-                    ? siteRepository.findByUrl(siteUrl) 
-                    : Optional.empty();
-            
-            List<Lemma> foundLemmas = siteOpt.isPresent()
-                    ? lemmaRepository.findBySiteAndLemmaInOrderByFrequencyAsc(siteOpt.get(), lemmaList)
-                    : lemmaRepository.findByLemmaInOrderByFrequencyAsc(lemmaList);
-            
-            if (foundLemmas.isEmpty()) {
-                response.setResult(true);
-                response.setCount(0);
-                response.setData(Collections.emptyList());
-                return response;
-            }
-            
-            long totalPages = siteOpt.isPresent()
-                    ? pageRepository.countBySite(siteOpt.get())
-                    : pageRepository.count();
-            
-            List<Lemma> filteredLemmas = filterRareLemmas(foundLemmas, totalPages);
-            if (filteredLemmas.isEmpty()) {
-                response.setResult(true);
-                response.setCount(0);
-                response.setData(Collections.emptyList());
-                return response;
+            Candidates candidates = QueryParser.hasOperators(query)
+                    ? findCandidatesByOperators(query, siteOpt.orElse(null), profile)
+                    : findCandidatesByTerms(query, siteOpt.orElse(null), profile);
+            int[] pageIds = candidates.pageIds;
+            profile.count("candidatePages", pageIds.length);
+            if (pageIds.length == 0) {
+                return emptyResponse();
             }
             
-            List<Page> pages = findPagesByLemmas(filteredLemmas, siteOpt.orElse(null));
-            if (pages.isEmpty()) {
-                response.setResult(true);
-                response.setCount(0);
-                response.setData(Collections.emptyList());
-                return response;
-            }
+            profile.phase("topK");
+            List<ScoredPage> top = topKSelector.select(pageIds, candidates.lemmas, offset + limit, profile);
             
-            Map<Page, Float> relevanceMap = calculateRelevance(pages, filteredLemmas);
-            List<Page> sortedPages = pages.stream()
-                    .sorted((p1, p2) -> Float.compare(relevanceMap.get(p2), relevanceMap.get(p1)))
-                    .collect(Collectors.toList());
+            profile.phase("pageLoading");
+            List<ScoredPage> requested = offset < top.size() ? top.subList(offset, top.size()) : Collections.emptyList();
+            List<Page> pages = loadPages(requested);
             
-            List<SearchResult> results = new ArrayList<>();
-            int endIndex = Math.min(offset + limit, sortedPages.size());
-            for (int i = offset; i < endIndex; i++) {
-                Page page = sortedPages.get(i);
-                SearchResult result = createSearchResult(page, query, relevanceMap.get(page));
-                results.add(result);
-            }
+            profile.phase("snippets");
+            List<SearchResult> results = pages.isEmpty()
+                    ? Collections.emptyList()
+                    : buildResults(pages, requested, candidates.highlightLemmas(), profile);
+            profile.count("returnedPages", results.size());
             
             response.setResult(true);
-            response.setCount(sortedPages.size());
+            response.setCount(pageIds.length);
             response.setData(results);
         } catch (Exception e) {
             response.setResult(false);
@@ -104,155 +151,218 @@ public class SearchServiceImpl implements SearchService {
         return response;
     }
 
-    private List<Lemma> filterRareLemmas(List<Lemma> lemmas, long totalPages) {
+    private void logSlowQuery(String query, String siteUrl, int offset, int limit, SearchResponse response,
+                              SearchProfile profile) {
+        String phases = profile.getPhases().stream()
+                .map(phase -> phase.getName() + "=" + phase.getMillis() + "ms/" + phase.getDbQueries() + "q")
+                .collect(Collectors.joining(" "));
+        SLOW_QUERY_LOG.info("{}ms query=\"{}\" site={} offset={} limit={} result={} count={} dbQueries={} phases=[{}] counts={}",
+                profile.getTotalMillis(), query, siteUrl, offset, limit, response.isResult(), response.getCount(),
+                profile.getDbQueries(), phases, profile.getCounts());
+    }
+
+    private SearchResponse emptyResponse() {
+        SearchResponse response = new SearchResponse();
+        response.setResult(true);
+        response.setCount(0);
+        response.setData(Collections.emptyList());
+        return response;
+    }
+
+    private Candidates findCandidatesByTerms(String query, Site site, QueryProfile profile) {
+        profile.phase("lemmatization");
+        Set<String> queryLemmas = morphologyService.getQueryLemmas(query);
+        profile.count("queryLemmas", queryLemmas.size());
+
+        profile.phase("termLookup");
+        List<QueryTerm> terms = resolveTerms(queryLemmas, site);
+        long totalPages = termDictionary.pageCount(siteId(site));
+        List<QueryTerm> filteredTerms = filterRareLemmas(terms, totalPages);
+        List<TermEntry> filteredLemmas = filteredTerms.stream()
+                .flatMap(term -> term.lemmas.stream())
+                .collect(Collectors.toList());
+        profile.count("resolvedTerms", terms.size());
+        profile.count("droppedFrequentTerms", terms.size() - filteredTerms.size());
+
+        Candidates candidates = new Candidates(findPagesByTerms(filteredTerms, profile), filteredLemmas);
+        // frequent lemmas don't select pages but are still highlighted
+        candidates.queryLemmas.addAll(queryLemmas);
+        return candidates;
+    }
+
+    /**
+     * Queries with quotes or operators are matched on the positional postings. Frequent lemmas
+     * are not filtered out here: in a phrase they are part of what is asked for.
+     */
+    private Candidates findCandidatesByOperators(String query, Site site, QueryProfile profile) {
+        profile.phase("booleanEvaluation");
+        BooleanQueryEvaluator.Result result = booleanQueryEvaluator.evaluate(QueryParser.parse(query), site);
+        int[] pageIds = result.getPageIds().stream().mapToInt(Integer::intValue).sorted().toArray();
+        profile.count("queryLemmas", result.getLemmas().size());
+        return new Candidates(pageIds, result.getLemmas());
+    }
+
+    /**
+     * Maps every query lemma to the lemma rows matching it. A lemma absent from the index is
+     * replaced by its closest dictionary lemmas; a lemma without any match is dropped.
+     */
+    private List<QueryTerm> resolveTerms(Collection<String> queryLemmas, Site site) {
+        List<String> lemmaTexts = new ArrayList<>(queryLemmas);
+        Map<String, List<TermEntry>> foundLemmas = lemmaTexts.isEmpty()
+                ? Collections.emptyMap()
+                : termDictionary.find(lemmaTexts, siteId(site)).stream()
+                        .collect(Collectors.groupingBy(TermEntry::getLemma));
+
+        List<QueryTerm> terms = new ArrayList<>();
+        for (String text : lemmaTexts) {
+            List<TermEntry> lemmas = foundLemmas.get(text);
+            if (lemmas == null) {
+                List<String> expansions = fuzzyLemmaExpander.expand(text, site == null ? null : site.getId());
+                lemmas = expansions.isEmpty() ? Collections.emptyList() : termDictionary.find(expansions, siteId(site));
+            }
+            if (!lemmas.isEmpty()) {
+                terms.add(new QueryTerm(lemmas));
+            }
+        }
+        return terms;
+    }
+
+    private static Integer siteId(Site site) {
+        return site == null ? null : site.getId();
+    }
+
+    private List<QueryTerm> filterRareLemmas(List<QueryTerm> terms, long totalPages) {
         if (totalPages == 0) {
-            return lemmas;
+            return terms;
         }
         
         int threshold = (int) (totalPages * MAX_FREQUENCY_PERCENT / 100.0);
-        return lemmas.stream()
-                .filter(lemma -> lemma.getFrequency() < threshold)
+        return terms.stream()
+                .filter(term -> term.frequency() < threshold)
+                .sorted(Comparator.comparingInt(QueryTerm::frequency))
                 .collect(Collectors.toList());
     }
 
-    private List<Page> findPagesByLemmas(List<Lemma> lemmas, Site site) {
-        if (lemmas.isEmpty()) {
-            return Collections.emptyList();
-        }
-        
-        List<Integer> lemmaIds = lemmas.stream().map(Lemma::getId).collect(Collectors.toList());
-        List<Integer> pageIds = indexRepository.findPageIdsByAllLemmaIds(lemmaIds, lemmas.size());
-        
-        if (pageIds.isEmpty()) {
-            return Collections.emptyList();
-        }
-        
-        List<Page> pages = pageRepository.findByIdIn(pageIds);
-        
-        if (site != null) {
-            pages = pages.stream()
-                    .filter(p -> p.getSite().getId() == site.getId())
-                    .collect(Collectors.toList());
+    /**
+     * Ids of the pages containing every term, where a term matches if the page has any of its
+     * lemma rows. Only page ids are read here, for the exact count; ranks are read by
+     * {@link TopKSelector} for the best pages only. Terms are intersected from the rarest one,
+     * so the candidate set only shrinks. Lemma rows belong to one site, so a site search gets
+     * pages of that site only.
+     */
+    private int[] findPagesByTerms(List<QueryTerm> terms, QueryProfile profile) {
+        profile.phase("postingIntersection");
+        int[] pageIds = null;
+        for (QueryTerm term : terms) {
+            List<Integer> termPageIds = postingStore.findPageIds(term.lemmaIds());
+            pageIds = pageIds == null
+                    ? termPageIds.stream().mapToInt(Integer::intValue).toArray()
+                    : intersect(pageIds, termPageIds);
+            if (pageIds.length == 0) {
+                break;
+            }
         }
-        
-        return pages;
+        return pageIds == null ? new int[0] : pageIds;
     }
 
-    private Map<Page, Float> calculateRelevance(List<Page> pages, List<Lemma> lemmas) {
-        Map<Page, Float> absoluteRelevance = new HashMap<>();
-        float maxRelevance = 0;
-        
-        List<Integer> lemmaIds = lemmas.stream().map(Lemma::getId).collect(Collectors.toList());
-        
-        for (Page page : pages) {
-            Float relevance = indexRepository.calculateAbsoluteRelevanceByIds(page.getId(), lemmaIds);
-            if (relevance == null) {
-                relevance = 0f;
+    private static int[] intersect(int[] pageIds, List<Integer> otherPageIds) {
+        int[] result = new int[Math.min(pageIds.length, otherPageIds.size())];
+        int count = 0;
+        int i = 0;
+        for (int other : otherPageIds) {
+            while (i < pageIds.length && pageIds[i] < other) {
+                i++;
+            }
+            if (i == pageIds.length) {
+                break;
             }
-            absoluteRelevance.put(page, relevance);
-            if (relevance > maxRelevance) {
-                maxRelevance = relevance;
+            if (pageIds[i] == other) {
+                result[count++] = other;
             }
         }
-        
-        if (maxRelevance == 0) {
-            return absoluteRelevance;
+        return Arrays.copyOf(result, count);
+    }
+
+    /** @return the pages in the order of the scored ones; pages deleted meanwhile are left out */
+    private List<Page> loadPages(List<ScoredPage> scored) {
+        if (scored.isEmpty()) {
+            return Collections.emptyList();
         }
-        
-        Map<Page, Float> relativeRelevance = new HashMap<>();
-        for (Map.Entry<Page, Float> entry : absoluteRelevance.entrySet()) {
-            relativeRelevance.put(entry.getKey(), entry.getValue() / maxRelevance);
+        Map<Integer, Page> pages = pageRepository.findByIdIn(scored.stream()
+                        .map(ScoredPage::getPageId)
+                        .collect(Collectors.toList()))
+                .stream()
+                .collect(Collectors.toMap(Page::getId, page -> page));
+        return scored.stream()
+                .map(page -> pages.get(page.getPageId()))
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Builds the requested page of results in parallel. Site fields are read on the calling
+     * thread, since the pages belong to its persistence context.
+     */
+    private List<SearchResult> buildResults(List<Page> pages, List<ScoredPage> scored, Set<String> queryLemmas,
+                                            QueryProfile profile) {
+        Map<Integer, Float> scores = scored.stream()
+                .collect(Collectors.toMap(ScoredPage::getPageId, ScoredPage::getScore));
+        List<CompletableFuture<SearchResult>> futures = new ArrayList<>();
+        for (Page page : pages) {
+            SearchResult result = new SearchResult();
+            result.setSite(page.getSite().getUrl());
+            result.setSiteName(page.getSite().getName());
+            result.setUri(page.getPath());
+            result.setRelevance(scores.get(page.getId()));
+            futures.add(CompletableFuture.supplyAsync(() -> QueryProfile.run(profile,
+                    () -> RoutingDataSource.read(() -> fillContent(result, page, queryLemmas))), resultExecutor));
         }
-        
-        return relativeRelevance;
+        return futures.stream().map(CompletableFuture::join).collect(Collectors.toList());
     }
 
-    private SearchResult createSearchResult(Page page, String query, float relevance) {
-        SearchResult result = new SearchResult();
-        result.setSite(page.getSite().getUrl());
-        result.setSiteName(page.getSite().getName());
-        result.setUri(page.getPath());
-        result.setRelevance(relevance);
-        
-        Document doc = Jsoup.parse(page.getContent());
+    private SearchResult fillContent(SearchResult result, Page page, Set<String> queryLemmas) {
+        Document doc = Jsoup.parse(pageContentStore.load(page));
         Element titleElement = doc.selectFirst("title");
-        result.setTitle(escapeHtml(titleElement != null ? titleElement.text() : ""));
-        
-        String snippet = generateSnippet(doc, query);
-        result.setSnippet(snippet);
-        
+        result.setTitle(SnippetBuilder.escapeHtml(titleElement != null ? titleElement.text() : ""));
+        result.setSnippet(snippetBuilder.build(doc.body().text(), queryLemmas));
         return result;
     }
 
-    private String generateSnippet(Document doc, String query) {
-        String text = doc.body().text();
-        if (text == null || text.isEmpty()) {
-            return "";
-        }
-        
-        String[] queryWords = query.toLowerCase().split("\\s+");
-        
-        int snippetLength = 200;
-        int bestStart = findBestSnippetStart(text, queryWords, snippetLength);
-        
-        int start = Math.max(0, bestStart - 50);
-        int end = Math.min(text.length(), bestStart + snippetLength);
-        String snippet = text.substring(start, end);
-        
-        if (start > 0) {
-            snippet = "..." + snippet;
+    private static class Candidates {
+        /** Ascending ids of the matching pages. */
+        private final int[] pageIds;
+        /** Lemma rows whose ranks make up the text relevance. */
+        private final List<TermEntry> lemmas;
+        private final Set<String> queryLemmas = new HashSet<>();
+
+        Candidates(int[] pageIds, List<TermEntry> lemmas) {
+            this.pageIds = pageIds;
+            this.lemmas = lemmas;
         }
-        if (end < text.length()) {
-            snippet = snippet + "...";
+
+        Set<String> highlightLemmas() {
+            lemmas.forEach(lemma -> queryLemmas.add(lemma.getLemma()));
+            return queryLemmas;
         }
-        
-        // According to evaluation criteria: snippets must be readable text without HTML tags.
-        // We still HTML-escape it because the frontend inserts snippet into the DOM as HTML.
-        return escapeHtml(snippet);
     }
 
-    private int findBestSnippetStart(String text, String[] queryWords, int snippetLength) {
-        String lowerText = text.toLowerCase();
-        int bestStart = 0;
-        int maxMatches = 0;
-        
-        for (int i = 0; i <= text.length() - snippetLength; i += 10) {
-            String snippet = lowerText.substring(i, Math.min(i + snippetLength, text.length()));
-            int matches = 0;
-            for (String word : queryWords) {
-                if (morphologyService.isRussianWord(word)) {
-                    List<String> normalForms = morphologyService.getNormalForms(word);
-                    for (String normalForm : normalForms) {
-                        if (snippet.contains(normalForm.toLowerCase())) {
-                            matches++;
-                            break;
-                        }
-                    }
-                } else {
-                    if (snippet.contains(word.toLowerCase())) {
-                        matches++;
-                    }
-                }
-            }
-            if (matches > maxMatches) {
-                maxMatches = matches;
-                bestStart = i;
-            }
+    /**
+     * One word of the query: the lemma rows it matches on the searched sites, including
+     * fuzzy expansions.
+     */
+    private static class QueryTerm {
+        private final List<TermEntry> lemmas;
+
+        QueryTerm(List<TermEntry> lemmas) {
+            this.lemmas = lemmas;
         }
-        
-        return bestStart;
-    }
 
-    private String escapeHtml(String input) {
-        if (input == null || input.isEmpty()) {
-            return "";
+        int frequency() {
+            return lemmas.stream().mapToInt(TermEntry::getFrequency).sum();
+        }
+
+        List<Integer> lemmaIds() {
+            return lemmas.stream().map(TermEntry::getId).collect(Collectors.toList());
         }
-        return input
-                .replace("&", "&amp;")
-                .replace("<", "&lt;")
-                .replace(">", "&gt;")
-                .replace("\"", "&quot;")
-                .replace("'", "&#39;");
     }
 }
-
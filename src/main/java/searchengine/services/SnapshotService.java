@@ -0,0 +1,16 @@
+package searchengine.services;
+
+import searchengine.dto.snapshot.SnapshotResponse;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+public interface SnapshotService {
+    /** @return error message when a snapshot cannot be taken now, otherwise null */
+    String checkExport();
+
+    void exportSnapshot(OutputStream output) throws IOException;
+
+    SnapshotResponse importSnapshot(InputStream input);
+}
@@ -0,0 +1,145 @@
+package searchengine.services;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import searchengine.config.RoutingDataSource;
+import searchengine.dto.snapshot.SnapshotResponse;
+import searchengine.repository.PageHistoryRepository;
+import searchengine.repository.PageRepository;
+import searchengine.repository.SiteRepository;
+import searchengine.services.dictionary.LemmaDictionaries;
+import searchengine.services.dictionary.TermDictionary;
+import searchengine.services.rank.StaticScores;
+import searchengine.services.scheduler.IndexingScheduler;
+import searchengine.services.snapshot.SnapshotCounts;
+import searchengine.services.snapshot.SnapshotExporter;
+import searchengine.services.snapshot.SnapshotImporter;
+import searchengine.services.storage.PostingStore;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class SnapshotServiceImpl implements SnapshotService {
+    private final SiteRepository siteRepository;
+    private final PageRepository pageRepository;
+    private final PageHistoryRepository pageHistoryRepository;
+    private final IndexingService indexingService;
+    private final SnapshotExporter snapshotExporter;
+    private final SnapshotImporter snapshotImporter;
+    private final LemmaDictionaries lemmaDictionaries;
+    private final TermDictionary termDictionary;
+    private final StaticScores staticScores;
+    private final PostingStore postingStore;
+    private final IndexingScheduler indexingScheduler;
+    private final TransactionTemplate transactionTemplate;
+
+    @Override
+    public String checkExport() {
+        return indexingService.isIndexing() ? "Индексация уже запущена" : null;
+    }
+
+    @Override
+    public void exportSnapshot(OutputStream output) throws IOException {
+        long start = System.currentTimeMillis();
+        SnapshotCounts counts;
+        try {
+            counts = RoutingDataSource.read(() -> {
+                try {
+                    return snapshotExporter.export(output);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        log.info("Snapshot exported in {} ms: {} sites, {} pages, {} lemmas, {} postings, {} link lists, "
+                        + "{} site ranks, {} history rows", System.currentTimeMillis() - start, counts.getSites(),
+                counts.getPages(), counts.getLemmas(), counts.getPostings(), counts.getPageLinks(),
+                counts.getSiteRanks(), counts.getPageHistory());
+    }
+
+    /**
+     * Loads a snapshot into an empty index. The upload is spooled to a temporary file first,
+     * which is then validated and loaded through memory mapping in one transaction, so a load
+     * that fails halfway leaves the index empty. No indexing job can start meanwhile.
+     */
+    @Override
+    public SnapshotResponse importSnapshot(InputStream input) {
+        SnapshotResponse response = new SnapshotResponse();
+        if (!indexingScheduler.beginExclusive()) {
+            response.setError("Индексация уже запущена");
+            return response;
+        }
+        Path file = null;
+        try {
+            if (siteRepository.count() > 0 || pageRepository.count() > 0 || pageHistoryRepository.count() > 0
+                    || !postingStore.scan(0, 0, 1).isEmpty()) {
+                response.setError("Снимок можно загрузить только в пустой индекс");
+                return response;
+            }
+            file = Files.createTempFile("search-snapshot", ".bin");
+            Files.copy(input, file, StandardCopyOption.REPLACE_EXISTING);
+            long start = System.currentTimeMillis();
+            snapshotImporter.validate(file);
+            SnapshotCounts counts = loadInTransaction(file);
+            log.info("Snapshot imported in {} ms: {} sites, {} pages, {} lemmas, {} postings, {} link lists, "
+                            + "{} site ranks, {} history rows", System.currentTimeMillis() - start, counts.getSites(),
+                    counts.getPages(), counts.getLemmas(), counts.getPostings(), counts.getPageLinks(),
+                    counts.getSiteRanks(), counts.getPageHistory());
+            siteRepository.findAll().forEach(site -> {
+                termDictionary.loadSite(site.getId());
+                lemmaDictionaries.refreshSite(site.getId());
+                staticScores.loadSite(site.getId());
+            });
+
+            response.setResult(true);
+            response.setSites(counts.getSites());
+            response.setPages(counts.getPages());
+            response.setLemmas(counts.getLemmas());
+            response.setPostings(counts.getPostings());
+        } catch (Exception e) {
+            log.warn("Snapshot import failed", e);
+            response.setError("Ошибка загрузки снимка: " + e.getMessage());
+        } finally {
+            indexingScheduler.endExclusive();
+            deleteQuietly(file);
+        }
+        return response;
+    }
+
+    private SnapshotCounts loadInTransaction(Path file) throws IOException {
+        try {
+            return transactionTemplate.execute(status -> {
+                try {
+                    return snapshotImporter.load(file);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private void deleteQuietly(Path file) {
+        if (file == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Could not delete {}", file, e);
+        }
+    }
+}
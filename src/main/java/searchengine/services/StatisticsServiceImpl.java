@@ -2,6 +2,7 @@ package searchengine.services;
 
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
+import searchengine.config.RoutingDataSource;
 import searchengine.dto.statistics.DetailedStatisticsItem;
 import searchengine.dto.statistics.StatisticsData;
 import searchengine.dto.statistics.StatisticsResponse;
@@ -27,6 +28,10 @@ public class StatisticsServiceImpl implements StatisticsService {
 
     @Override
     public StatisticsResponse getStatistics() {
+        return RoutingDataSource.read(this::collectStatistics);
+    }
+
+    private StatisticsResponse collectStatistics() {
         TotalStatistics total = new TotalStatistics();
         List<Site> sites = siteRepository.findAll();
         total.setSites(sites.size());
@@ -0,0 +1,39 @@
+package searchengine.services;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import searchengine.dto.suggest.SuggestResponse;
+import searchengine.services.dictionary.LemmaDictionaries;
+import searchengine.services.dictionary.LemmaDictionary;
+
+import java.util.Locale;
+
+/**
+ * Serves prefix completions from the in-memory lemma dictionaries.
+ */
+@Service
+@RequiredArgsConstructor
+public class SuggestServiceImpl implements SuggestService {
+    private static final int MAX_LIMIT = 50;
+
+    private final LemmaDictionaries lemmaDictionaries;
+
+    @Override
+    public SuggestResponse suggest(String prefix, String siteUrl, int limit) {
+        SuggestResponse response = new SuggestResponse();
+        if (prefix == null || prefix.isBlank()) {
+            response.setResult(false);
+            response.setError("Задан пустой префикс");
+            return response;
+        }
+
+        LemmaDictionary dictionary = siteUrl != null && !siteUrl.isEmpty()
+                ? lemmaDictionaries.getBySiteUrl(siteUrl)
+                : lemmaDictionaries.get(null);
+
+        int boundedLimit = Math.max(1, Math.min(limit, MAX_LIMIT));
+        response.setResult(true);
+        response.setData(dictionary.complete(prefix.trim().toLowerCase(Locale.ROOT), boundedLimit));
+        return response;
+    }
+}
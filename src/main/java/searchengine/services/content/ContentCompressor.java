@@ -0,0 +1,116 @@
+package searchengine.services.content;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import searchengine.config.ContentStoreSettings;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.Adler32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * zlib compression with a preset dictionary shared by all pages. Markup that every page repeats
+ * is then referenced from the dictionary instead of being stored once per page. The zlib header
+ * records the dictionary checksum, so data written with another dictionary is detected on read.
+ */
+@Component
+@RequiredArgsConstructor
+public class ContentCompressor {
+    private static final String BUILT_IN_DICTIONARY = "<!DOCTYPE html><html lang=\"ru\"><head>"
+            + "<meta charset=\"utf-8\"><meta http-equiv=\"X-UA-Compatible\" content=\"IE=edge\">"
+            + "<meta name=\"viewport\" content=\"width=device-width, initial-scale=1\">"
+            + "<meta name=\"description\" content=\"<meta property=\"og:title\" content=\""
+            + "<meta property=\"og:image\" content=\"https://<link rel=\"stylesheet\" href=\""
+            + "<link rel=\"icon\" type=\"image/png\" href=\"<script type=\"text/javascript\" src=\""
+            + "<script async src=\"</script><noscript></noscript></head><body class=\""
+            + "<header class=\"header\"><nav class=\"nav\"><ul class=\"menu\"><li class=\"menu__item\">"
+            + "<a class=\"link\" href=\"/</a></li></ul></nav></header><main class=\"main\">"
+            + "<section class=\"section\"><article class=\"article\"><h1 class=\"title\"></h1>"
+            + "<h2></h2><h3></h3><p></p><br><strong></strong><span class=\"</span>"
+            + "<img src=\"\" alt=\"\" loading=\"lazy\" width=\"\" height=\"\"><picture><source srcset=\""
+            + "<button type=\"button\" class=\"button\"></button><input type=\"text\" name=\""
+            + "<form action=\"\" method=\"post\"></form><footer class=\"footer\"></footer>"
+            + "<div class=\"container\"><div class=\"row\"><div class=\"col\"></div></div></div>"
+            + "</article></section></main></body></html>";
+
+    private final ContentStoreSettings settings;
+    private volatile byte[] dictionary;
+
+    public byte[] compress(String html) {
+        Deflater deflater = new Deflater(settings.getCompressionLevel());
+        try {
+            deflater.setDictionary(dictionary());
+            deflater.setInput(html.getBytes(StandardCharsets.UTF_8));
+            deflater.finish();
+            ByteArrayOutputStream output = new ByteArrayOutputStream(html.length() / 4 + 64);
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                output.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return output.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    public String decompress(byte[] data) {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data);
+            ByteArrayOutputStream output = new ByteArrayOutputStream(data.length * 4);
+            byte[] buffer = new byte[8192];
+            while (!inflater.finished()) {
+                int length = inflater.inflate(buffer);
+                if (length == 0 && inflater.needsDictionary()) {
+                    inflater.setDictionary(dictionaryFor(inflater.getAdler()));
+                } else if (length == 0 && inflater.needsInput()) {
+                    throw new DataFormatException("Truncated page content");
+                }
+                output.write(buffer, 0, length);
+            }
+            return output.toString(StandardCharsets.UTF_8);
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Corrupted page content", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private byte[] dictionaryFor(int adler) throws DataFormatException {
+        byte[] current = dictionary();
+        Adler32 checksum = new Adler32();
+        checksum.update(current);
+        if ((int) checksum.getValue() != adler) {
+            throw new DataFormatException("Page content was compressed with another dictionary");
+        }
+        return current;
+    }
+
+    private byte[] dictionary() {
+        byte[] loaded = dictionary;
+        if (loaded == null) {
+            loaded = loadDictionary();
+            dictionary = loaded;
+        }
+        return loaded;
+    }
+
+    private byte[] loadDictionary() {
+        String file = settings.getDictionaryFile();
+        if (file == null || file.isBlank()) {
+            return BUILT_IN_DICTIONARY.getBytes(StandardCharsets.UTF_8);
+        }
+        try {
+            return Files.readAllBytes(Path.of(file));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read content dictionary " + file, e);
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package searchengine.services.content;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import searchengine.config.ContentStoreSettings;
+import searchengine.model.Page;
+import searchengine.model.PageContent;
+import searchengine.repository.PageContentRepository;
+import searchengine.repository.PageRepository;
+
+/**
+ * Keeps page HTML either inline in {@code page.content} or deflated in the {@code page_content}
+ * side table, in which case the page row holds an empty string. Reading works for both layouts,
+ * so the type can be switched on a populated database.
+ */
+@Component
+@RequiredArgsConstructor
+public class PageContentStore {
+    private final ContentStoreSettings settings;
+    private final PageRepository pageRepository;
+    private final PageContentRepository pageContentRepository;
+    private final ContentCompressor contentCompressor;
+
+    public Page save(Page page, String html) {
+        if (settings.getType() == ContentStoreSettings.ContentStoreType.INLINE) {
+            // only a stored page with empty inline content can have a side table row
+            boolean mayHaveSideRow = page.getId() != 0
+                    && (page.getContent() == null || page.getContent().isEmpty());
+            page.setContent(html);
+            Page saved = pageRepository.save(page);
+            if (mayHaveSideRow) {
+                pageContentRepository.findById(saved.getId()).ifPresent(pageContentRepository::delete);
+            }
+            return saved;
+        }
+        page.setContent("");
+        Page saved = pageRepository.save(page);
+        PageContent content = pageContentRepository.findById(saved.getId()).orElseGet(PageContent::new);
+        content.setPageId(saved.getId());
+        content.setData(contentCompressor.compress(html));
+        pageContentRepository.save(content);
+        return saved;
+    }
+
+    public String load(Page page) {
+        if (page.getContent() != null && !page.getContent().isEmpty()) {
+            return page.getContent();
+        }
+        return pageContentRepository.findById(page.getId())
+                .map(content -> contentCompressor.decompress(content.getData()))
+                .orElse("");
+    }
+}
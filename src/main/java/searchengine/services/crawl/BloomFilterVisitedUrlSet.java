@@ -0,0 +1,241 @@
+package searchengine.services.crawl;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Scalable Bloom filter: a chain of slices where each next slice is twice as large and has a
+ * tighter false-positive rate, so the compound rate stays below the configured one however many
+ * URLs are added. A false positive means a page is considered visited and is not crawled.
+ * Slices larger than {@code maxHeapBytes} are memory-mapped from a temporary file in
+ * {@code spillDirectory} when it is set; a mapped slice is split into segments of at most
+ * 1 GiB, since one mapping cannot exceed 2 GiB.
+ */
+public class BloomFilterVisitedUrlSet implements VisitedUrlSet {
+    private static final double TIGHTENING_RATIO = 0.5;
+    private static final int GROWTH_FACTOR = 2;
+    private static final double LN2 = Math.log(2);
+    private static final int SEGMENT_SHIFT = 30;
+    private static final long MAX_HEAP_WORDS = Integer.MAX_VALUE - 8;
+
+    private final List<Slice> slices = new ArrayList<>();
+    private final int initialCapacity;
+    private final double falsePositiveRate;
+    private final Path spillDirectory;
+    private final long maxHeapBytes;
+    private long size;
+
+    public BloomFilterVisitedUrlSet(int expectedUrls, double falsePositiveRate, Path spillDirectory, long maxHeapBytes) {
+        if (falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("False positive rate must be in (0, 1): " + falsePositiveRate);
+        }
+        this.initialCapacity = Math.max(expectedUrls, 1024);
+        this.falsePositiveRate = falsePositiveRate;
+        this.spillDirectory = spillDirectory;
+        this.maxHeapBytes = maxHeapBytes;
+    }
+
+    @Override
+    public synchronized boolean add(String url) {
+        long fingerprint = UrlFingerprint.of(url);
+        if (containsFingerprint(fingerprint)) {
+            return false;
+        }
+        Slice slice = slices.isEmpty() ? null : slices.get(slices.size() - 1);
+        if (slice == null || slice.count >= slice.capacity) {
+            slice = addSlice();
+        }
+        slice.put(fingerprint);
+        size++;
+        return true;
+    }
+
+    @Override
+    public synchronized boolean contains(String url) {
+        return containsFingerprint(UrlFingerprint.of(url));
+    }
+
+    @Override
+    public synchronized long size() {
+        return size;
+    }
+
+    @Override
+    public synchronized long memoryBytes() {
+        return slices.stream().mapToLong(slice -> slice.bits.sizeBytes()).sum();
+    }
+
+    @Override
+    public synchronized void close() {
+        slices.forEach(slice -> slice.bits.close());
+        slices.clear();
+    }
+
+    private boolean containsFingerprint(long fingerprint) {
+        for (Slice slice : slices) {
+            if (slice.mightContain(fingerprint)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Slice addSlice() {
+        int index = slices.size();
+        long capacity = initialCapacity * (long) Math.pow(GROWTH_FACTOR, index);
+        double sliceRate = falsePositiveRate * (1 - TIGHTENING_RATIO) * Math.pow(TIGHTENING_RATIO, index);
+        long bitCount = (long) Math.ceil(-capacity * Math.log(sliceRate) / (LN2 * LN2));
+        int hashCount = Math.max(1, (int) Math.round((double) bitCount / capacity * LN2));
+        long wordCount = (bitCount + Long.SIZE - 1) / Long.SIZE;
+        Slice slice = new Slice(capacity, hashCount, wordCount * Long.SIZE, allocate(wordCount * Long.BYTES));
+        slices.add(slice);
+        return slice;
+    }
+
+    private BitArray allocate(long bytes) {
+        if (spillDirectory == null || bytes <= maxHeapBytes) {
+            return new HeapBitArray(bytes / Long.BYTES);
+        }
+        return new MappedBitArray(spillDirectory, bytes);
+    }
+
+    private static class Slice {
+        private final long capacity;
+        private final int hashCount;
+        private final long bitCount;
+        private final BitArray bits;
+        private long count;
+
+        Slice(long capacity, int hashCount, long bitCount, BitArray bits) {
+            this.capacity = capacity;
+            this.hashCount = hashCount;
+            this.bitCount = bitCount;
+            this.bits = bits;
+        }
+
+        void put(long fingerprint) {
+            long step = UrlFingerprint.mix(fingerprint) | 1;
+            for (int i = 0; i < hashCount; i++) {
+                bits.set(Math.floorMod(fingerprint + i * step, bitCount));
+            }
+            count++;
+        }
+
+        boolean mightContain(long fingerprint) {
+            long step = UrlFingerprint.mix(fingerprint) | 1;
+            for (int i = 0; i < hashCount; i++) {
+                if (!bits.get(Math.floorMod(fingerprint + i * step, bitCount))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private interface BitArray {
+        boolean get(long index);
+
+        void set(long index);
+
+        long sizeBytes();
+
+        void close();
+    }
+
+    private static class HeapBitArray implements BitArray {
+        private final long[] words;
+
+        HeapBitArray(long wordCount) {
+            if (wordCount > MAX_HEAP_WORDS) {
+                throw new IllegalStateException("Bloom filter slice of " + wordCount * Long.BYTES
+                        + " bytes does not fit a heap array, set a spill directory");
+            }
+            this.words = new long[(int) wordCount];
+        }
+
+        @Override
+        public boolean get(long index) {
+            return (words[(int) (index >>> 6)] & (1L << index)) != 0;
+        }
+
+        @Override
+        public void set(long index) {
+            words[(int) (index >>> 6)] |= 1L << index;
+        }
+
+        @Override
+        public long sizeBytes() {
+            return (long) words.length * Long.BYTES;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    /** One file mapped in segments of 2^SEGMENT_SHIFT bytes; words never straddle two segments. */
+    private static class MappedBitArray implements BitArray {
+        private static final long SEGMENT_MASK = (1L << SEGMENT_SHIFT) - 1;
+
+        private final Path file;
+        private final MappedByteBuffer[] segments;
+        private final long bytes;
+
+        MappedBitArray(Path directory, long bytes) {
+            this.bytes = bytes;
+            try {
+                Files.createDirectories(directory);
+                this.file = Files.createTempFile(directory, "visited-", ".bloom");
+                try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                    this.segments = new MappedByteBuffer[(int) ((bytes + SEGMENT_MASK) >>> SEGMENT_SHIFT)];
+                    for (int i = 0; i < segments.length; i++) {
+                        long position = (long) i << SEGMENT_SHIFT;
+                        segments[i] = channel.map(FileChannel.MapMode.READ_WRITE, position,
+                                Math.min(bytes - position, 1L << SEGMENT_SHIFT));
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot map Bloom filter slice in " + directory, e);
+            }
+        }
+
+        @Override
+        public boolean get(long index) {
+            long offset = (index >>> 6) * Long.BYTES;
+            return (segment(offset).getLong((int) (offset & SEGMENT_MASK)) & (1L << index)) != 0;
+        }
+
+        @Override
+        public void set(long index) {
+            long offset = (index >>> 6) * Long.BYTES;
+            MappedByteBuffer segment = segment(offset);
+            int position = (int) (offset & SEGMENT_MASK);
+            segment.putLong(position, segment.getLong(position) | 1L << index);
+        }
+
+        @Override
+        public long sizeBytes() {
+            return bytes;
+        }
+
+        private MappedByteBuffer segment(long offset) {
+            return segments[(int) (offset >>> SEGMENT_SHIFT)];
+        }
+
+        @Override
+        public void close() {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                // the file lives in a temporary directory, leaving it behind is harmless
+            }
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package searchengine.services.crawl;
+
+import searchengine.config.CrawlerSettings;
+import searchengine.config.Site;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits of one site crawl; a limit of 0 means none. Site settings override the defaults. The
+ * duration counts only the time the crawl actually ran, between {@link #resume()} and
+ * {@link #pause()}, not the time its job waited for a worker behind other sites.
+ */
+public class CrawlBudget {
+    private final long maxPages;
+    private final long maxBytes;
+    private final long maxMillis;
+    private long pages;
+    private long bytes;
+    private long runNanos;
+    /** nanoTime of the last resume, 0 while paused */
+    private long resumedAt;
+
+    public CrawlBudget(CrawlerSettings.Budget defaults, Site site) {
+        this.maxPages = site.getMaxPages() != null ? site.getMaxPages() : defaults.getMaxPages();
+        this.maxBytes = site.getMaxBytes() != null ? site.getMaxBytes() : defaults.getMaxBytes();
+        long minutes = site.getMaxDurationMinutes() != null
+                ? site.getMaxDurationMinutes()
+                : defaults.getMaxDurationMinutes();
+        this.maxMillis = minutes * 60_000;
+    }
+
+    public void resume() {
+        resumedAt = System.nanoTime();
+    }
+
+    public void pause() {
+        if (resumedAt != 0) {
+            runNanos += System.nanoTime() - resumedAt;
+            resumedAt = 0;
+        }
+    }
+
+    /** @param pageBytes bytes of the body as read, not characters of the decoded text */
+    public void spend(long pageBytes) {
+        pages++;
+        bytes += pageBytes;
+    }
+
+    /** @return what ran out, or null while the crawl may go on */
+    public String exhausted() {
+        if (maxPages > 0 && pages >= maxPages) {
+            return pages + " pages";
+        }
+        if (maxBytes > 0 && bytes >= maxBytes) {
+            return bytes + " bytes";
+        }
+        if (maxMillis > 0 && TimeUnit.NANOSECONDS.toMillis(ranNanos()) >= maxMillis) {
+            return maxMillis / 60_000 + " minutes";
+        }
+        return null;
+    }
+
+    private long ranNanos() {
+        return resumedAt != 0 ? runNanos + System.nanoTime() - resumedAt : runNanos;
+    }
+}
@@ -0,0 +1,134 @@
+package searchengine.services.crawl;
+
+import lombok.Getter;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Pages of one site waiting to be fetched, ordered by an online importance estimate (OPIC,
+ * Abiteboul et al.): a fetched page hands its cash out in equal shares to the pages it links to,
+ * and the page holding the most cash is fetched next. The main page starts with all the cash, so
+ * pages that many well-linked pages point to rise to the front while the crawl goes on. Among
+ * pages with equal cash, a newer sitemap {@code lastmod} goes first, then discovery order.
+ *
+ * <p>A binary heap with each entry's position stored in the entry, so that adding cash to a
+ * waiting page moves it up in place instead of queueing a second copy.
+ */
+public class CrawlFrontier {
+    private static final Comparator<Entry> ORDER = Comparator.comparingDouble(Entry::getCash).reversed()
+            .thenComparing(Entry::getLastModified, Comparator.nullsLast(Comparator.reverseOrder()))
+            .thenComparingLong(entry -> entry.sequence);
+
+    private final List<Entry> heap = new ArrayList<>();
+    private final Map<String, Entry> waiting = new HashMap<>();
+    private long sequence;
+
+    public void offer(String path, String url, int depth, Instant lastModified, double cash) {
+        Entry entry = new Entry(path, url, depth, lastModified, cash, sequence++);
+        waiting.put(path, entry);
+        entry.position = heap.size();
+        heap.add(entry);
+        siftUp(entry.position);
+    }
+
+    /**
+     * Adds cash to a waiting page and keeps the shallowest depth it was reached at.
+     *
+     * @return false when the page is not waiting in the frontier
+     */
+    public boolean addCash(String path, double cash, int depth) {
+        Entry entry = waiting.get(path);
+        if (entry == null) {
+            return false;
+        }
+        entry.depth = Math.min(entry.depth, depth);
+        if (cash > 0) {
+            entry.cash += cash;
+            siftUp(entry.position);
+        }
+        return true;
+    }
+
+    /** @return the page with the most cash, or null when the frontier is empty */
+    public Entry poll() {
+        if (heap.isEmpty()) {
+            return null;
+        }
+        Entry first = heap.get(0);
+        Entry last = heap.remove(heap.size() - 1);
+        if (last != first) {
+            place(last, 0);
+            siftDown(0);
+        }
+        waiting.remove(first.path);
+        return first;
+    }
+
+    public int size() {
+        return heap.size();
+    }
+
+    private void siftUp(int position) {
+        Entry entry = heap.get(position);
+        while (position > 0) {
+            int parent = (position - 1) / 2;
+            if (ORDER.compare(entry, heap.get(parent)) >= 0) {
+                break;
+            }
+            place(heap.get(parent), position);
+            position = parent;
+        }
+        place(entry, position);
+    }
+
+    private void siftDown(int position) {
+        Entry entry = heap.get(position);
+        int size = heap.size();
+        while (true) {
+            int child = 2 * position + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && ORDER.compare(heap.get(child + 1), heap.get(child)) < 0) {
+                child++;
+            }
+            if (ORDER.compare(heap.get(child), entry) >= 0) {
+                break;
+            }
+            place(heap.get(child), position);
+            position = child;
+        }
+        place(entry, position);
+    }
+
+    private void place(Entry entry, int position) {
+        heap.set(position, entry);
+        entry.position = position;
+    }
+
+    @Getter
+    public static class Entry {
+        private final String path;
+        private final String url;
+        private int depth;
+        /** From the sitemap, null for pages found by links. */
+        private final Instant lastModified;
+        private double cash;
+        private final long sequence;
+        private int position;
+
+        private Entry(String path, String url, int depth, Instant lastModified, double cash, long sequence) {
+            this.path = path;
+            this.url = url;
+            this.depth = depth;
+            this.lastModified = lastModified;
+            this.cash = cash;
+            this.sequence = sequence;
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package searchengine.services.crawl;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class ExactVisitedUrlSet implements VisitedUrlSet {
+    private static final int STRING_OVERHEAD_BYTES = 40;
+    private static final int ENTRY_OVERHEAD_BYTES = 48;
+
+    private final Set<String> urls = ConcurrentHashMap.newKeySet();
+
+    @Override
+    public boolean add(String url) {
+        return urls.add(url);
+    }
+
+    @Override
+    public boolean contains(String url) {
+        return urls.contains(url);
+    }
+
+    @Override
+    public long size() {
+        return urls.size();
+    }
+
+    @Override
+    public long memoryBytes() {
+        long bytes = 0;
+        for (String url : urls) {
+            bytes += STRING_OVERHEAD_BYTES + ENTRY_OVERHEAD_BYTES + url.length();
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,48 @@
+package searchengine.services.crawl;
+
+import lombok.Getter;
+import org.jsoup.nodes.Document;
+
+@Getter
+public class FetchResult {
+    private final int statusCode;
+    /** The body as the server sent it, decoded with the charset the parser used. */
+    private final String html;
+    /** Body bytes read after decompression. */
+    private final long bodySize;
+    private final Document document;
+    private final String skipReason;
+    private String text;
+
+    private FetchResult(int statusCode, String html, long bodySize, Document document, String skipReason) {
+        this.statusCode = statusCode;
+        this.html = html;
+        this.bodySize = bodySize;
+        this.document = document;
+        this.skipReason = skipReason;
+    }
+
+    static FetchResult fetched(int statusCode, byte[] body, Document document) {
+        String html = new String(body, document.charset());
+        if (html.startsWith("\uFEFF")) {
+            html = html.substring(1);
+        }
+        return new FetchResult(statusCode, html, body.length, document, null);
+    }
+
+    static FetchResult skipped(int statusCode, String skipReason) {
+        return new FetchResult(statusCode, null, 0, null, skipReason);
+    }
+
+    public boolean isSkipped() {
+        return skipReason != null;
+    }
+
+    /** Computed once: it is needed for the content hash, the fingerprint and lemmatization. */
+    public String getText() {
+        if (text == null) {
+            text = document.body() != null ? document.body().text() : "";
+        }
+        return text;
+    }
+}
@@ -0,0 +1,82 @@
+package searchengine.services.crawl;
+
+/**
+ * Keeps 64-bit URL fingerprints in an open-addressing table with linear probing instead of a
+ * String plus a hash map node. The table is kept at most half full and doubles when it gets
+ * there, so it takes 16 bytes per URL just before a resize and 32 just after, and briefly 48
+ * while both tables exist during the copy. Two distinct URLs collide
+ * with probability about n^2 / 2^65, i.e. roughly one in 400 000 for a ten-million-page site.
+ */
+public class FingerprintVisitedUrlSet implements VisitedUrlSet {
+    private static final long EMPTY = 0L;
+    private static final long ZERO_REPLACEMENT = 1L;
+
+    private long[] table;
+    private int size;
+
+    public FingerprintVisitedUrlSet(int expectedUrls) {
+        table = new long[tableCapacity(expectedUrls)];
+    }
+
+    @Override
+    public synchronized boolean add(String url) {
+        long fingerprint = fingerprint(url);
+        int slot = findSlot(table, fingerprint);
+        if (table[slot] == fingerprint) {
+            return false;
+        }
+        table[slot] = fingerprint;
+        if (++size * 2 > table.length) {
+            resize();
+        }
+        return true;
+    }
+
+    @Override
+    public synchronized boolean contains(String url) {
+        long fingerprint = fingerprint(url);
+        return table[findSlot(table, fingerprint)] == fingerprint;
+    }
+
+    @Override
+    public synchronized long size() {
+        return size;
+    }
+
+    @Override
+    public synchronized long memoryBytes() {
+        return (long) table.length * Long.BYTES;
+    }
+
+    private void resize() {
+        long[] resized = new long[table.length * 2];
+        for (long fingerprint : table) {
+            if (fingerprint != EMPTY) {
+                resized[findSlot(resized, fingerprint)] = fingerprint;
+            }
+        }
+        table = resized;
+    }
+
+    private static int findSlot(long[] table, long fingerprint) {
+        int mask = table.length - 1;
+        int slot = (int) fingerprint & mask;
+        while (table[slot] != EMPTY && table[slot] != fingerprint) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private static long fingerprint(String url) {
+        long fingerprint = UrlFingerprint.of(url);
+        return fingerprint == EMPTY ? ZERO_REPLACEMENT : fingerprint;
+    }
+
+    private static int tableCapacity(int expectedUrls) {
+        int capacity = 16;
+        while (capacity < expectedUrls * 2L && capacity < (1 << 30)) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+}
@@ -0,0 +1,210 @@
+package searchengine.services.crawl;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import searchengine.config.CrawlerSettings;
+
+import javax.annotation.PreDestroy;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * The one HTTP client of the crawler, shared by page, robots.txt and sitemap fetches. The JDK
+ * client keeps connections alive in a pool per host and multiplexes requests over HTTP/2 where
+ * the server supports it. Responses are asked for gzip or deflate and decompressed here, so
+ * callers always read the plain body. The request timeout only covers the wait for the headers,
+ * so every body gets a read deadline of its own: when it passes, the stream is closed under the
+ * reader and the blocked read fails.
+ */
+@Slf4j
+@Component
+public class HttpFetcher {
+    private final CrawlerSettings.Fetch settings;
+    private final HttpClient client;
+    private final ScheduledExecutorService deadlines = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "http-read-deadline");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @Value("${indexing-settings.user-agent}")
+    private String userAgent;
+
+    public HttpFetcher(CrawlerSettings crawlerSettings) {
+        this.settings = crawlerSettings.getFetch();
+        this.client = HttpClient.newBuilder()
+                .version(settings.isHttp2() ? HttpClient.Version.HTTP_2 : HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofMillis(settings.getConnectTimeoutMillis()))
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .build();
+    }
+
+    /** The caller must close the response; a 4xx or 5xx status is returned, not thrown. */
+    public Response get(String url) throws IOException {
+        HttpRequest request;
+        try {
+            request = HttpRequest.newBuilder(URI.create(url))
+                    .timeout(Duration.ofMillis(settings.getTimeoutMillis()))
+                    .header("User-Agent", userAgent)
+                    .header("Referer", "http://www.google.com")
+                    .header("Accept-Encoding", "gzip, deflate")
+                    .GET()
+                    .build();
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Некорректный адрес: " + url, e);
+        }
+        try {
+            return new Response(client.send(request, HttpResponse.BodyHandlers.ofInputStream()),
+                    deadlines, settings.getReadTimeoutMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Загрузка прервана: " + url, e);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        deadlines.shutdownNow();
+    }
+
+    @Getter
+    public static class Response implements AutoCloseable {
+        private final int statusCode;
+        /** Address after redirects, the base for relative links. */
+        private final String url;
+        private final String contentType;
+        /** -1 when the header is missing or not a number */
+        private final long contentLength;
+        @Getter(AccessLevel.NONE)
+        private final String contentEncoding;
+        @Getter(AccessLevel.NONE)
+        private final InputStream raw;
+        @Getter(AccessLevel.NONE)
+        private final ScheduledFuture<?> deadline;
+        @Getter(AccessLevel.NONE)
+        private volatile boolean expired;
+        /** Decoded lazily, so a response whose body is never read is never decompressed. */
+        @Getter(AccessLevel.NONE)
+        private InputStream body;
+
+        private Response(HttpResponse<InputStream> response, ScheduledExecutorService deadlines,
+                         long readTimeoutMillis) {
+            this.statusCode = response.statusCode();
+            this.url = response.uri().toString();
+            this.contentType = response.headers().firstValue("Content-Type").orElse(null);
+            this.contentLength = response.headers().firstValueAsLong("Content-Length").orElse(-1);
+            this.contentEncoding = response.headers().firstValue("Content-Encoding").orElse("");
+            this.raw = response.body();
+            this.deadline = deadlines.schedule(this::expire, readTimeoutMillis, TimeUnit.MILLISECONDS);
+        }
+
+        /** charset parameter of Content-Type, or null to let the parser detect it */
+        public String getCharset() {
+            if (contentType == null) {
+                return null;
+            }
+            for (String parameter : contentType.split(";")) {
+                String trimmed = parameter.trim();
+                if (trimmed.regionMatches(true, 0, "charset=", 0, 8)) {
+                    return trimmed.substring(8).replace("\"", "").trim();
+                }
+            }
+            return null;
+        }
+
+        /** Reads at most {@code maxBytes}; a longer body is cut, as a browser would show its start. */
+        public byte[] readBody(int maxBytes) throws IOException {
+            return getBody().readNBytes(maxBytes);
+        }
+
+        /** The decoded body; reads past the deadline fail with {@link HttpTimeoutException}. */
+        public InputStream getBody() throws IOException {
+            if (body == null) {
+                body = decode(new DeadlineStream(raw), contentEncoding);
+            }
+            return body;
+        }
+
+        @Override
+        public void close() throws IOException {
+            deadline.cancel(false);
+            raw.close();
+        }
+
+        private void expire() {
+            expired = true;
+            try {
+                raw.close();
+            } catch (IOException e) {
+                log.debug("Closing an expired response of {} failed: {}", url, e.getMessage());
+            }
+        }
+
+        /** An empty body stays empty: a 204 or 404 may announce gzip and send nothing to unzip. */
+        private static InputStream decode(InputStream body, String contentEncoding) throws IOException {
+            String encoding = contentEncoding.trim().toLowerCase(Locale.ROOT);
+            if (!encoding.equals("gzip") && !encoding.equals("x-gzip") && !encoding.equals("deflate")) {
+                return body;
+            }
+            PushbackInputStream peeked = new PushbackInputStream(body);
+            int first = peeked.read();
+            if (first < 0) {
+                return InputStream.nullInputStream();
+            }
+            peeked.unread(first);
+            return encoding.equals("deflate") ? new InflaterInputStream(peeked) : new GZIPInputStream(peeked);
+        }
+
+        /** Turns the failure of a read cut off by the deadline into a timeout. */
+        private class DeadlineStream extends FilterInputStream {
+            DeadlineStream(InputStream in) {
+                super(in);
+            }
+
+            @Override
+            public int read() throws IOException {
+                try {
+                    return super.read();
+                } catch (IOException e) {
+                    throw translate(e);
+                }
+            }
+
+            @Override
+            public int read(byte[] buffer, int offset, int length) throws IOException {
+                try {
+                    return super.read(buffer, offset, length);
+                } catch (IOException e) {
+                    throw translate(e);
+                }
+            }
+
+            private IOException translate(IOException e) {
+                if (!expired) {
+                    return e;
+                }
+                HttpTimeoutException timeout = new HttpTimeoutException("Превышено время чтения ответа: " + url);
+                timeout.initCause(e);
+                return timeout;
+            }
+        }
+    }
+}
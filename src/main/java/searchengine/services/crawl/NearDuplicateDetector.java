@@ -0,0 +1,73 @@
+package searchengine.services.crawl;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import searchengine.config.CrawlerSettings;
+import searchengine.model.Site;
+import searchengine.repository.PageRepository;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Finds an already indexed page of the same site whose text is nearly identical to a new one.
+ * The per-site fingerprint index is loaded from the page table on first use and dropped with the site.
+ */
+@Component
+@RequiredArgsConstructor
+public class NearDuplicateDetector {
+    private final CrawlerSettings crawlerSettings;
+    private final PageRepository pageRepository;
+    private final Map<Integer, SiteFingerprintIndex> siteIndexes = new ConcurrentHashMap<>();
+
+    /**
+     * @return the SimHash of the text, or {@link SimHash#NONE} if detection is disabled or the text is too short
+     */
+    public long fingerprint(String text) {
+        CrawlerSettings.NearDuplicates settings = crawlerSettings.getNearDuplicates();
+        if (!settings.isEnabled()) {
+            return SimHash.NONE;
+        }
+        return SimHash.of(text, settings.getShingleSize(), settings.getMinWords());
+    }
+
+    /**
+     * @return id of an indexed page at another path whose fingerprint is within the configured distance, or null
+     */
+    public Integer findOriginal(Site site, String path, long fingerprint) {
+        if (fingerprint == SimHash.NONE) {
+            return null;
+        }
+        return siteIndex(site).findNear(fingerprint, path);
+    }
+
+    public void register(Site site, String path, int pageId, long fingerprint) {
+        if (fingerprint == SimHash.NONE) {
+            unregister(site, path);
+            return;
+        }
+        siteIndex(site).put(path, pageId, fingerprint);
+    }
+
+    public void unregister(Site site, String path) {
+        SiteFingerprintIndex index = siteIndexes.get(site.getId());
+        if (index != null) {
+            index.remove(path);
+        }
+    }
+
+    public void forgetSite(int siteId) {
+        siteIndexes.remove(siteId);
+    }
+
+    private SiteFingerprintIndex siteIndex(Site site) {
+        return siteIndexes.computeIfAbsent(site.getId(), siteId -> loadSiteIndex(site));
+    }
+
+    private SiteFingerprintIndex loadSiteIndex(Site site) {
+        SiteFingerprintIndex index = new SiteFingerprintIndex(crawlerSettings.getNearDuplicates().getMaxHammingDistance());
+        pageRepository.findFingerprintsBySite(site)
+                .forEach(page -> index.put(page.getPath(), page.getId(), page.getFingerprint()));
+        return index;
+    }
+}
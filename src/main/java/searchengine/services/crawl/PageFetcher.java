@@ -0,0 +1,71 @@
+package searchengine.services.crawl;
+
+import lombok.RequiredArgsConstructor;
+import org.jsoup.Jsoup;
+import org.springframework.stereotype.Component;
+import searchengine.config.CrawlerSettings;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.IllegalCharsetNameException;
+import java.util.Locale;
+
+/**
+ * Downloads a page through the shared {@link HttpFetcher} and parses the bytes with Jsoup. The
+ * status line and headers are checked first: responses that are not HTML or announce a body
+ * above the configured limit are closed before any of the body is read.
+ */
+@Component
+@RequiredArgsConstructor
+public class PageFetcher {
+    private final CrawlerSettings crawlerSettings;
+    private final HttpFetcher httpFetcher;
+
+    public FetchResult fetch(String url) throws IOException {
+        CrawlerSettings.Fetch settings = crawlerSettings.getFetch();
+        try (HttpFetcher.Response response = httpFetcher.get(url)) {
+            String skipReason = checkHeaders(response, settings);
+            if (skipReason != null) {
+                return FetchResult.skipped(response.getStatusCode(), skipReason);
+            }
+            byte[] body = response.readBody(settings.getMaxBodySize());
+            try {
+                return FetchResult.fetched(response.getStatusCode(), body, Jsoup.parse(new ByteArrayInputStream(body),
+                        supportedCharset(response.getCharset()), response.getUrl()));
+            } catch (IllegalArgumentException e) {
+                // a bad charset in a meta tag and the like; a failed page, not a failed crawl
+                throw new IOException("Не удалось разобрать страницу: " + e.getMessage(), e);
+            }
+        }
+    }
+
+    /** @return the charset of the Content-Type header if Java knows it, otherwise null to let Jsoup detect it */
+    private static String supportedCharset(String charset) {
+        if (charset == null) {
+            return null;
+        }
+        try {
+            return Charset.isSupported(charset) ? charset : null;
+        } catch (IllegalCharsetNameException e) {
+            return null;
+        }
+    }
+
+    private String checkHeaders(HttpFetcher.Response response, CrawlerSettings.Fetch settings) {
+        String contentType = response.getContentType();
+        if (contentType != null && !isAllowedContentType(contentType, settings)) {
+            return "Страница не является HTML-документом: " + contentType;
+        }
+        long contentLength = response.getContentLength();
+        if (contentLength > settings.getMaxBodySize()) {
+            return "Размер страницы превышает допустимый: " + contentLength + " байт";
+        }
+        return null;
+    }
+
+    private boolean isAllowedContentType(String contentType, CrawlerSettings.Fetch settings) {
+        String mimeType = contentType.split(";", 2)[0].trim().toLowerCase(Locale.ROOT);
+        return settings.getAllowedContentTypes().contains(mimeType);
+    }
+}
@@ -0,0 +1,89 @@
+package searchengine.services.crawl;
+
+/**
+ * 64-bit SimHash over word shingles. Texts that share most of their shingles get fingerprints
+ * that differ in only a few bits, so near-duplicates can be found by Hamming distance.
+ */
+public final class SimHash {
+    public static final long NONE = 0L;
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private SimHash() {
+    }
+
+    /**
+     * @return the fingerprint, or {@link #NONE} when the text has fewer than {@code minWords} words
+     */
+    public static long of(CharSequence text, int shingleSize, int minWords) {
+        long[] shingle = new long[shingleSize];
+        int[] weights = new int[Long.SIZE];
+        int words = 0;
+        int position = 0;
+        while (position < text.length()) {
+            int start = skipSeparators(text, position);
+            int end = skipWord(text, start);
+            if (start == end) {
+                break;
+            }
+            shingle[words % shingleSize] = hashWord(text, start, end);
+            words++;
+            if (words >= shingleSize) {
+                addFeature(weights, hashShingle(shingle, words, shingleSize));
+            }
+            position = end;
+        }
+        return words < minWords ? NONE : toFingerprint(weights);
+    }
+
+    public static int distance(long first, long second) {
+        return Long.bitCount(first ^ second);
+    }
+
+    private static int skipSeparators(CharSequence text, int position) {
+        while (position < text.length() && !Character.isLetterOrDigit(text.charAt(position))) {
+            position++;
+        }
+        return position;
+    }
+
+    private static int skipWord(CharSequence text, int position) {
+        while (position < text.length() && Character.isLetterOrDigit(text.charAt(position))) {
+            position++;
+        }
+        return position;
+    }
+
+    private static long hashWord(CharSequence text, int start, int end) {
+        long hash = FNV_OFFSET_BASIS;
+        for (int i = start; i < end; i++) {
+            hash = (hash ^ Character.toLowerCase(text.charAt(i))) * FNV_PRIME;
+        }
+        return hash;
+    }
+
+    private static long hashShingle(long[] shingle, int words, int shingleSize) {
+        long hash = 0;
+        for (int i = 0; i < shingleSize; i++) {
+            hash = hash * 31 + shingle[(words + i) % shingleSize];
+        }
+        return UrlFingerprint.mix(hash);
+    }
+
+    private static void addFeature(int[] weights, long featureHash) {
+        for (int bit = 0; bit < Long.SIZE; bit++) {
+            weights[bit] += ((featureHash >>> bit) & 1) == 1 ? 1 : -1;
+        }
+    }
+
+    private static long toFingerprint(int[] weights) {
+        long fingerprint = 0;
+        for (int bit = 0; bit < Long.SIZE; bit++) {
+            if (weights[bit] > 0) {
+                fingerprint |= 1L << bit;
+            }
+        }
+        return fingerprint == NONE ? 1L : fingerprint;
+    }
+}
@@ -0,0 +1,87 @@
+package searchengine.services.crawl;
+
+import java.util.*;
+
+/**
+ * Fingerprints of the distinct pages of one site. A fingerprint is split into
+ * {@code maxDistance + 1} bit blocks, and every block value is a lookup key: two fingerprints
+ * within the distance must agree exactly on at least one block, so only the pages sharing a
+ * block are compared.
+ */
+class SiteFingerprintIndex {
+    private final int maxDistance;
+    private final int[] blockShifts;
+    private final long[] blockMasks;
+    private final List<Map<Long, List<Entry>>> blocks = new ArrayList<>();
+    private final Map<String, Entry> entriesByPath = new HashMap<>();
+
+    SiteFingerprintIndex(int maxDistance) {
+        this.maxDistance = maxDistance;
+        int blockCount = maxDistance + 1;
+        blockShifts = new int[blockCount];
+        blockMasks = new long[blockCount];
+        for (int block = 0; block < blockCount; block++) {
+            int from = block * Long.SIZE / blockCount;
+            int to = (block + 1) * Long.SIZE / blockCount;
+            blockShifts[block] = from;
+            blockMasks[block] = to - from == Long.SIZE ? -1L : (1L << (to - from)) - 1;
+            blocks.add(new HashMap<>());
+        }
+    }
+
+    synchronized Integer findNear(long fingerprint, String excludedPath) {
+        for (int block = 0; block < blocks.size(); block++) {
+            List<Entry> candidates = blocks.get(block).get(blockKey(fingerprint, block));
+            if (candidates == null) {
+                continue;
+            }
+            for (Entry candidate : candidates) {
+                if (!candidate.path.equals(excludedPath)
+                        && SimHash.distance(candidate.fingerprint, fingerprint) <= maxDistance) {
+                    return candidate.pageId;
+                }
+            }
+        }
+        return null;
+    }
+
+    synchronized void put(String path, int pageId, long fingerprint) {
+        remove(path);
+        Entry entry = new Entry(path, pageId, fingerprint);
+        entriesByPath.put(path, entry);
+        for (int block = 0; block < blocks.size(); block++) {
+            blocks.get(block).computeIfAbsent(blockKey(fingerprint, block), key -> new ArrayList<>(1)).add(entry);
+        }
+    }
+
+    synchronized void remove(String path) {
+        Entry entry = entriesByPath.remove(path);
+        if (entry == null) {
+            return;
+        }
+        for (int block = 0; block < blocks.size(); block++) {
+            Long key = blockKey(entry.fingerprint, block);
+            List<Entry> bucket = blocks.get(block).get(key);
+            bucket.remove(entry);
+            if (bucket.isEmpty()) {
+                blocks.get(block).remove(key);
+            }
+        }
+    }
+
+    private long blockKey(long fingerprint, int block) {
+        return (fingerprint >>> blockShifts[block]) & blockMasks[block];
+    }
+
+    private static final class Entry {
+        private final String path;
+        private final int pageId;
+        private final long fingerprint;
+
+        private Entry(String path, int pageId, long fingerprint) {
+            this.path = path;
+            this.pageId = pageId;
+            this.fingerprint = fingerprint;
+        }
+    }
+}
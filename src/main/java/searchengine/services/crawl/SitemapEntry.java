@@ -0,0 +1,17 @@
+package searchengine.services.crawl;
+
+import lombok.Getter;
+
+import java.time.Instant;
+
+@Getter
+public class SitemapEntry {
+    private final String url;
+    /** null when the sitemap has no parseable {@code lastmod} */
+    private final Instant lastModified;
+
+    public SitemapEntry(String url, Instant lastModified) {
+        this.url = url;
+        this.lastModified = lastModified;
+    }
+}
@@ -0,0 +1,233 @@
+package searchengine.services.crawl;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import searchengine.config.CrawlerSettings;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.function.BooleanSupplier;
+import java.util.function.Predicate;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Reads the sitemaps of a site: those listed in robots.txt, or /sitemap.xml when robots.txt has
+ * none. Files are parsed with StAX straight from the response stream, gzip-compressed ones
+ * included, so a sitemap of a million entries never sits in memory as a whole. Sitemap index
+ * files are followed up to {@code maxFiles} files per site.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class SitemapReader {
+    private static final int MAX_ROBOTS_SIZE = 512 * 1024;
+    private static final int MAX_TEXT_LENGTH = 4096;
+
+    private final CrawlerSettings crawlerSettings;
+    private final HttpFetcher httpFetcher;
+    private final XMLInputFactory xmlInputFactory = createXmlInputFactory();
+
+    /**
+     * Passes the sitemap entries of the site to {@code accept} until it has accepted
+     * {@code maxUrls} of them or {@code running} turns false.
+     *
+     * @return number of accepted entries
+     */
+    public int read(String siteUrl, Predicate<SitemapEntry> accept, BooleanSupplier running) {
+        CrawlerSettings.Sitemaps settings = crawlerSettings.getSitemaps();
+        Instant cutoff = settings.getMaxAgeDays() > 0
+                ? Instant.now().minus(settings.getMaxAgeDays(), ChronoUnit.DAYS)
+                : null;
+        Deque<String> pending = new ArrayDeque<>(sitemapLocations(stripTrailingSlash(siteUrl)));
+        Set<String> seen = new HashSet<>(pending);
+        Visit visit = new Visit(accept, running, settings.getMaxUrls(), cutoff);
+
+        int files = 0;
+        while (!pending.isEmpty() && files < settings.getMaxFiles() && visit.isOpen()) {
+            String sitemapUrl = pending.poll();
+            files++;
+            try {
+                readFile(sitemapUrl, visit);
+            } catch (IOException | XMLStreamException e) {
+                log.warn("Sitemap {} skipped: {}", sitemapUrl, e.getMessage());
+            }
+            visit.childSitemaps.stream().filter(seen::add).forEach(pending::add);
+            visit.childSitemaps.clear();
+        }
+        log.info("Sitemaps of {}: {} files read, {} entries seeded, {} older than max age",
+                siteUrl, files, visit.accepted, visit.expired);
+        return visit.accepted;
+    }
+
+    private List<String> sitemapLocations(String siteUrl) {
+        List<String> locations = new ArrayList<>();
+        try {
+            String robotsTxt = null;
+            try (HttpFetcher.Response robots = httpFetcher.get(siteUrl + "/robots.txt")) {
+                if (robots.getStatusCode() == 200) {
+                    robotsTxt = new String(robots.readBody(MAX_ROBOTS_SIZE), StandardCharsets.UTF_8);
+                }
+            }
+            if (robotsTxt != null) {
+                for (String line : robotsTxt.split("\\r?\\n")) {
+                    String trimmed = line.trim();
+                    if (trimmed.regionMatches(true, 0, "sitemap:", 0, 8)) {
+                        String location = trimmed.substring(8).trim();
+                        if (!location.isEmpty()) {
+                            locations.add(location);
+                        }
+                    }
+                }
+            }
+        } catch (IOException e) {
+            log.debug("robots.txt of {} not available: {}", siteUrl, e.getMessage());
+        }
+        if (locations.isEmpty()) {
+            locations.add(siteUrl + "/sitemap.xml");
+        }
+        return locations;
+    }
+
+    private void readFile(String sitemapUrl, Visit visit) throws IOException, XMLStreamException {
+        try (HttpFetcher.Response response = httpFetcher.get(sitemapUrl)) {
+            if (response.getStatusCode() != 200) {
+                throw new IOException("HTTP " + response.getStatusCode());
+            }
+            parse(decompress(response.getBody()), visit);
+        }
+    }
+
+    private void parse(InputStream body, Visit visit) throws XMLStreamException {
+        XMLStreamReader reader = xmlInputFactory.createXMLStreamReader(body);
+        try {
+            StringBuilder text = new StringBuilder();
+            String location = null;
+            String lastModified = null;
+            while (reader.hasNext() && visit.isOpen()) {
+                int event = reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    text.setLength(0);
+                    String name = reader.getLocalName();
+                    if (name.equals("url") || name.equals("sitemap")) {
+                        location = null;
+                        lastModified = null;
+                    }
+                } else if (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA) {
+                    if (text.length() < MAX_TEXT_LENGTH) {
+                        text.append(reader.getText());
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    String name = reader.getLocalName();
+                    if (name.equals("loc")) {
+                        location = text.toString().trim();
+                    } else if (name.equals("lastmod")) {
+                        lastModified = text.toString().trim();
+                    } else if (name.equals("url")) {
+                        visit.page(location, parseLastModified(lastModified));
+                    } else if (name.equals("sitemap")) {
+                        visit.sitemap(location, parseLastModified(lastModified));
+                    }
+                }
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    /** Sitemaps served as .xml.gz often come without Content-Encoding, so check the gzip magic bytes. */
+    private InputStream decompress(InputStream body) throws IOException {
+        BufferedInputStream buffered = new BufferedInputStream(body);
+        buffered.mark(2);
+        int first = buffered.read();
+        int second = buffered.read();
+        buffered.reset();
+        if (first == 0x1f && second == 0x8b) {
+            return new GZIPInputStream(buffered);
+        }
+        return buffered;
+    }
+
+    /** W3C datetime: a date, or a date and time with minutes, optional seconds and a zone. */
+    static Instant parseLastModified(String value) {
+        if (value == null || value.isEmpty()) {
+            return null;
+        }
+        try {
+            if (value.length() == 10) {
+                return LocalDate.parse(value).atStartOfDay(ZoneOffset.UTC).toInstant();
+            }
+            return OffsetDateTime.parse(value).toInstant();
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    private static String stripTrailingSlash(String url) {
+        return url.endsWith("/") ? url.substring(0, url.length() - 1) : url;
+    }
+
+    private static XMLInputFactory createXmlInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newFactory();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return factory;
+    }
+
+    private static class Visit {
+        private final Predicate<SitemapEntry> accept;
+        private final BooleanSupplier running;
+        private final int maxUrls;
+        private final Instant cutoff;
+        private final List<String> childSitemaps = new ArrayList<>();
+        private int accepted;
+        private int expired;
+
+        Visit(Predicate<SitemapEntry> accept, BooleanSupplier running, int maxUrls, Instant cutoff) {
+            this.accept = accept;
+            this.running = running;
+            this.maxUrls = maxUrls;
+            this.cutoff = cutoff;
+        }
+
+        boolean isOpen() {
+            return accepted < maxUrls && running.getAsBoolean();
+        }
+
+        void page(String location, Instant lastModified) {
+            if (location == null || location.isEmpty()) {
+                return;
+            }
+            if (isExpired(lastModified)) {
+                expired++;
+                return;
+            }
+            if (accept.test(new SitemapEntry(location, lastModified))) {
+                accepted++;
+            }
+        }
+
+        void sitemap(String location, Instant lastModified) {
+            if (location != null && !location.isEmpty() && !isExpired(lastModified)) {
+                childSitemaps.add(location);
+            }
+        }
+
+        private boolean isExpired(Instant lastModified) {
+            return cutoff != null && lastModified != null && lastModified.isBefore(cutoff);
+        }
+    }
+}
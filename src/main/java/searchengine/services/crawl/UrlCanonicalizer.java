@@ -0,0 +1,244 @@
+package searchengine.services.crawl;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import searchengine.config.CrawlerSettings;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Brings page addresses to one form before they are queued, so that {@code /a/} and {@code /a},
+ * {@code WWW.Site.ru} and {@code site.ru}, {@code :443} and no port, or the same query
+ * parameters in another order are fetched once. Works on the string directly; no
+ * {@link java.net.URL} or {@link java.net.URI} is built per link.
+ *
+ * <p>A canonical path keeps the query parameters that pass the allow and deny lists, sorted by
+ * name, and drops the fragment, repeated slashes, {@code .} and {@code ..} segments and the
+ * trailing slash.
+ */
+@Component
+@RequiredArgsConstructor
+public class UrlCanonicalizer {
+    /** Port of an address that has none or the default one of its scheme. */
+    private static final int DEFAULT_PORT = -1;
+
+    private final CrawlerSettings crawlerSettings;
+
+    /** Relative references need the page address to be resolved; absolute and root-relative ones do not. */
+    public static boolean isRelative(String href) {
+        return !href.startsWith("/") && href.indexOf("://") < 0 && !href.regionMatches(true, 0, "mailto:", 0, 7)
+                && !href.regionMatches(true, 0, "javascript:", 0, 11) && !href.regionMatches(true, 0, "tel:", 0, 4);
+    }
+
+    /**
+     * Links to http://host and https://host of a site are the same page; the site's scheme is
+     * used to fetch.
+     *
+     * @param href absolute or root-relative address
+     * @return canonical path with query of {@code href}, or null when it is not an http(s) page of the site
+     */
+    public String sitePath(String siteUrl, String href) {
+        Parts site = parse(siteUrl);
+        if (site == null) {
+            return null;
+        }
+        Parts link;
+        if (href.startsWith("/") && !href.startsWith("//")) {
+            link = parseReference(site.scheme, site.host, site.port, href);
+        } else if (href.startsWith("//")) {
+            link = parse(site.scheme + ":" + href);
+        } else {
+            link = parse(href);
+        }
+        if (link == null || !link.host.equals(site.host) || link.port != site.port
+                || !startsWithPath(link.path, site.path)) {
+            return null;
+        }
+        return link.query.isEmpty() ? link.path : link.path + "?" + link.query;
+    }
+
+    /** Scheme, host and port of the site, to which canonical paths are appended for fetching. */
+    public String origin(String siteUrl) {
+        int schemeEnd = siteUrl.indexOf("://");
+        if (schemeEnd < 0) {
+            return siteUrl;
+        }
+        int authorityEnd = indexOfAny(siteUrl, schemeEnd + 3, "/?#");
+        return siteUrl.substring(0, authorityEnd < 0 ? siteUrl.length() : authorityEnd);
+    }
+
+    private Parts parse(String url) {
+        String trimmed = url.trim();
+        int schemeEnd = trimmed.indexOf("://");
+        if (schemeEnd <= 0) {
+            return null;
+        }
+        String scheme = trimmed.substring(0, schemeEnd).toLowerCase(Locale.ROOT);
+        if (!scheme.equals("http") && !scheme.equals("https")) {
+            return null;
+        }
+        int authorityStart = schemeEnd + 3;
+        int authorityEnd = indexOfAny(trimmed, authorityStart, "/?#");
+        if (authorityEnd < 0) {
+            authorityEnd = trimmed.length();
+        }
+        String authority = trimmed.substring(authorityStart, authorityEnd);
+        int userInfoEnd = authority.lastIndexOf('@');
+        if (userInfoEnd >= 0) {
+            authority = authority.substring(userInfoEnd + 1);
+        }
+        int portSeparator = authority.lastIndexOf(':');
+        String host = authority;
+        int port = DEFAULT_PORT;
+        if (portSeparator > authority.lastIndexOf(']')) {
+            host = authority.substring(0, portSeparator);
+            try {
+                port = Integer.parseInt(authority.substring(portSeparator + 1));
+            } catch (NumberFormatException e) {
+                return null;
+            }
+            if (port == (scheme.equals("https") ? 443 : 80)) {
+                port = DEFAULT_PORT;
+            }
+        }
+        host = canonicalHost(host);
+        if (host.isEmpty()) {
+            return null;
+        }
+        return parseReference(scheme, host, port, trimmed.substring(authorityEnd));
+    }
+
+    private Parts parseReference(String scheme, String host, int port, String reference) {
+        int fragment = reference.indexOf('#');
+        if (fragment >= 0) {
+            reference = reference.substring(0, fragment);
+        }
+        int querySeparator = reference.indexOf('?');
+        String path = querySeparator >= 0 ? reference.substring(0, querySeparator) : reference;
+        String query = querySeparator >= 0 ? canonicalQuery(reference.substring(querySeparator + 1)) : "";
+        return new Parts(scheme, host, port, canonicalPath(path), query);
+    }
+
+    private String canonicalHost(String host) {
+        String lower = host.toLowerCase(Locale.ROOT);
+        if (lower.endsWith(".")) {
+            lower = lower.substring(0, lower.length() - 1);
+        }
+        if (crawlerSettings.getUrls().isIgnoreWww() && lower.startsWith("www.")) {
+            lower = lower.substring(4);
+        }
+        return lower;
+    }
+
+    static String canonicalPath(String path) {
+        if (path.isEmpty() || path.equals("/")) {
+            return "/";
+        }
+        if (path.indexOf("//") < 0 && path.indexOf("/.") < 0 && path.indexOf('%') < 0
+                && path.charAt(0) == '/' && path.charAt(path.length() - 1) != '/') {
+            return path;
+        }
+        List<String> segments = new ArrayList<>();
+        for (String segment : path.split("/")) {
+            if (segment.isEmpty() || segment.equals(".")) {
+                continue;
+            }
+            if (segment.equals("..")) {
+                if (!segments.isEmpty()) {
+                    segments.remove(segments.size() - 1);
+                }
+                continue;
+            }
+            segments.add(upperCaseEscapes(segment));
+        }
+        return segments.isEmpty() ? "/" : "/" + String.join("/", segments);
+    }
+
+    private String canonicalQuery(String query) {
+        if (query.isEmpty()) {
+            return "";
+        }
+        List<String> kept = new ArrayList<>();
+        for (String parameter : query.split("&")) {
+            if (parameter.isEmpty()) {
+                continue;
+            }
+            int equals = parameter.indexOf('=');
+            String name = (equals >= 0 ? parameter.substring(0, equals) : parameter).toLowerCase(Locale.ROOT);
+            if (isKept(name)) {
+                kept.add(upperCaseEscapes(parameter));
+            }
+        }
+        kept.sort(null);
+        return String.join("&", kept);
+    }
+
+    /** A parameter is kept when it is not denied and, if there is an allow list, is on it. */
+    private boolean isKept(String name) {
+        CrawlerSettings.Urls settings = crawlerSettings.getUrls();
+        if (matchesAny(name, settings.getDeniedQueryParameters())) {
+            return false;
+        }
+        return settings.getAllowedQueryParameters().isEmpty()
+                || matchesAny(name, settings.getAllowedQueryParameters());
+    }
+
+    private static boolean matchesAny(String name, List<String> patterns) {
+        for (String pattern : patterns) {
+            if (pattern.endsWith("*")
+                    ? name.regionMatches(true, 0, pattern, 0, pattern.length() - 1)
+                    : name.equalsIgnoreCase(pattern)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** {@code %2f} and {@code %2F} are the same byte; the upper-case form is canonical. */
+    private static String upperCaseEscapes(String text) {
+        int percent = text.indexOf('%');
+        if (percent < 0) {
+            return text;
+        }
+        char[] chars = text.toCharArray();
+        for (int i = percent; i < chars.length - 2; i++) {
+            if (chars[i] == '%') {
+                chars[i + 1] = Character.toUpperCase(chars[i + 1]);
+                chars[i + 2] = Character.toUpperCase(chars[i + 2]);
+                i += 2;
+            }
+        }
+        return new String(chars);
+    }
+
+    private static boolean startsWithPath(String path, String prefix) {
+        return prefix.equals("/") || path.equals(prefix) || path.startsWith(prefix + "/");
+    }
+
+    private static int indexOfAny(String text, int from, String chars) {
+        for (int i = from; i < text.length(); i++) {
+            if (chars.indexOf(text.charAt(i)) >= 0) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static class Parts {
+        private final String scheme;
+        private final String host;
+        private final int port;
+        private final String path;
+        private final String query;
+
+        Parts(String scheme, String host, int port, String path, String query) {
+            this.scheme = scheme;
+            this.host = host;
+            this.port = port;
+            this.path = path;
+            this.query = query;
+        }
+    }
+}
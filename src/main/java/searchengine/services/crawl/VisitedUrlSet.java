@@ -0,0 +1,28 @@
+package searchengine.services.crawl;
+
+/**
+ * Set of URLs already visited while crawling one site.
+ * Implementations trade exactness for memory, see {@link searchengine.config.CrawlerSettings.VisitedSetType}.
+ */
+public interface VisitedUrlSet extends AutoCloseable {
+    /**
+     * @return true if the url was not in the set before the call
+     */
+    boolean add(String url);
+
+    boolean contains(String url);
+
+    long size();
+
+    /** Approximate number of bytes the set currently occupies, on the heap or on disk. */
+    long memoryBytes();
+
+    default double bytesPerUrl() {
+        long size = size();
+        return size == 0 ? 0 : (double) memoryBytes() / size;
+    }
+
+    @Override
+    default void close() {
+    }
+}
@@ -0,0 +1,32 @@
+package searchengine.services.crawl;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import searchengine.config.CrawlerSettings;
+
+import java.nio.file.Path;
+
+@Component
+@RequiredArgsConstructor
+public class VisitedUrlSetFactory {
+    private final CrawlerSettings crawlerSettings;
+
+    public VisitedUrlSet create() {
+        CrawlerSettings.VisitedSet settings = crawlerSettings.getVisitedSet();
+        switch (settings.getType()) {
+            case EXACT:
+                return new ExactVisitedUrlSet();
+            case BLOOM:
+                return new BloomFilterVisitedUrlSet(settings.getExpectedUrls(), settings.getFalsePositiveRate(),
+                        spillDirectory(settings), settings.getMaxHeapBytes());
+            case FINGERPRINT:
+            default:
+                return new FingerprintVisitedUrlSet(settings.getExpectedUrls());
+        }
+    }
+
+    private Path spillDirectory(CrawlerSettings.VisitedSet settings) {
+        String directory = settings.getSpillDirectory();
+        return directory == null || directory.isBlank() ? null : Path.of(directory);
+    }
+}
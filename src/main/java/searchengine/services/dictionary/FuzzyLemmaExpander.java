@@ -0,0 +1,37 @@
+package searchengine.services.dictionary;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import searchengine.config.SearchSettings;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Replaces a query lemma missing from the index with the closest dictionary lemmas.
+ */
+@Component
+@RequiredArgsConstructor
+public class FuzzyLemmaExpander {
+    private final SearchSettings searchSettings;
+    private final LemmaDictionaries lemmaDictionaries;
+
+    public List<String> expand(String lemma, Integer siteId) {
+        SearchSettings.Fuzzy settings = searchSettings.getFuzzy();
+        int distance = allowedDistance(lemma, settings);
+        if (!settings.isEnabled() || distance == 0) {
+            return Collections.emptyList();
+        }
+        return lemmaDictionaries.get(siteId).fuzzyMatches(lemma, distance, settings.getMaxExpansions());
+    }
+
+    private int allowedDistance(String lemma, SearchSettings.Fuzzy settings) {
+        if (lemma.length() >= settings.getMinLengthForTwoEdits()) {
+            return Math.min(2, settings.getMaxDistance());
+        }
+        if (lemma.length() >= settings.getMinLengthForOneEdit()) {
+            return Math.min(1, settings.getMaxDistance());
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,157 @@
+package searchengine.services.dictionary;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import searchengine.model.Site;
+import searchengine.repository.LemmaFrequency;
+import searchengine.repository.LemmaRepository;
+import searchengine.repository.SiteRepository;
+
+import javax.annotation.PreDestroy;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * In-memory lemma dictionaries weighted by lemma frequency: one per site and one merged over
+ * all sites. They are loaded at startup; afterwards the indexer reports the frequency changes
+ * of every committed page, which are merged into the site and merged dictionaries in the
+ * background without reading the lemma table. Site URLs are resolved to ids here as well, so
+ * a completion request does not query the database.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class LemmaDictionaries {
+    private final SiteRepository siteRepository;
+    private final LemmaRepository lemmaRepository;
+
+    private final Map<Integer, LemmaDictionary> siteDictionaries = new ConcurrentHashMap<>();
+    private final Map<String, Integer> siteIds = new ConcurrentHashMap<>();
+    private final Map<Integer, Map<String, Integer>> pendingChanges = new ConcurrentHashMap<>();
+    private final AtomicBoolean applyScheduled = new AtomicBoolean();
+    private final ExecutorService updateExecutor = Executors.newSingleThreadExecutor();
+    private volatile LemmaDictionary globalDictionary = LemmaDictionary.empty();
+
+    /**
+     * @return the dictionary of the site, or the merged one when {@code siteId} is null
+     */
+    public LemmaDictionary get(Integer siteId) {
+        if (siteId == null) {
+            return globalDictionary;
+        }
+        return siteDictionaries.getOrDefault(siteId, LemmaDictionary.empty());
+    }
+
+    /** @return the dictionary of the site with this URL, empty for an unknown site */
+    public LemmaDictionary getBySiteUrl(String siteUrl) {
+        Integer siteId = siteIds.get(siteUrl);
+        return siteId == null ? LemmaDictionary.empty() : get(siteId);
+    }
+
+    /**
+     * Queues frequency changes of the lemmas of a site: +1 for each page a lemma appeared on,
+     * -1 for each page it disappeared from. Changes queued before the background update runs
+     * are applied together.
+     */
+    public void change(int siteId, Map<String, Integer> changes) {
+        if (changes.isEmpty()) {
+            return;
+        }
+        pendingChanges.compute(siteId, (id, pending) -> {
+            Map<String, Integer> merged = pending == null ? new HashMap<>() : pending;
+            changes.forEach((lemma, change) -> merged.merge(lemma, change, Integer::sum));
+            return merged;
+        });
+        if (applyScheduled.compareAndSet(false, true)) {
+            updateExecutor.submit(this::applyPendingChanges);
+        }
+    }
+
+    /** Reloads the site dictionary from the lemma table, for changes made around the indexer. */
+    public void refreshSite(int siteId) {
+        updateExecutor.submit(() -> reloadSite(siteId));
+    }
+
+    public void forgetSite(int siteId) {
+        updateExecutor.submit(() -> replaceSite(siteId, LemmaDictionary.empty()));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        siteRepository.findAll().forEach(site -> refreshSite(site.getId()));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        updateExecutor.shutdownNow();
+    }
+
+    private void applyPendingChanges() {
+        applyScheduled.set(false);
+        try {
+            Map<String, Integer> globalChanges = new HashMap<>();
+            for (Integer siteId : pendingChanges.keySet()) {
+                Map<String, Integer> changes = pendingChanges.remove(siteId);
+                rememberSiteUrl(siteId);
+                LemmaDictionary updated = get(siteId).withChanges(changes);
+                if (updated.size() == 0) {
+                    siteDictionaries.remove(siteId);
+                } else {
+                    siteDictionaries.put(siteId, updated);
+                }
+                changes.forEach((lemma, change) -> globalChanges.merge(lemma, change, Integer::sum));
+            }
+            globalDictionary = globalDictionary.withChanges(globalChanges);
+        } catch (Exception e) {
+            log.warn("Cannot update lemma dictionaries", e);
+        }
+    }
+
+    private void reloadSite(int siteId) {
+        try {
+            // changes queued so far are part of what the table holds now
+            pendingChanges.remove(siteId);
+            rememberSiteUrl(siteId);
+            List<LemmaFrequency> lemmas = lemmaRepository.findFrequenciesBySiteId(siteId);
+            Map<String, Integer> weights = new HashMap<>(lemmas.size() * 2);
+            lemmas.forEach(lemma -> weights.merge(lemma.getLemma(), lemma.getFrequency(), Integer::sum));
+            replaceSite(siteId, LemmaDictionary.of(weights));
+        } catch (Exception e) {
+            log.warn("Cannot rebuild lemma dictionary of site {}", siteId, e);
+        }
+    }
+
+    /** Swaps the site dictionary and applies the difference to the merged one. */
+    private void replaceSite(int siteId, LemmaDictionary replacement) {
+        LemmaDictionary previous = get(siteId);
+        Map<String, Integer> difference = new HashMap<>();
+        for (int i = 0; i < previous.size(); i++) {
+            difference.put(previous.term(i), -previous.weight(i));
+        }
+        for (int i = 0; i < replacement.size(); i++) {
+            difference.merge(replacement.term(i), replacement.weight(i), Integer::sum);
+        }
+        difference.values().removeIf(change -> change == 0);
+        if (replacement.size() == 0) {
+            siteDictionaries.remove(siteId);
+            siteIds.values().remove(siteId);
+        } else {
+            siteDictionaries.put(siteId, replacement);
+        }
+        globalDictionary = globalDictionary.withChanges(difference);
+    }
+
+    private void rememberSiteUrl(int siteId) {
+        if (!siteIds.containsValue(siteId)) {
+            siteRepository.findById(siteId).map(Site::getUrl).ifPresent(url -> siteIds.put(url, siteId));
+        }
+    }
+}
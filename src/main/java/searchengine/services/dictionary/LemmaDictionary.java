@@ -0,0 +1,289 @@
+package searchengine.services.dictionary;
+
+import java.util.*;
+
+/**
+ * Immutable, sorted lemma dictionary with a weight per lemma. Lemmas are packed into one
+ * char array, a prefix maps to a contiguous range found by binary search, and a max segment
+ * tree over the weights returns the heaviest lemmas of that range without scanning it.
+ * The same ranges serve as trie nodes for typo-tolerant lookup.
+ */
+public class LemmaDictionary {
+    private static final LemmaDictionary EMPTY = new LemmaDictionary(new String[0], new int[0]);
+
+    private final char[] chars;
+    private final int[] offsets;
+    private final int[] weights;
+    private final int[] maxTree;
+    private final int leafBase;
+
+    private LemmaDictionary(String[] sortedTerms, int[] weights) {
+        this(pack(sortedTerms), offsetsOf(sortedTerms), weights);
+    }
+
+    private LemmaDictionary(char[] chars, int[] offsets, int[] weights) {
+        this.chars = chars;
+        this.offsets = offsets;
+        this.weights = weights;
+        int base = 1;
+        while (base < weights.length) {
+            base <<= 1;
+        }
+        this.leafBase = base;
+        this.maxTree = buildMaxTree();
+    }
+
+    private static int[] offsetsOf(String[] terms) {
+        int[] offsets = new int[terms.length + 1];
+        for (int i = 0; i < terms.length; i++) {
+            offsets[i + 1] = offsets[i] + terms[i].length();
+        }
+        return offsets;
+    }
+
+    private static char[] pack(String[] terms) {
+        StringBuilder packed = new StringBuilder();
+        for (String term : terms) {
+            packed.append(term);
+        }
+        return packed.toString().toCharArray();
+    }
+
+    public static LemmaDictionary empty() {
+        return EMPTY;
+    }
+
+    public static LemmaDictionary of(Map<String, Integer> termWeights) {
+        String[] terms = termWeights.keySet().toArray(new String[0]);
+        Arrays.sort(terms);
+        int[] weights = new int[terms.length];
+        for (int i = 0; i < terms.length; i++) {
+            weights[i] = termWeights.get(terms[i]);
+        }
+        return new LemmaDictionary(terms, weights);
+    }
+
+    /**
+     * Merges weight changes into a copy of the dictionary in one pass over the sorted lemmas.
+     * Lemmas whose weight drops to 0 or below are left out.
+     */
+    public LemmaDictionary withChanges(Map<String, Integer> changes) {
+        if (changes.isEmpty()) {
+            return this;
+        }
+        String[] changed = changes.keySet().toArray(new String[0]);
+        Arrays.sort(changed);
+        StringBuilder packed = new StringBuilder(chars.length + changed.length * 8);
+        int[] mergedOffsets = new int[size() + changed.length + 1];
+        int[] mergedWeights = new int[size() + changed.length];
+        int count = 0;
+        int i = 0;
+        int j = 0;
+        while (i < size() || j < changed.length) {
+            int compared = i == size() ? 1 : j == changed.length ? -1 : compareTerm(i, changed[j]);
+            int weight;
+            if (compared < 0) {
+                packed.append(chars, offsets[i], length(i));
+                weight = weights[i++];
+            } else if (compared > 0) {
+                packed.append(changed[j]);
+                weight = changes.get(changed[j++]);
+            } else {
+                packed.append(chars, offsets[i], length(i));
+                weight = weights[i++] + changes.get(changed[j++]);
+            }
+            if (weight > 0) {
+                mergedWeights[count++] = weight;
+                mergedOffsets[count] = packed.length();
+            } else {
+                packed.setLength(mergedOffsets[count]);
+            }
+        }
+        return new LemmaDictionary(packed.toString().toCharArray(), Arrays.copyOf(mergedOffsets, count + 1),
+                Arrays.copyOf(mergedWeights, count));
+    }
+
+    public int size() {
+        return weights.length;
+    }
+
+    public String term(int index) {
+        return new String(chars, offsets[index], offsets[index + 1] - offsets[index]);
+    }
+
+    public int weight(int index) {
+        return weights[index];
+    }
+
+    /**
+     * @return up to {@code limit} lemmas starting with the prefix, heaviest first
+     */
+    public List<String> complete(String prefix, int limit) {
+        int from = prefixBound(prefix, false);
+        int to = prefixBound(prefix, true);
+        List<String> result = new ArrayList<>(Math.min(limit, to - from));
+        PriorityQueue<int[]> ranges = new PriorityQueue<>((a, b) -> Integer.compare(weights[b[2]], weights[a[2]]));
+        offerRange(ranges, from, to);
+        while (!ranges.isEmpty() && result.size() < limit) {
+            int[] range = ranges.poll();
+            result.add(term(range[2]));
+            offerRange(ranges, range[0], range[2]);
+            offerRange(ranges, range[2] + 1, range[1]);
+        }
+        return result;
+    }
+
+    /**
+     * @return up to {@code limit} lemmas within {@code maxDistance} Levenshtein edits of the term,
+     * closest first and heaviest first among equally close ones
+     */
+    public List<String> fuzzyMatches(String term, int maxDistance, int limit) {
+        int[] firstRow = new int[term.length() + 1];
+        for (int i = 0; i < firstRow.length; i++) {
+            firstRow[i] = i;
+        }
+        List<int[]> matches = new ArrayList<>();
+        walk(term, maxDistance, 0, 0, size(), firstRow, matches);
+        matches.sort(Comparator.<int[]>comparingInt(match -> match[1])
+                .thenComparing(match -> weights[match[0]], Comparator.reverseOrder()));
+        List<String> result = new ArrayList<>(Math.min(limit, matches.size()));
+        for (int i = 0; i < matches.size() && i < limit; i++) {
+            result.add(term(matches.get(i)[0]));
+        }
+        return result;
+    }
+
+    /**
+     * Intersects the Levenshtein automaton of the term with the dictionary. The sorted lemmas are
+     * walked as an implicit trie: lemmas sharing a prefix of length {@code depth} form the range
+     * {@code [from, to)}, and {@code row} is the automaton state after reading that prefix.
+     * A branch is cut as soon as no cell of its row is within the distance.
+     */
+    private void walk(String term, int maxDistance, int depth, int from, int to, int[] row, List<int[]> matches) {
+        int start = from;
+        if (start < to && length(start) == depth) {
+            if (row[term.length()] <= maxDistance) {
+                matches.add(new int[]{start, row[term.length()]});
+            }
+            start++;
+        }
+        while (start < to) {
+            char edge = chars[offsets[start] + depth];
+            int end = edgeEnd(start, to, depth, edge);
+            int[] next = new int[row.length];
+            next[0] = row[0] + 1;
+            int rowMin = next[0];
+            for (int i = 1; i < row.length; i++) {
+                int substitution = row[i - 1] + (term.charAt(i - 1) == edge ? 0 : 1);
+                next[i] = Math.min(Math.min(row[i], next[i - 1]) + 1, substitution);
+                rowMin = Math.min(rowMin, next[i]);
+            }
+            if (rowMin <= maxDistance) {
+                walk(term, maxDistance, depth + 1, start, end, next, matches);
+            }
+            start = end;
+        }
+    }
+
+    private int edgeEnd(int from, int to, int depth, char edge) {
+        int low = from;
+        int high = to;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (chars[offsets[middle] + depth] <= edge) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private int length(int index) {
+        return offsets[index + 1] - offsets[index];
+    }
+
+    /**
+     * First index whose term, cut to the prefix length, is not less than the prefix
+     * ({@code upper == false}) or is greater than it ({@code upper == true}).
+     */
+    int prefixBound(CharSequence prefix, boolean upper) {
+        int low = 0;
+        int high = size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            int compared = compareTruncated(middle, prefix);
+            if (compared < 0 || (upper && compared == 0)) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private int compareTruncated(int index, CharSequence prefix) {
+        int start = offsets[index];
+        int length = Math.min(offsets[index + 1] - start, prefix.length());
+        for (int i = 0; i < length; i++) {
+            int compared = Character.compare(chars[start + i], prefix.charAt(i));
+            if (compared != 0) {
+                return compared;
+            }
+        }
+        return length == prefix.length() ? 0 : -1;
+    }
+
+    private int compareTerm(int index, String term) {
+        int start = offsets[index];
+        int length = length(index);
+        for (int k = 0; k < Math.min(length, term.length()); k++) {
+            int compared = Character.compare(chars[start + k], term.charAt(k));
+            if (compared != 0) {
+                return compared;
+            }
+        }
+        return Integer.compare(length, term.length());
+    }
+
+    private void offerRange(PriorityQueue<int[]> ranges, int from, int to) {
+        if (from < to) {
+            ranges.add(new int[]{from, to, rangeMax(from, to)});
+        }
+    }
+
+    private int[] buildMaxTree() {
+        int[] tree = new int[leafBase * 2];
+        Arrays.fill(tree, -1);
+        for (int i = 0; i < weights.length; i++) {
+            tree[leafBase + i] = i;
+        }
+        for (int node = leafBase - 1; node > 0; node--) {
+            tree[node] = heavier(tree[node * 2], tree[node * 2 + 1]);
+        }
+        return tree;
+    }
+
+    private int rangeMax(int from, int to) {
+        int best = -1;
+        for (int low = from + leafBase, high = to + leafBase; low < high; low >>= 1, high >>= 1) {
+            if ((low & 1) == 1) {
+                best = heavier(best, maxTree[low++]);
+            }
+            if ((high & 1) == 1) {
+                best = heavier(best, maxTree[--high]);
+            }
+        }
+        return best;
+    }
+
+    private int heavier(int first, int second) {
+        if (first < 0) {
+            return second;
+        }
+        if (second < 0) {
+            return first;
+        }
+        return weights[second] > weights[first] ? second : first;
+    }
+}
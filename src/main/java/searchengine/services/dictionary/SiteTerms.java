@@ -0,0 +1,120 @@
+package searchengine.services.dictionary;
+
+/**
+ * Lemma → (id, frequency) table of one site in parallel arrays with linear probing, plus the
+ * page count of the site. Removal shifts the following cluster back instead of leaving
+ * tombstones, so lookups stay short under constant churn.
+ */
+class SiteTerms {
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final float MAX_LOAD = 0.7f;
+
+    private final int siteId;
+    private String[] keys = new String[INITIAL_CAPACITY];
+    private int[] ids = new int[INITIAL_CAPACITY];
+    private int[] frequencies = new int[INITIAL_CAPACITY];
+    private int size;
+    private long pageCount;
+
+    SiteTerms(int siteId) {
+        this.siteId = siteId;
+    }
+
+    synchronized TermEntry get(String lemma) {
+        int slot = find(lemma);
+        return keys[slot] == null ? null : new TermEntry(siteId, ids[slot], lemma, frequencies[slot]);
+    }
+
+    synchronized void put(String lemma, int id, int frequency) {
+        int slot = find(lemma);
+        if (keys[slot] == null) {
+            keys[slot] = lemma;
+            size++;
+        }
+        ids[slot] = id;
+        frequencies[slot] = frequency;
+        if (size > keys.length * MAX_LOAD) {
+            grow();
+        }
+    }
+
+    /** One more page has the lemma; unknown lemmas are added with frequency 1. */
+    synchronized void acquire(String lemma, int id) {
+        int slot = find(lemma);
+        if (keys[slot] == null) {
+            put(lemma, id, 1);
+        } else {
+            frequencies[slot]++;
+        }
+    }
+
+    /** One page less has the lemma; it is dropped when no page has it any more. */
+    synchronized void release(String lemma) {
+        int slot = find(lemma);
+        if (keys[slot] != null && --frequencies[slot] <= 0) {
+            remove(slot);
+        }
+    }
+
+    synchronized void addPages(long delta) {
+        pageCount += delta;
+    }
+
+    synchronized long getPageCount() {
+        return pageCount;
+    }
+
+    synchronized int size() {
+        return size;
+    }
+
+    private int find(String lemma) {
+        int mask = keys.length - 1;
+        int slot = mix(lemma.hashCode()) & mask;
+        while (keys[slot] != null && !keys[slot].equals(lemma)) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void remove(int slot) {
+        int mask = keys.length - 1;
+        int hole = slot;
+        int next = (slot + 1) & mask;
+        while (keys[next] != null) {
+            int home = mix(keys[next].hashCode()) & mask;
+            // move the entry back if the hole lies on its probe path
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                keys[hole] = keys[next];
+                ids[hole] = ids[next];
+                frequencies[hole] = frequencies[next];
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+        keys[hole] = null;
+        size--;
+    }
+
+    private void grow() {
+        String[] oldKeys = keys;
+        int[] oldIds = ids;
+        int[] oldFrequencies = frequencies;
+        keys = new String[oldKeys.length * 2];
+        ids = new int[keys.length];
+        frequencies = new int[keys.length];
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != null) {
+                int slot = find(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                ids[slot] = oldIds[i];
+                frequencies[slot] = oldFrequencies[i];
+            }
+        }
+    }
+
+    private static int mix(int hash) {
+        hash *= 0x9e3779b9;
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -0,0 +1,107 @@
+package searchengine.services.dictionary;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import searchengine.model.Site;
+import searchengine.repository.LemmaFrequency;
+import searchengine.repository.LemmaRepository;
+import searchengine.repository.PageRepository;
+import searchengine.repository.SiteRepository;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Resident copy of the lemma ids and frequencies of every site and of the site page counts,
+ * so that query planning does not read the lemma and page tables. It is loaded before the
+ * application starts serving and kept current by the indexer after each committed page.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class TermDictionary {
+    private final SiteRepository siteRepository;
+    private final PageRepository pageRepository;
+    private final LemmaRepository lemmaRepository;
+
+    private final Map<Integer, SiteTerms> siteTerms = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void warmUp() {
+        long start = System.currentTimeMillis();
+        long terms = 0;
+        for (Site site : siteRepository.findAll()) {
+            terms += loadSite(site.getId());
+        }
+        log.info("Term dictionary loaded in {} ms: {} sites, {} terms",
+                System.currentTimeMillis() - start, siteTerms.size(), terms);
+    }
+
+    /** Replaces the terms of the site with the current table contents. */
+    public int loadSite(int siteId) {
+        SiteTerms terms = new SiteTerms(siteId);
+        List<LemmaFrequency> lemmas = lemmaRepository.findFrequenciesBySiteId(siteId);
+        lemmas.forEach(lemma -> terms.put(lemma.getLemma(), lemma.getId(), lemma.getFrequency()));
+        terms.addPages(pageRepository.countBySiteId(siteId));
+        siteTerms.put(siteId, terms);
+        return terms.size();
+    }
+
+    public void forgetSite(int siteId) {
+        siteTerms.remove(siteId);
+    }
+
+    /**
+     * @param siteId the site to look in, or null for all sites
+     * @return entries of the lemmas that are present, one per site having the lemma
+     */
+    public List<TermEntry> find(Collection<String> lemmas, Integer siteId) {
+        List<TermEntry> found = new ArrayList<>();
+        for (SiteTerms terms : sitesOf(siteId)) {
+            for (String lemma : lemmas) {
+                TermEntry entry = terms.get(lemma);
+                if (entry != null) {
+                    found.add(entry);
+                }
+            }
+        }
+        return found;
+    }
+
+    public long pageCount(Integer siteId) {
+        long count = 0;
+        for (SiteTerms terms : sitesOf(siteId)) {
+            count += terms.getPageCount();
+        }
+        return count;
+    }
+
+    public void addPage(int siteId) {
+        terms(siteId).addPages(1);
+    }
+
+    public void acquire(int siteId, String lemma, int lemmaId) {
+        terms(siteId).acquire(lemma, lemmaId);
+    }
+
+    public void release(int siteId, String lemma) {
+        terms(siteId).release(lemma);
+    }
+
+    private SiteTerms terms(int siteId) {
+        return siteTerms.computeIfAbsent(siteId, SiteTerms::new);
+    }
+
+    private Collection<SiteTerms> sitesOf(Integer siteId) {
+        if (siteId == null) {
+            return siteTerms.values();
+        }
+        SiteTerms terms = siteTerms.get(siteId);
+        return terms == null ? List.of() : List.of(terms);
+    }
+}
@@ -0,0 +1,14 @@
+package searchengine.services.dictionary;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/** Lemma row of a site as held by {@link TermDictionary}; frequency is the number of pages with the lemma. */
+@Getter
+@RequiredArgsConstructor
+public class TermEntry {
+    private final int siteId;
+    private final int id;
+    private final String lemma;
+    private final int frequency;
+}
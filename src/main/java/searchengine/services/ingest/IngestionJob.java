@@ -0,0 +1,56 @@
+package searchengine.services.ingest;
+
+import lombok.Getter;
+
+import java.time.LocalDateTime;
+
+/** One queued /api/indexPage request or scheduled re-crawl of a page. */
+@Getter
+public class IngestionJob {
+    public enum State {
+        QUEUED, RUNNING, DONE, FAILED
+    }
+
+    private final String id;
+    private final String siteUrl;
+    private final String siteName;
+    private final String path;
+    private final String url;
+    /** Re-crawls skip indexing when the content did not change since the last fetch. */
+    private final boolean recrawl;
+    private final LocalDateTime queuedAt = LocalDateTime.now();
+    private volatile State state = State.QUEUED;
+    private volatile String error;
+    private volatile LocalDateTime finishedAt;
+
+    IngestionJob(String id, String siteUrl, String siteName, String path, String url, boolean recrawl) {
+        this.id = id;
+        this.siteUrl = siteUrl;
+        this.siteName = siteName;
+        this.path = path;
+        this.url = url;
+        this.recrawl = recrawl;
+    }
+
+    public void start() {
+        state = State.RUNNING;
+    }
+
+    public void complete() {
+        finish(State.DONE, null);
+    }
+
+    public void fail(String error) {
+        finish(State.FAILED, error);
+    }
+
+    public boolean isFinished() {
+        return state == State.DONE || state == State.FAILED;
+    }
+
+    private void finish(State state, String error) {
+        this.error = error;
+        this.finishedAt = LocalDateTime.now();
+        this.state = state;
+    }
+}
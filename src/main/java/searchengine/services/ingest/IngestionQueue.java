@@ -0,0 +1,127 @@
+package searchengine.services.ingest;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import searchengine.config.IngestionSettings;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded FIFO of single-page indexing jobs. A page that is already waiting is not queued
+ * again: the caller gets the waiting job, since one fetch will see the latest version anyway.
+ * A page whose job is running may get one waiting job, for changes made after that fetch, but
+ * it is not handed out before the running one has finished, so two workers never write the
+ * same page at once. Finished jobs stay queryable until {@code retainedJobs} newer ones have
+ * finished.
+ */
+@Component
+@RequiredArgsConstructor
+public class IngestionQueue {
+    private final IngestionSettings settings;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final LinkedHashMap<String, IngestionJob> waiting = new LinkedHashMap<>();
+    /** Keys of the pages whose jobs are running. */
+    private final Set<String> running = new HashSet<>();
+    private final Map<String, IngestionJob> jobs = new ConcurrentHashMap<>();
+    private final Deque<String> finishedJobIds = new ArrayDeque<>();
+
+    public IngestionJob enqueue(String siteUrl, String siteName, String path, String url) {
+        return enqueue(siteUrl, siteName, path, url, false);
+    }
+
+    /** @return the new or already waiting job for the page, or null when the queue is full */
+    public IngestionJob enqueue(String siteUrl, String siteName, String path, String url, boolean recrawl) {
+        String key = key(siteUrl, path);
+        lock.lock();
+        try {
+            IngestionJob queued = waiting.get(key);
+            if (queued != null) {
+                return queued;
+            }
+            if (waiting.size() >= settings.getCapacity()) {
+                return null;
+            }
+            IngestionJob job = new IngestionJob(UUID.randomUUID().toString(), siteUrl, siteName, path, url, recrawl);
+            waiting.put(key, job);
+            jobs.put(job.getId(), job);
+            notEmpty.signal();
+            return job;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Waits for the first job whose page is not being processed, then for up to
+     * {@code lingerMillis} more until the batch is full. Returned jobs are marked as running
+     * and must be passed to {@link #finished} once done.
+     */
+    public List<IngestionJob> takeBatch() throws InterruptedException {
+        List<IngestionJob> batch = new ArrayList<>();
+        lock.lock();
+        try {
+            while (countReady() == 0) {
+                notEmpty.await();
+            }
+            long remaining = TimeUnit.MILLISECONDS.toNanos(settings.getLingerMillis());
+            while (countReady() < settings.getBatchSize() && remaining > 0) {
+                remaining = notEmpty.awaitNanos(remaining);
+            }
+            Iterator<Map.Entry<String, IngestionJob>> iterator = waiting.entrySet().iterator();
+            while (iterator.hasNext() && batch.size() < settings.getBatchSize()) {
+                Map.Entry<String, IngestionJob> entry = iterator.next();
+                if (running.add(entry.getKey())) {
+                    iterator.remove();
+                    entry.getValue().start();
+                    batch.add(entry.getValue());
+                }
+            }
+            return batch;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private int countReady() {
+        int ready = 0;
+        for (String key : waiting.keySet()) {
+            if (!running.contains(key)) {
+                ready++;
+            }
+        }
+        return ready;
+    }
+
+    private static String key(String siteUrl, String path) {
+        return siteUrl + path;
+    }
+
+    public IngestionJob find(String jobId) {
+        return jobs.get(jobId);
+    }
+
+    public void finished(Collection<IngestionJob> finished) {
+        lock.lock();
+        try {
+            finished.forEach(job -> {
+                running.remove(key(job.getSiteUrl(), job.getPath()));
+                finishedJobIds.addLast(job.getId());
+            });
+            if (!waiting.isEmpty()) {
+                // jobs deferred behind the finished ones may be ready now
+                notEmpty.signalAll();
+            }
+            while (finishedJobIds.size() > settings.getRetainedJobs()) {
+                jobs.remove(finishedJobIds.removeFirst());
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package searchengine.services.progress;
+
+import searchengine.dto.indexing.SiteProgressItem;
+import searchengine.model.Site;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters of one site crawl. The crawl thread updates them, the tracker reads them on its timer
+ * and is the only one touching the rate fields.
+ */
+public class CrawlProgress {
+    private static final double RATE_SMOOTHING = 0.3;
+
+    private final int siteId;
+    private final String url;
+    private final String name;
+    private final LocalDateTime startedAt = LocalDateTime.now();
+    private final AtomicLong pagesFetched = new AtomicLong();
+    private final AtomicLong pagesFailed = new AtomicLong();
+    private final AtomicLong bytes = new AtomicLong();
+    private final AtomicLong version;
+    private volatile long pagesQueued;
+    private volatile Site.StatusType status = Site.StatusType.INDEXING;
+    private volatile String lastError;
+    private volatile boolean dirty;
+
+    private long sampledPages;
+    private long sampledAtNanos = System.nanoTime();
+    private double pagesPerSecond = -1;
+
+    CrawlProgress(Site site, AtomicLong version) {
+        this.siteId = site.getId();
+        this.url = site.getUrl();
+        this.name = site.getName();
+        this.version = version;
+    }
+
+    public void pageFetched(long bodySize) {
+        pagesFetched.incrementAndGet();
+        bytes.addAndGet(bodySize);
+        changed();
+    }
+
+    public void pageFailed(String error) {
+        pagesFailed.incrementAndGet();
+        lastError = error;
+        changed();
+    }
+
+    public void setPagesQueued(long pagesQueued) {
+        if (this.pagesQueued != pagesQueued) {
+            this.pagesQueued = pagesQueued;
+            version.incrementAndGet();
+        }
+    }
+
+    void finish(Site.StatusType status, String lastError) {
+        this.status = status;
+        this.lastError = lastError;
+        this.pagesQueued = 0;
+        version.incrementAndGet();
+    }
+
+    int getSiteId() {
+        return siteId;
+    }
+
+    String getUrl() {
+        return url;
+    }
+
+    LocalDateTime getStartedAt() {
+        return startedAt;
+    }
+
+    String getLastError() {
+        return lastError;
+    }
+
+    boolean isIndexing() {
+        return status == Site.StatusType.INDEXING;
+    }
+
+    /** @return whether there was anything to persist since the previous call */
+    boolean takeDirty() {
+        boolean wasDirty = dirty;
+        dirty = false;
+        return wasDirty;
+    }
+
+    void sampleRate() {
+        long now = System.nanoTime();
+        long pages = pagesFetched.get();
+        double seconds = (now - sampledAtNanos) / 1e9;
+        if (seconds <= 0) {
+            return;
+        }
+        double current = (pages - sampledPages) / seconds;
+        pagesPerSecond = pagesPerSecond < 0 ? current : RATE_SMOOTHING * current + (1 - RATE_SMOOTHING) * pagesPerSecond;
+        sampledPages = pages;
+        sampledAtNanos = now;
+    }
+
+    SiteProgressItem toItem() {
+        SiteProgressItem item = new SiteProgressItem();
+        item.setUrl(url);
+        item.setName(name);
+        item.setStatus(status.name());
+        item.setStartedAt(startedAt);
+        item.setPagesFetched(pagesFetched.get());
+        item.setPagesFailed(pagesFailed.get());
+        item.setPagesQueued(pagesQueued);
+        item.setBytes(bytes.get());
+        double rate = isIndexing() ? Math.max(pagesPerSecond, 0) : 0;
+        item.setPagesPerSecond(Math.round(rate * 100) / 100.0);
+        if (isIndexing() && rate > 0) {
+            item.setEtaSeconds(Math.round(pagesQueued / rate));
+        }
+        item.setLastError(lastError);
+        return item;
+    }
+
+    private void changed() {
+        dirty = true;
+        version.incrementAndGet();
+    }
+}
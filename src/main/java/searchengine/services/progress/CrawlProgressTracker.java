@@ -0,0 +1,129 @@
+package searchengine.services.progress;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import searchengine.config.ProgressSettings;
+import searchengine.dto.indexing.IndexingProgressResponse;
+import searchengine.model.Site;
+import searchengine.repository.SiteRepository;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * In-memory progress of the running crawls. Subscribers get a snapshot of all sites whenever
+ * something changed, at most once per {@code publishIntervalMillis}. The site rows are written
+ * on a separate, coarser timer instead of after every page.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class CrawlProgressTracker {
+    private final ProgressSettings settings;
+    private final SiteRepository siteRepository;
+
+    private final Map<String, CrawlProgress> sites = new ConcurrentHashMap<>();
+    private final List<SseEmitter> subscribers = new CopyOnWriteArrayList<>();
+    private final AtomicLong version = new AtomicLong();
+    private long publishedVersion = -1;
+    private ScheduledExecutorService timer;
+
+    @PostConstruct
+    public void startTimers() {
+        timer = Executors.newSingleThreadScheduledExecutor();
+        timer.scheduleAtFixedRate(this::publish, settings.getPublishIntervalMillis(),
+                settings.getPublishIntervalMillis(), TimeUnit.MILLISECONDS);
+        timer.scheduleAtFixedRate(this::persist, settings.getPersistIntervalMillis(),
+                settings.getPersistIntervalMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stopTimers() {
+        timer.shutdownNow();
+        subscribers.forEach(SseEmitter::complete);
+    }
+
+    /** Replaces the progress of a previous crawl of the same site. */
+    public CrawlProgress start(Site site) {
+        CrawlProgress progress = new CrawlProgress(site, version);
+        sites.put(site.getUrl(), progress);
+        version.incrementAndGet();
+        return progress;
+    }
+
+    public void finish(CrawlProgress progress, Site site) {
+        progress.finish(site.getStatus(), site.getLastError());
+    }
+
+    public IndexingProgressResponse snapshot() {
+        List<CrawlProgress> ordered = sites.values().stream()
+                .sorted(Comparator.comparing(CrawlProgress::getStartedAt))
+                .collect(Collectors.toList());
+        IndexingProgressResponse response = new IndexingProgressResponse();
+        response.setIndexing(ordered.stream().anyMatch(CrawlProgress::isIndexing));
+        response.setSites(ordered.stream().map(CrawlProgress::toItem).collect(Collectors.toList()));
+        return response;
+    }
+
+    public SseEmitter subscribe() {
+        SseEmitter emitter = new SseEmitter(settings.getStreamTimeoutMillis());
+        emitter.onCompletion(() -> subscribers.remove(emitter));
+        emitter.onTimeout(() -> subscribers.remove(emitter));
+        emitter.onError(error -> subscribers.remove(emitter));
+        subscribers.add(emitter);
+        send(emitter, snapshot());
+        return emitter;
+    }
+
+    private void publish() {
+        try {
+            sites.values().stream().filter(CrawlProgress::isIndexing).forEach(CrawlProgress::sampleRate);
+            long current = version.get();
+            if (subscribers.isEmpty() || (current == publishedVersion && !anyIndexing())) {
+                return;
+            }
+            publishedVersion = current;
+            IndexingProgressResponse snapshot = snapshot();
+            subscribers.forEach(emitter -> send(emitter, snapshot));
+        } catch (Exception e) {
+            log.warn("Publishing indexing progress failed", e);
+        }
+    }
+
+    /** Rates and ETAs of running crawls change with time even when no page was fetched. */
+    private boolean anyIndexing() {
+        return sites.values().stream().anyMatch(CrawlProgress::isIndexing);
+    }
+
+    private void persist() {
+        try {
+            LocalDateTime now = LocalDateTime.now();
+            for (CrawlProgress progress : sites.values()) {
+                if (progress.isIndexing() && progress.takeDirty()) {
+                    siteRepository.updateProgress(progress.getSiteId(), now, progress.getLastError(),
+                            Site.StatusType.INDEXING);
+                }
+            }
+        } catch (Exception e) {
+            log.warn("Persisting indexing progress failed", e);
+        }
+    }
+
+    private void send(SseEmitter emitter, IndexingProgressResponse snapshot) {
+        try {
+            emitter.send(SseEmitter.event().name("progress").data(snapshot));
+        } catch (IOException | IllegalStateException e) {
+            subscribers.remove(emitter);
+        }
+    }
+}
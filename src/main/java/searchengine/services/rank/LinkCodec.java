@@ -0,0 +1,63 @@
+package searchengine.services.rank;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+
+/**
+ * Encodes a set of 64-bit link target hashes: sorted as unsigned numbers, without repeats,
+ * as variable-length gaps of 7 bits per byte like PositionCodec.
+ */
+public final class LinkCodec {
+    private static final long[] NO_LINKS = new long[0];
+
+    private LinkCodec() {
+    }
+
+    public static byte[] encode(long[] hashes) {
+        long[] sorted = hashes.clone();
+        // flipping the sign bit makes signed order the unsigned one
+        for (int i = 0; i < sorted.length; i++) {
+            sorted[i] ^= Long.MIN_VALUE;
+        }
+        Arrays.sort(sorted);
+        ByteArrayOutputStream output = new ByteArrayOutputStream(sorted.length * 8);
+        long previous = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            long hash = sorted[i] ^ Long.MIN_VALUE;
+            if (i > 0 && hash == previous) {
+                continue;
+            }
+            long gap = hash - previous;
+            while ((gap & ~0x7fL) != 0) {
+                output.write((int) (gap & 0x7f) | 0x80);
+                gap >>>= 7;
+            }
+            output.write((int) gap);
+            previous = hash;
+        }
+        return output.toByteArray();
+    }
+
+    public static long[] decode(byte[] data) {
+        if (data == null || data.length == 0) {
+            return NO_LINKS;
+        }
+        long[] hashes = new long[data.length];
+        int count = 0;
+        long previous = 0;
+        int index = 0;
+        while (index < data.length) {
+            long gap = 0;
+            int shift = 0;
+            byte current;
+            do {
+                current = data[index++];
+                gap |= (long) (current & 0x7f) << shift;
+                shift += 7;
+            } while ((current & 0x80) != 0);
+            previous += gap;
+            hashes[count++] = previous;
+        }
+        return Arrays.copyOf(hashes, count);
+    }
+}
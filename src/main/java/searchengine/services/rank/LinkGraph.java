@@ -0,0 +1,127 @@
+package searchengine.services.rank;
+
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Links between the pages of one site, numbered 0..n-1, in compressed sparse rows of incoming
+ * links. PageRank pulls every page's new score from its sources, so pages are updated in
+ * parallel without synchronization.
+ */
+public final class LinkGraph {
+    private final int nodes;
+    private final int[] inOffsets;
+    private final int[] inSources;
+    private final int[] outDegree;
+
+    private LinkGraph(int nodes, int[] inOffsets, int[] inSources, int[] outDegree) {
+        this.nodes = nodes;
+        this.inOffsets = inOffsets;
+        this.inSources = inSources;
+        this.outDegree = outDegree;
+    }
+
+    public int nodes() {
+        return nodes;
+    }
+
+    public int edges() {
+        return inSources.length;
+    }
+
+    /**
+     * Power iteration with the scores of pages without links spread evenly over all pages.
+     *
+     * @return scores summing to 1
+     */
+    public double[] pageRank(double damping, int maxIterations, double tolerance, ForkJoinPool pool)
+            throws InterruptedException {
+        double[] rank = new double[nodes];
+        double[] next = new double[nodes];
+        double[] share = new double[nodes];
+        Arrays.fill(rank, 1.0 / nodes);
+        for (int iteration = 0; iteration < maxIterations; iteration++) {
+            double dangling = 0;
+            for (int page = 0; page < nodes; page++) {
+                if (outDegree[page] == 0) {
+                    dangling += rank[page];
+                    share[page] = 0;
+                } else {
+                    share[page] = rank[page] / outDegree[page];
+                }
+            }
+            double base = (1 - damping + damping * dangling) / nodes;
+            double[] current = rank;
+            double[] updated = next;
+            double change = run(pool, () -> IntStream.range(0, nodes).parallel().mapToDouble(page -> {
+                double sum = 0;
+                for (int i = inOffsets[page]; i < inOffsets[page + 1]; i++) {
+                    sum += share[inSources[i]];
+                }
+                updated[page] = base + damping * sum;
+                return Math.abs(updated[page] - current[page]);
+            }).sum());
+            rank = updated;
+            next = current;
+            if (change < tolerance) {
+                break;
+            }
+        }
+        return rank;
+    }
+
+    private static double run(ForkJoinPool pool, Callable<Double> task)
+            throws InterruptedException {
+        try {
+            return pool.submit(task).get();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /** Collects links in growable primitive arrays. Links to the page itself are dropped. */
+    public static class Builder {
+        private final int nodes;
+        private int[] from = new int[1024];
+        private int[] to = new int[1024];
+        private int edges;
+
+        public Builder(int nodes) {
+            this.nodes = nodes;
+        }
+
+        public void addLink(int source, int target) {
+            if (source == target) {
+                return;
+            }
+            if (edges == from.length) {
+                from = Arrays.copyOf(from, edges * 2);
+                to = Arrays.copyOf(to, edges * 2);
+            }
+            from[edges] = source;
+            to[edges] = target;
+            edges++;
+        }
+
+        public LinkGraph build() {
+            int[] outDegree = new int[nodes];
+            int[] inOffsets = new int[nodes + 1];
+            for (int i = 0; i < edges; i++) {
+                outDegree[from[i]]++;
+                inOffsets[to[i] + 1]++;
+            }
+            for (int page = 0; page < nodes; page++) {
+                inOffsets[page + 1] += inOffsets[page];
+            }
+            int[] fill = Arrays.copyOf(inOffsets, nodes);
+            int[] inSources = new int[edges];
+            for (int i = 0; i < edges; i++) {
+                inSources[fill[to[i]]++] = from[i];
+            }
+            return new LinkGraph(nodes, inOffsets, inSources, outDegree);
+        }
+    }
+}
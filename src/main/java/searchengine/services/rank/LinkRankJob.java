@@ -0,0 +1,144 @@
+package searchengine.services.rank;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import searchengine.config.LinkRankSettings;
+import searchengine.model.PageLinks;
+import searchengine.model.Site;
+import searchengine.repository.PageLinksRepository;
+import searchengine.repository.PagePath;
+import searchengine.repository.PageRepository;
+import searchengine.repository.SiteRepository;
+import searchengine.services.recrawl.FetchHistory;
+import searchengine.services.scheduler.IndexingScheduler;
+import searchengine.services.scheduler.SiteJob;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Computes PageRank over the stored links of every indexed site and publishes it as the static
+ * scores of its pages. Runs on a timer and after each finished crawl; sites being crawled wait
+ * for a later run.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class LinkRankJob {
+    private final LinkRankSettings settings;
+    private final SiteRepository siteRepository;
+    private final PageRepository pageRepository;
+    private final PageLinksRepository pageLinksRepository;
+    private final StaticScores staticScores;
+    private final IndexingScheduler indexingScheduler;
+
+    private ScheduledExecutorService timer;
+    private ForkJoinPool pool;
+
+    @PostConstruct
+    public void startTimer() {
+        if (!settings.isEnabled()) {
+            return;
+        }
+        pool = new ForkJoinPool(settings.getThreads() > 0
+                ? settings.getThreads()
+                : Runtime.getRuntime().availableProcessors());
+        timer = Executors.newSingleThreadScheduledExecutor();
+        timer.scheduleWithFixedDelay(this::rankAll, settings.getIntervalMinutes(), settings.getIntervalMinutes(),
+                TimeUnit.MINUTES);
+        // after the job is marked finished, so that rankSite no longer sees the site as active
+        indexingScheduler.addFinishListener(job -> {
+            if (job.getState() == SiteJob.State.DONE) {
+                requestSite(job.getSiteUrl());
+            }
+        });
+    }
+
+    @PreDestroy
+    public void stopTimer() {
+        if (timer != null) {
+            timer.shutdownNow();
+            pool.shutdownNow();
+        }
+    }
+
+    /** Ranks the site soon, on the timer thread. */
+    private void requestSite(String siteUrl) {
+        if (timer != null) {
+            timer.execute(() -> siteRepository.findByUrl(siteUrl).ifPresent(this::rankSite));
+        }
+    }
+
+    private void rankAll() {
+        for (Site site : siteRepository.findAll()) {
+            rankSite(site);
+        }
+    }
+
+    private void rankSite(Site site) {
+        if (site.getStatus() != Site.StatusType.INDEXED || indexingScheduler.isActive(site.getUrl())) {
+            return;
+        }
+        try {
+            long start = System.currentTimeMillis();
+            List<PagePath> pages = pageRepository.findPathsBySiteId(site.getId());
+            if (pages.isEmpty()) {
+                return;
+            }
+            int[] pageIds = new int[pages.size()];
+            Map<Long, Integer> pageByPathHash = new HashMap<>(pages.size() * 2);
+            for (int i = 0; i < pageIds.length; i++) {
+                pageIds[i] = pages.get(i).getId();
+                pageByPathHash.put(FetchHistory.hash(pages.get(i).getPath()), i);
+            }
+
+            LinkGraph.Builder builder = new LinkGraph.Builder(pageIds.length);
+            for (PageLinks links : pageLinksRepository.findBySiteId(site.getId())) {
+                int source = Arrays.binarySearch(pageIds, links.getPageId());
+                if (source < 0) {
+                    continue;
+                }
+                for (long target : LinkCodec.decode(links.getTargets())) {
+                    Integer page = pageByPathHash.get(target);
+                    if (page != null) {
+                        builder.addLink(source, page);
+                    }
+                }
+            }
+            LinkGraph graph = builder.build();
+            double[] rank = graph.pageRank(settings.getDamping(), settings.getMaxIterations(),
+                    settings.getTolerance(), pool);
+            staticScores.update(site.getId(), pageIds, scale(rank));
+            log.info("Link rank of {}: {} pages, {} links in {} ms", site.getUrl(), graph.nodes(), graph.edges(),
+                    System.currentTimeMillis() - start);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.warn("Link rank of {} failed", site.getUrl(), e);
+        }
+    }
+
+    /**
+     * PageRank is heavy-tailed: a few hubs get most of it. A log scale relative to the top page
+     * keeps ordinary pages apart instead of leaving them all near 0.
+     */
+    static float[] scale(double[] rank) {
+        int nodes = rank.length;
+        double max = Arrays.stream(rank).max().orElse(0);
+        double top = Math.log1p(nodes * max);
+        float[] scores = new float[nodes];
+        for (int i = 0; i < nodes; i++) {
+            scores[i] = top == 0 ? 0 : (float) (Math.log1p(nodes * rank[i]) / top);
+        }
+        return scores;
+    }
+}
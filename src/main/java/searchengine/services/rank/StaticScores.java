@@ -0,0 +1,119 @@
+package searchengine.services.rank;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import searchengine.model.SiteRank;
+import searchengine.repository.SiteRankRepository;
+
+import javax.annotation.PostConstruct;
+import java.nio.ByteBuffer;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Resident static scores of the pages of every site, from 0 to 1, kept as sorted page ids
+ * with parallel scores. Pages stored after the last link analysis of their site score 0.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class StaticScores {
+    private final SiteRankRepository siteRankRepository;
+
+    private final Map<Integer, SiteScores> sites = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void warmUp() {
+        for (SiteRank rank : siteRankRepository.findAll()) {
+            sites.put(rank.getSiteId(), SiteScores.decode(rank.getScores()));
+        }
+        log.info("Static scores loaded for {} sites", sites.size());
+    }
+
+    /** Replaces the resident scores of the site with the stored ones, e.g. after a snapshot import. */
+    public void loadSite(int siteId) {
+        siteRankRepository.findById(siteId).ifPresentOrElse(
+                rank -> sites.put(siteId, SiteScores.decode(rank.getScores())),
+                () -> sites.remove(siteId));
+    }
+
+    /** Saves and publishes the scores of a site; the page ids must be ascending. */
+    public void update(int siteId, int[] pageIds, float[] scores) {
+        SiteScores siteScores = new SiteScores(pageIds, scores);
+        SiteRank rank = new SiteRank();
+        rank.setSiteId(siteId);
+        rank.setComputedAt(LocalDateTime.now());
+        rank.setScores(siteScores.encode());
+        siteRankRepository.save(rank);
+        sites.put(siteId, siteScores);
+    }
+
+    public void forgetSite(int siteId) {
+        sites.remove(siteId);
+        if (siteRankRepository.existsById(siteId)) {
+            siteRankRepository.deleteById(siteId);
+        }
+    }
+
+    public float score(int siteId, int pageId) {
+        SiteScores siteScores = sites.get(siteId);
+        if (siteScores == null) {
+            return 0;
+        }
+        int index = Arrays.binarySearch(siteScores.pageIds, pageId);
+        return index >= 0 ? siteScores.scores[index] : 0;
+    }
+
+    /** The highest score of a page of the sites, a bound for pages whose score is not looked up yet. */
+    public float maxScore(Collection<Integer> siteIds) {
+        float max = 0;
+        for (int siteId : siteIds) {
+            SiteScores siteScores = sites.get(siteId);
+            if (siteScores != null) {
+                max = Math.max(max, siteScores.max);
+            }
+        }
+        return max;
+    }
+
+    private static class SiteScores {
+        private final int[] pageIds;
+        private final float[] scores;
+        private final float max;
+
+        SiteScores(int[] pageIds, float[] scores) {
+            this.pageIds = pageIds;
+            this.scores = scores;
+            float max = 0;
+            for (float score : scores) {
+                max = Math.max(max, score);
+            }
+            this.max = max;
+        }
+
+        byte[] encode() {
+            ByteBuffer buffer = ByteBuffer.allocate(4 + pageIds.length * 8);
+            buffer.putInt(pageIds.length);
+            for (int i = 0; i < pageIds.length; i++) {
+                buffer.putInt(pageIds[i]).putFloat(scores[i]);
+            }
+            return buffer.array();
+        }
+
+        static SiteScores decode(byte[] data) {
+            ByteBuffer buffer = ByteBuffer.wrap(data);
+            int count = buffer.getInt();
+            int[] pageIds = new int[count];
+            float[] scores = new float[count];
+            for (int i = 0; i < count; i++) {
+                pageIds[i] = buffer.getInt();
+                scores[i] = buffer.getFloat();
+            }
+            return new SiteScores(pageIds, scores);
+        }
+    }
+}
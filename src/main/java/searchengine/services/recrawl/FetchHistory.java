@@ -0,0 +1,263 @@
+package searchengine.services.recrawl;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import searchengine.config.RecrawlSettings;
+import searchengine.model.PageHistory;
+import searchengine.repository.PageHistoryRepository;
+import searchengine.services.IndexingWriteGate;
+
+import javax.annotation.PreDestroy;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Records every fetch of a page and plans its next visit from how often its content changed.
+ * The change rate uses the estimator of Cho and Garcia-Molina for a Poisson process observed at
+ * discrete visits: with n visits that found X changes, -ln((n - X + 0.5) / (n + 0.5)) changes
+ * per mean visit interval. Unlike X / n it does not saturate when the page changed between
+ * every pair of visits.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class FetchHistory {
+    private static final double SECONDS_PER_DAY = 86_400;
+    /** Fetches closer together than this are not counted as a visit. */
+    private static final long MIN_OBSERVED_SECONDS = 60;
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+    private static final String INSERT_HISTORY = "INSERT INTO page_history (url_hash, site_url, path, content_hash, "
+            + "visits, changes, observed_seconds, failures, change_rate, last_fetched, next_fetch) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String UPDATE_HISTORY = "UPDATE page_history SET content_hash = ?, visits = ?, changes = ?, "
+            + "observed_seconds = ?, failures = ?, change_rate = ?, last_fetched = ?, next_fetch = ? WHERE id = ?";
+
+    private final PageHistoryRepository pageHistoryRepository;
+    private final RecrawlSettings settings;
+    private final IndexingWriteGate indexingWriteGate;
+    private final TransactionTemplate transactionTemplate;
+    private final JdbcTemplate jdbcTemplate;
+
+    /** Fetches not yet written, by url hash; a later fetch of the same address replaces the earlier one. */
+    private final Map<Long, Fetch> pending = new LinkedHashMap<>();
+    private final Object flushLock = new Object();
+
+    /**
+     * Buffers a successful fetch; it is written by the next {@link #flush}. Inside a transaction
+     * the fetch is only buffered once that transaction commits.
+     */
+    public void record(String siteUrl, String path, long contentHash) {
+        Fetch fetch = new Fetch(hash(siteUrl + path), siteUrl, path, contentHash, LocalDateTime.now());
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            buffer(fetch);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                buffer(fetch);
+            }
+        });
+    }
+
+    /** Writes the buffered fetches once there are a batch of them. Must not be called while holding a write permit. */
+    public void flushIfFull() {
+        boolean full;
+        synchronized (pending) {
+            full = pending.size() >= settings.getHistoryBatchSize();
+        }
+        if (full) {
+            flush();
+        }
+    }
+
+    /**
+     * Writes the buffered fetches: one query reads the histories of a batch, and two JDBC batches
+     * insert the new ones and update the rest. Must not be called while holding a write permit.
+     */
+    @PreDestroy
+    public void flush() {
+        synchronized (flushLock) {
+            List<Fetch> fetches;
+            synchronized (pending) {
+                fetches = new ArrayList<>(pending.values());
+                pending.clear();
+            }
+            int batchSize = Math.max(1, settings.getHistoryBatchSize());
+            for (int from = 0; from < fetches.size(); from += batchSize) {
+                List<Fetch> batch = fetches.subList(from, Math.min(fetches.size(), from + batchSize));
+                try {
+                    write(batch);
+                } catch (RuntimeException e) {
+                    // the history only plans re-crawls, so a lost batch must not fail the crawl that wrote it
+                    log.warn("Writing the fetch history of {} addresses failed: {}", batch.size(), e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void buffer(Fetch fetch) {
+        synchronized (pending) {
+            pending.remove(fetch.urlHash);
+            pending.put(fetch.urlHash, fetch);
+        }
+    }
+
+    private void write(List<Fetch> fetches) {
+        Map<Long, PageHistory> existing = pageHistoryRepository.findByUrlHashIn(
+                        fetches.stream().map(fetch -> fetch.urlHash).collect(Collectors.toList())).stream()
+                .collect(Collectors.toMap(PageHistory::getUrlHash, Function.identity()));
+        List<Object[]> inserts = new ArrayList<>();
+        List<Object[]> updates = new ArrayList<>();
+        for (Fetch fetch : fetches) {
+            PageHistory history = existing.get(fetch.urlHash);
+            if (history == null) {
+                history = new PageHistory();
+                history.setUrlHash(fetch.urlHash);
+                history.setSiteUrl(fetch.siteUrl);
+                history.setPath(fetch.path);
+                apply(history, fetch, settings.getInitialIntervalMinutes() * 60);
+                inserts.add(new Object[]{history.getUrlHash(), history.getSiteUrl(), history.getPath(),
+                        history.getContentHash(), history.getVisits(), history.getChanges(),
+                        history.getObservedSeconds(), history.getFailures(), history.getChangeRate(),
+                        Timestamp.valueOf(history.getLastFetched()), Timestamp.valueOf(history.getNextFetch())});
+            } else {
+                long elapsed = Duration.between(history.getLastFetched(), fetch.fetchedAt).getSeconds();
+                if (elapsed >= MIN_OBSERVED_SECONDS) {
+                    history.setVisits(history.getVisits() + 1);
+                    history.setObservedSeconds(history.getObservedSeconds() + elapsed);
+                    if (history.getContentHash() != fetch.contentHash) {
+                        history.setChanges(history.getChanges() + 1);
+                    }
+                    history.setChangeRate(changesPerDay(history.getVisits(), history.getChanges(),
+                            history.getObservedSeconds()));
+                }
+                apply(history, fetch, nextIntervalSeconds(history, elapsed));
+                updates.add(new Object[]{history.getContentHash(), history.getVisits(), history.getChanges(),
+                        history.getObservedSeconds(), history.getFailures(), history.getChangeRate(),
+                        Timestamp.valueOf(history.getLastFetched()), Timestamp.valueOf(history.getNextFetch()),
+                        history.getId()});
+            }
+        }
+        indexingWriteGate.write(() -> transactionTemplate.execute(status -> {
+            if (!inserts.isEmpty()) {
+                jdbcTemplate.batchUpdate(INSERT_HISTORY, inserts);
+            }
+            if (!updates.isEmpty()) {
+                jdbcTemplate.batchUpdate(UPDATE_HISTORY, updates);
+            }
+            return null;
+        }));
+        log.debug("Fetch history: {} addresses added, {} updated", inserts.size(), updates.size());
+    }
+
+    private static void apply(PageHistory history, Fetch fetch, long intervalSeconds) {
+        history.setContentHash(fetch.contentHash);
+        history.setFailures(0);
+        history.setLastFetched(fetch.fetchedAt);
+        history.setNextFetch(fetch.fetchedAt.plusSeconds(intervalSeconds));
+    }
+
+    /**
+     * Records a re-fetch that got no page: a connection error, a timeout or a response that is
+     * not HTML. The first failure waits {@code minIntervalMinutes}, each further one in a row
+     * twice as long, up to {@code maxIntervalMinutes}; after {@code maxFailures} of them the
+     * history is dropped, so the address is only fetched again when a crawl finds it.
+     */
+    public void recordFailure(String siteUrl, String path) {
+        long urlHash = hash(siteUrl + path);
+        boolean buffered;
+        synchronized (pending) {
+            buffered = pending.containsKey(urlHash);
+        }
+        if (buffered) {
+            flush();
+        }
+        PageHistory history = pageHistoryRepository.findByUrlHash(urlHash).orElse(null);
+        if (history == null) {
+            return;
+        }
+        int failures = history.getFailures() + 1;
+        if (failures >= settings.getMaxFailures()) {
+            log.info("Re-crawl of {}{} given up after {} failed fetches", siteUrl, path, failures);
+            pageHistoryRepository.delete(history);
+            return;
+        }
+        long min = settings.getMinIntervalMinutes() * 60;
+        long max = settings.getMaxIntervalMinutes() * 60;
+        long backoff = Math.min(max, min << Math.min(failures - 1, 30));
+        history.setFailures(failures);
+        history.setNextFetch(LocalDateTime.now().plusSeconds(backoff));
+        pageHistoryRepository.save(history);
+    }
+
+    @Transactional(readOnly = true)
+    public boolean isUnchanged(String siteUrl, String path, long contentHash) {
+        long urlHash = hash(siteUrl + path);
+        synchronized (pending) {
+            Fetch fetch = pending.get(urlHash);
+            if (fetch != null) {
+                return fetch.contentHash == contentHash;
+            }
+        }
+        return pageHistoryRepository.findByUrlHash(urlHash)
+                .map(history -> history.getContentHash() == contentHash)
+                .orElse(false);
+    }
+
+    static double changesPerDay(int visits, int changes, long observedSeconds) {
+        if (visits == 0 || observedSeconds == 0) {
+            return 0;
+        }
+        double meanIntervalDays = observedSeconds / SECONDS_PER_DAY / visits;
+        return -Math.log((visits - changes + 0.5) / (visits + 0.5)) / meanIntervalDays;
+    }
+
+    /**
+     * Aims at {@code visitsPerChange} visits per expected change, but at most doubles the
+     * previous interval, so one unchanged visit does not push a page to the maximum at once.
+     */
+    private long nextIntervalSeconds(PageHistory history, long elapsedSeconds) {
+        long min = settings.getMinIntervalMinutes() * 60;
+        long max = settings.getMaxIntervalMinutes() * 60;
+        double target = history.getChangeRate() > 0
+                ? SECONDS_PER_DAY / (history.getChangeRate() * settings.getVisitsPerChange())
+                : max;
+        double interval = Math.min(target, 2.0 * Math.max(elapsedSeconds, min));
+        return (long) Math.max(min, Math.min(max, interval));
+    }
+
+    /** 64-bit FNV-1a over the characters of the text. */
+    public static long hash(String text) {
+        long hash = FNV_OFFSET;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            hash = (hash ^ (c & 0xff)) * FNV_PRIME;
+            hash = (hash ^ (c >>> 8)) * FNV_PRIME;
+        }
+        return hash;
+    }
+
+    @RequiredArgsConstructor
+    private static class Fetch {
+        private final long urlHash;
+        private final String siteUrl;
+        private final String path;
+        private final long contentHash;
+        private final LocalDateTime fetchedAt;
+    }
+}
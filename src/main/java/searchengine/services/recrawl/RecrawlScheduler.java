@@ -0,0 +1,121 @@
+package searchengine.services.recrawl;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import searchengine.config.RecrawlSettings;
+import searchengine.config.Site;
+import searchengine.config.SitesList;
+import searchengine.model.PageHistory;
+import searchengine.repository.PageHistoryRepository;
+import searchengine.repository.SiteRepository;
+import searchengine.services.ingest.IngestionQueue;
+import searchengine.services.scheduler.IndexingScheduler;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Re-fetches pages whose planned visit is due, most overdue first, through the ingestion queue.
+ * Each tick adds {@code fetchesPerHour} worth of fetches to the allowance. Pages of sites that
+ * are being crawled or are not indexed wait for a later tick.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class RecrawlScheduler {
+    private final RecrawlSettings settings;
+    private final PageHistoryRepository pageHistoryRepository;
+    private final SiteRepository siteRepository;
+    private final IngestionQueue ingestionQueue;
+    private final IndexingScheduler indexingScheduler;
+    private final SitesList sitesList;
+    private final FetchHistory fetchHistory;
+
+    private ScheduledExecutorService timer;
+    private double allowance;
+
+    @PostConstruct
+    public void startTimer() {
+        if (!settings.isEnabled()) {
+            return;
+        }
+        timer = Executors.newSingleThreadScheduledExecutor();
+        timer.scheduleWithFixedDelay(this::tick, settings.getTickSeconds(), settings.getTickSeconds(), TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void stopTimer() {
+        if (timer != null) {
+            timer.shutdownNow();
+        }
+    }
+
+    private void tick() {
+        try {
+            // buffered fetches first, so pages fetched a moment ago are not found due
+            fetchHistory.flush();
+            double perTick = settings.getFetchesPerHour() * settings.getTickSeconds() / 3600.0;
+            allowance = Math.min(allowance + perTick, Math.max(perTick, 1));
+            int budget = (int) allowance;
+            if (budget > 0) {
+                allowance -= enqueueDuePages(budget);
+            }
+        } catch (Exception e) {
+            log.warn("Re-crawl tick failed", e);
+        }
+    }
+
+    /** @return pages queued */
+    private int enqueueDuePages(int budget) {
+        LocalDateTime now = LocalDateTime.now();
+        List<PageHistory> due = pageHistoryRepository.findByNextFetchLessThanEqualOrderByNextFetchAsc(now,
+                PageRequest.of(0, budget));
+        if (due.isEmpty()) {
+            return 0;
+        }
+
+        Map<String, Site> configSites = sitesList.getSites().stream()
+                .collect(Collectors.toMap(Site::getUrl, site -> site, (first, second) -> first));
+        Map<String, Boolean> recrawlable = new HashMap<>();
+        List<PageHistory> eligible = new ArrayList<>();
+        for (PageHistory page : due) {
+            if (!configSites.containsKey(page.getSiteUrl())) {
+                page.setNextFetch(now.plusMinutes(settings.getMaxIntervalMinutes()));
+            } else if (!recrawlable.computeIfAbsent(page.getSiteUrl(), this::isRecrawlable)) {
+                page.setNextFetch(now.plusMinutes(settings.getMinIntervalMinutes()));
+            } else {
+                // leased until the fetch records the real schedule; a failed fetch retries then
+                page.setNextFetch(now.plusMinutes(settings.getMinIntervalMinutes()));
+                eligible.add(page);
+            }
+        }
+        // saved before queueing, so this write cannot overwrite what the fetch records
+        pageHistoryRepository.saveAll(due);
+
+        int queued = 0;
+        for (PageHistory page : eligible) {
+            Site configSite = configSites.get(page.getSiteUrl());
+            if (ingestionQueue.enqueue(page.getSiteUrl(), configSite.getName(), page.getPath(),
+                    page.getSiteUrl() + page.getPath(), true) == null) {
+                break;
+            }
+            queued++;
+        }
+        log.debug("Re-crawl: {} pages due, {} queued", due.size(), queued);
+        return queued;
+    }
+
+    private boolean isRecrawlable(String siteUrl) {
+        return !indexingScheduler.isActive(siteUrl) && siteRepository.findByUrl(siteUrl)
+                .map(site -> site.getStatus() == searchengine.model.Site.StatusType.INDEXED)
+                .orElse(false);
+    }
+}
@@ -0,0 +1,293 @@
+package searchengine.services.scheduler;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import searchengine.config.SchedulerSettings;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Runs site jobs on {@code maxConcurrentSites} threads. A job runs {@code slicePages} pages at a
+ * time and then goes back to the queue, so a large site holds a thread only while nothing more
+ * deserving waits. The queue orders by priority, then by the crawl time a job has already had:
+ * a small site started after a large one gets the next free slice rather than waiting for the
+ * large site to finish. Stopped jobs go first so that they release their resources at once.
+ * Jobs are only mutated while out of the queue or under the lock, to keep the heap consistent.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class IndexingScheduler {
+    private static final Comparator<SiteJob> ORDER = Comparator
+            .comparing(SiteJob::isCancelled, Comparator.reverseOrder())
+            .thenComparing(SiteJob::getPriority, Comparator.reverseOrder())
+            .thenComparingLong(SiteJob::getRunNanos)
+            .thenComparingLong(SiteJob::getSequence);
+
+    private final SchedulerSettings settings;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition available = lock.newCondition();
+    private final PriorityQueue<SiteJob> queue = new PriorityQueue<>(ORDER);
+    /** The latest job of every site, finished ones included. */
+    private final Map<String, SiteJob> jobs = new LinkedHashMap<>();
+    private long sequence;
+    /** Set while the index is replaced wholesale; no job may be submitted then. */
+    private boolean exclusive;
+    private ExecutorService workers;
+    private final List<Consumer<SiteJob>> finishListeners = new CopyOnWriteArrayList<>();
+
+    @PostConstruct
+    public void startWorkers() {
+        workers = Executors.newFixedThreadPool(settings.getMaxConcurrentSites());
+        for (int i = 0; i < settings.getMaxConcurrentSites(); i++) {
+            workers.submit(this::work);
+        }
+    }
+
+    @PreDestroy
+    public void stopWorkers() {
+        workers.shutdownNow();
+    }
+
+    /** Called on the worker thread after a started job has finished and is no longer active. */
+    public void addFinishListener(Consumer<SiteJob> listener) {
+        finishListeners.add(listener);
+    }
+
+    /** @return the queued job, or null when the site already has an active one or the scheduler is held exclusively */
+    public SiteJob submit(String siteUrl, String siteName, int priority, SiteTask task) {
+        lock.lock();
+        try {
+            if (exclusive) {
+                return null;
+            }
+            SiteJob existing = jobs.get(siteUrl);
+            if (existing != null && existing.isActive()) {
+                return null;
+            }
+            SiteJob job = new SiteJob(siteUrl, siteName, priority, sequence++, task);
+            jobs.remove(siteUrl);
+            jobs.put(siteUrl, job);
+            queue.add(job);
+            available.signal();
+            return job;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * A job that has not started yet is dropped at once; a started one finishes its current
+     * page and then its task is finished as stopped.
+     *
+     * @return false when the site has no active job
+     */
+    public boolean stop(String siteUrl) {
+        lock.lock();
+        try {
+            SiteJob job = jobs.get(siteUrl);
+            if (job == null || !job.isActive()) {
+                return false;
+            }
+            boolean queued = queue.remove(job);
+            job.cancel();
+            if (queued && !job.isStarted()) {
+                job.markFinished(SiteJob.State.STOPPED);
+            } else if (queued) {
+                queue.add(job);
+                available.signal();
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** @return number of jobs stopped */
+    public int stopAll() {
+        lock.lock();
+        try {
+            int stopped = 0;
+            for (String siteUrl : new ArrayList<>(jobs.keySet())) {
+                if (stop(siteUrl)) {
+                    stopped++;
+                }
+            }
+            return stopped;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** @return false when the site has no active job */
+    public boolean setPriority(String siteUrl, int priority) {
+        lock.lock();
+        try {
+            SiteJob job = jobs.get(siteUrl);
+            if (job == null || !job.isActive()) {
+                return false;
+            }
+            boolean queued = queue.remove(job);
+            job.setPriority(priority);
+            if (queued) {
+                queue.add(job);
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Keeps new jobs out until {@link #endExclusive()}, for work that replaces the whole index,
+     * such as a snapshot import.
+     *
+     * @return false when a job is active or the scheduler is held already
+     */
+    public boolean beginExclusive() {
+        lock.lock();
+        try {
+            if (exclusive || jobs.values().stream().anyMatch(SiteJob::isActive)) {
+                return false;
+            }
+            exclusive = true;
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void endExclusive() {
+        lock.lock();
+        try {
+            exclusive = false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean isExclusive() {
+        lock.lock();
+        try {
+            return exclusive;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean isActive() {
+        lock.lock();
+        try {
+            return jobs.values().stream().anyMatch(SiteJob::isActive);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean isActive(String siteUrl) {
+        lock.lock();
+        try {
+            SiteJob job = jobs.get(siteUrl);
+            return job != null && job.isActive();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public List<SiteJob> getJobs() {
+        lock.lock();
+        try {
+            return new ArrayList<>(jobs.values());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void work() {
+        while (!Thread.currentThread().isInterrupted()) {
+            SiteJob job;
+            try {
+                job = take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (runSlice(job)) {
+                finish(job);
+            } else {
+                requeue(job);
+            }
+        }
+    }
+
+    private SiteJob take() throws InterruptedException {
+        lock.lock();
+        try {
+            while (queue.isEmpty()) {
+                available.await();
+            }
+            SiteJob job = queue.poll();
+            job.setState(SiteJob.State.RUNNING);
+            return job;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** @return true when the job is over */
+    private boolean runSlice(SiteJob job) {
+        long started = System.nanoTime();
+        try {
+            if (job.isCancelled()) {
+                return true;
+            }
+            if (!job.isStarted()) {
+                job.markStarted();
+                job.getTask().start(job::isCancelled);
+            }
+            return job.getTask().runSlice(settings.getSlicePages(), job::isCancelled);
+        } catch (Exception e) {
+            log.error("Indexing job of {} failed", job.getSiteUrl(), e);
+            return true;
+        } finally {
+            job.addRunNanos(System.nanoTime() - started);
+        }
+    }
+
+    private void requeue(SiteJob job) {
+        lock.lock();
+        try {
+            job.setState(SiteJob.State.QUEUED);
+            queue.add(job);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void finish(SiteJob job) {
+        try {
+            if (job.isStarted()) {
+                job.getTask().finish(job.isCancelled());
+            }
+        } catch (Exception e) {
+            log.error("Finishing indexing job of {} failed", job.getSiteUrl(), e);
+        }
+        job.markFinished(job.isCancelled() ? SiteJob.State.STOPPED : SiteJob.State.DONE);
+        for (Consumer<SiteJob> listener : finishListeners) {
+            try {
+                listener.accept(job);
+            } catch (Exception e) {
+                log.warn("Finish listener of the indexing job of {} failed", job.getSiteUrl(), e);
+            }
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package searchengine.services.scheduler;
+
+import lombok.Getter;
+
+import java.time.LocalDateTime;
+
+@Getter
+public class SiteJob {
+    public enum State {
+        QUEUED, RUNNING, DONE, STOPPED
+    }
+
+    private final String siteUrl;
+    private final String siteName;
+    private final long sequence;
+    private final LocalDateTime submittedAt = LocalDateTime.now();
+    private final SiteTask task;
+    private volatile int priority;
+    private volatile State state = State.QUEUED;
+    private volatile boolean cancelled;
+    private volatile LocalDateTime startedAt;
+    private volatile LocalDateTime finishedAt;
+    /** Time spent in slices; among jobs of equal priority the one that got the least runs first. */
+    private volatile long runNanos;
+
+    SiteJob(String siteUrl, String siteName, int priority, long sequence, SiteTask task) {
+        this.siteUrl = siteUrl;
+        this.siteName = siteName;
+        this.priority = priority;
+        this.sequence = sequence;
+        this.task = task;
+    }
+
+    public boolean isActive() {
+        return state == State.QUEUED || state == State.RUNNING;
+    }
+
+    public boolean isStarted() {
+        return startedAt != null;
+    }
+
+    public long getRunMillis() {
+        return runNanos / 1_000_000;
+    }
+
+    void setPriority(int priority) {
+        this.priority = priority;
+    }
+
+    void setState(State state) {
+        this.state = state;
+    }
+
+    void cancel() {
+        cancelled = true;
+    }
+
+    void markStarted() {
+        startedAt = LocalDateTime.now();
+    }
+
+    void markFinished(State state) {
+        this.state = state;
+        finishedAt = LocalDateTime.now();
+    }
+
+    void addRunNanos(long nanos) {
+        runNanos += nanos;
+    }
+}
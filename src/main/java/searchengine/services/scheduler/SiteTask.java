@@ -0,0 +1,19 @@
+package searchengine.services.scheduler;
+
+import java.util.function.BooleanSupplier;
+
+/** The work of one site job, run by the scheduler slice by slice on its worker threads. */
+public interface SiteTask {
+    /** Runs once before the first slice. */
+    void start(BooleanSupplier cancelled);
+
+    /**
+     * Crawls up to {@code maxPages} pages, returning early when {@code cancelled} turns true.
+     *
+     * @return true when the site has nothing left to crawl
+     */
+    boolean runSlice(int maxPages, BooleanSupplier cancelled);
+
+    /** Runs once after the last slice, also when the job was stopped; not called if it never started. */
+    void finish(boolean stopped);
+}
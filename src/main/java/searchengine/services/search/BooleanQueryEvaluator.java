@@ -0,0 +1,265 @@
+package searchengine.services.search;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import searchengine.model.Site;
+import searchengine.repository.PagePositions;
+import searchengine.services.MorphologyService;
+import searchengine.services.dictionary.FuzzyLemmaExpander;
+import searchengine.services.dictionary.TermDictionary;
+import searchengine.services.dictionary.TermEntry;
+import searchengine.services.storage.PostingStore;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Evaluates a parsed query over the positional postings of its lemmas. Phrases and NEAR are
+ * checked on the recorded word positions, so page text is never read. Words that produce no
+ * lemma (stop words) put no constraint on the result.
+ */
+@Component
+@RequiredArgsConstructor
+public class BooleanQueryEvaluator {
+    private final MorphologyService morphologyService;
+    private final TermDictionary termDictionary;
+    private final PostingStore postingStore;
+    private final FuzzyLemmaExpander fuzzyLemmaExpander;
+
+    public Result evaluate(QueryNode root, Site site) {
+        Evaluation evaluation = new Evaluation(site);
+        PostingList postings = root == null ? null : evaluation.evaluate(root);
+        return new Result(postings == null ? PostingList.EMPTY : postings, evaluation.matchedLemmas);
+    }
+
+    public static class Result {
+        private final PostingList postings;
+        private final List<TermEntry> lemmas;
+
+        Result(PostingList postings, List<TermEntry> lemmas) {
+            this.postings = postings;
+            this.lemmas = lemmas;
+        }
+
+        public List<Integer> getPageIds() {
+            List<Integer> pageIds = new ArrayList<>(postings.size());
+            for (int i = 0; i < postings.size(); i++) {
+                pageIds.add(postings.pageId(i));
+            }
+            return pageIds;
+        }
+
+        /** Lemmas of the non-negated words, for ranking. */
+        public List<TermEntry> getLemmas() {
+            return lemmas;
+        }
+    }
+
+    /**
+     * One query. Postings are cached per lemma whatever the polarity of the word: a negated word
+     * needs page ids only, so its postings are loaded without positions, and positions are decoded
+     * only below a phrase or NEAR. Lemma rows belong to one site, so a site search reads only the
+     * postings of that site.
+     */
+    private class Evaluation {
+        private static final int[] NO_POSITIONS = new int[0];
+
+        private final Site site;
+        private final Map<String, List<TermEntry>> lemmasByText = new HashMap<>();
+        private final Map<String, PostingList> pagesByLemma = new HashMap<>();
+        private final Map<String, PostingList> positionsByLemma = new HashMap<>();
+        private final Set<String> rankedLemmas = new HashSet<>();
+        private final List<TermEntry> matchedLemmas = new ArrayList<>();
+
+        Evaluation(Site site) {
+            this.site = site;
+        }
+
+        PostingList evaluate(QueryNode node) {
+            return evaluate(node, false);
+        }
+
+        /** @param positional whether a phrase or NEAR above the node needs word positions */
+        private PostingList evaluate(QueryNode node, boolean positional) {
+            if (node instanceof QueryNode.Term) {
+                String lemma = firstLemma(((QueryNode.Term) node).getWord());
+                return lemma == null ? null : postings(lemma, true, positional);
+            }
+            if (node instanceof QueryNode.Phrase) {
+                return evaluatePhrase((QueryNode.Phrase) node);
+            }
+            if (node instanceof QueryNode.And) {
+                return evaluateAnd((QueryNode.And) node, positional);
+            }
+            if (node instanceof QueryNode.Or) {
+                return evaluateOr((QueryNode.Or) node, positional);
+            }
+            if (node instanceof QueryNode.Near) {
+                return evaluateNear((QueryNode.Near) node);
+            }
+            // a negation outside of AND has nothing to be subtracted from
+            return PostingList.EMPTY;
+        }
+
+        private PostingList evaluatePhrase(QueryNode.Phrase phrase) {
+            List<Map.Entry<Integer, String>> words = new ArrayList<>();
+            morphologyService.getLemmaPositions(phrase.getText()).forEach((lemma, positions) ->
+                    positions.forEach(position -> words.add(Map.entry(position, lemma))));
+            if (words.isEmpty()) {
+                return null;
+            }
+            words.sort(Map.Entry.comparingByKey());
+            int firstPosition = words.get(0).getKey();
+            PostingList result = postings(words.get(0).getValue(), true, true);
+            for (Map.Entry<Integer, String> word : words.subList(1, words.size())) {
+                result = PostingList.followedBy(result, postings(word.getValue(), true, true),
+                        word.getKey() - firstPosition);
+            }
+            return result;
+        }
+
+        private PostingList evaluateAnd(QueryNode.And and, boolean positional) {
+            PostingList result = null;
+            List<QueryNode> negated = new ArrayList<>();
+            for (QueryNode child : and.getChildren()) {
+                if (child instanceof QueryNode.Not) {
+                    negated.add(((QueryNode.Not) child).getChild());
+                    continue;
+                }
+                PostingList postings = evaluate(child, positional);
+                if (postings != null) {
+                    result = result == null ? postings : PostingList.intersect(result, postings);
+                }
+            }
+            if (result == null) {
+                return negated.isEmpty() ? null : PostingList.EMPTY;
+            }
+            for (QueryNode child : negated) {
+                PostingList excluded = evaluateExcluded(child);
+                if (excluded != null) {
+                    result = PostingList.difference(result, excluded);
+                }
+            }
+            return result;
+        }
+
+        private PostingList evaluateOr(QueryNode.Or or, boolean positional) {
+            PostingList result = null;
+            for (QueryNode child : or.getChildren()) {
+                PostingList postings = evaluate(child, positional);
+                if (postings != null) {
+                    result = result == null ? postings : PostingList.union(result, postings);
+                }
+            }
+            return result;
+        }
+
+        private PostingList evaluateNear(QueryNode.Near near) {
+            PostingList left = evaluate(near.getLeft(), true);
+            PostingList right = evaluate(near.getRight(), true);
+            if (left == null || right == null) {
+                return left == null ? right : left;
+            }
+            return PostingList.near(left, right, near.getDistance());
+        }
+
+        private PostingList evaluateExcluded(QueryNode node) {
+            if (node instanceof QueryNode.Term) {
+                String lemma = firstLemma(((QueryNode.Term) node).getWord());
+                return lemma == null ? null : postings(lemma, false, false);
+            }
+            return evaluate(node, false);
+        }
+
+        /** The query lemma of the word; a word without a normal form is kept for fuzzy matching. */
+        private String firstLemma(String word) {
+            return morphologyService.getQueryLemmas(word).stream().findFirst().orElse(null);
+        }
+
+        /**
+         * @param ranked whether the word is asked for rather than excluded; only those count for
+         *               ranking and get fuzzy expansion, excluding near misses would drop good pages
+         */
+        private PostingList postings(String lemmaText, boolean ranked, boolean positional) {
+            List<TermEntry> lemmas = lemmas(lemmaText, ranked);
+            if (ranked && rankedLemmas.add(lemmaText)) {
+                matchedLemmas.addAll(lemmas);
+            }
+            PostingList withPositions = positionsByLemma.get(lemmaText);
+            if (withPositions != null) {
+                return withPositions;
+            }
+            if (positional) {
+                PostingList postings = lemmas.isEmpty() ? PostingList.EMPTY : loadPositions(lemmas);
+                positionsByLemma.put(lemmaText, postings);
+                return postings;
+            }
+            return pagesByLemma.computeIfAbsent(lemmaText,
+                    text -> lemmas.isEmpty() ? PostingList.EMPTY : loadPages(lemmas));
+        }
+
+        /** Same resolution as a query without operators: a lemma absent from the index is expanded fuzzily. */
+        private List<TermEntry> lemmas(String lemmaText, boolean expand) {
+            List<TermEntry> lemmas = lemmasByText.get(lemmaText);
+            if (lemmas == null) {
+                lemmas = termDictionary.find(List.of(lemmaText), siteId());
+                lemmasByText.put(lemmaText, lemmas);
+            }
+            if (!lemmas.isEmpty() || !expand) {
+                return lemmas;
+            }
+            List<String> expansions = fuzzyLemmaExpander.expand(lemmaText, siteId());
+            lemmas = expansions.isEmpty() ? Collections.emptyList() : termDictionary.find(expansions, siteId());
+            lemmasByText.put(lemmaText, lemmas);
+            return lemmas;
+        }
+
+        private Integer siteId() {
+            return site == null ? null : site.getId();
+        }
+
+        private PostingList loadPages(List<TermEntry> lemmas) {
+            List<Integer> rows = postingStore.findPageIds(lemmaIds(lemmas));
+            int[] pageIds = new int[rows.size()];
+            int[][] positions = new int[rows.size()][];
+            for (int i = 0; i < rows.size(); i++) {
+                pageIds[i] = rows.get(i);
+                positions[i] = NO_POSITIONS;
+            }
+            return new PostingList(pageIds, positions);
+        }
+
+        /** Rows come by page; several lemmas of one page, e.g. fuzzy expansions, merge into one entry. */
+        private PostingList loadPositions(List<TermEntry> lemmas) {
+            List<PagePositions> rows = postingStore.findPositions(lemmaIds(lemmas));
+            int[] pageIds = new int[rows.size()];
+            int[][] positions = new int[rows.size()][];
+            int count = 0;
+            for (PagePositions row : rows) {
+                int[] decoded = PositionCodec.decode(row.getPositions());
+                if (count > 0 && pageIds[count - 1] == row.getPageId()) {
+                    positions[count - 1] = mergePositions(positions[count - 1], decoded);
+                    continue;
+                }
+                pageIds[count] = row.getPageId();
+                positions[count++] = decoded;
+            }
+            return new PostingList(Arrays.copyOf(pageIds, count), Arrays.copyOf(positions, count));
+        }
+
+        /** A page indexed without positions keeps matching any positional condition. */
+        private int[] mergePositions(int[] first, int[] second) {
+            if (first.length == 0 || second.length == 0) {
+                return NO_POSITIONS;
+            }
+            int[] merged = Arrays.copyOf(first, first.length + second.length);
+            System.arraycopy(second, 0, merged, first.length, second.length);
+            Arrays.sort(merged);
+            return merged;
+        }
+
+        private List<Integer> lemmaIds(List<TermEntry> lemmas) {
+            return lemmas.stream().map(TermEntry::getId).collect(Collectors.toList());
+        }
+    }
+}
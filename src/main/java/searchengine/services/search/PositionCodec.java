@@ -0,0 +1,54 @@
+package searchengine.services.search;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Encodes ascending word positions as variable-length gaps: 7 bits per byte, high bit set on
+ * all but the last byte of a gap. Typical postings take one byte per occurrence.
+ */
+public final class PositionCodec {
+    private static final int[] NO_POSITIONS = new int[0];
+
+    private PositionCodec() {
+    }
+
+    public static byte[] encode(List<Integer> positions) {
+        ByteArrayOutputStream output = new ByteArrayOutputStream(positions.size() + 4);
+        int previous = 0;
+        for (int position : positions) {
+            int gap = position - previous;
+            while ((gap & ~0x7f) != 0) {
+                output.write((gap & 0x7f) | 0x80);
+                gap >>>= 7;
+            }
+            output.write(gap);
+            previous = position;
+        }
+        return output.toByteArray();
+    }
+
+    public static int[] decode(byte[] data) {
+        if (data == null || data.length == 0) {
+            return NO_POSITIONS;
+        }
+        int[] positions = new int[data.length];
+        int count = 0;
+        int previous = 0;
+        int index = 0;
+        while (index < data.length) {
+            int gap = 0;
+            int shift = 0;
+            byte current;
+            do {
+                current = data[index++];
+                gap |= (current & 0x7f) << shift;
+                shift += 7;
+            } while ((current & 0x80) != 0);
+            previous += gap;
+            positions[count++] = previous;
+        }
+        return Arrays.copyOf(positions, count);
+    }
+}
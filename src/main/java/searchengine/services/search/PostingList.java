@@ -0,0 +1,166 @@
+package searchengine.services.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Page ids in ascending order, each with the ascending word positions of the match on that page.
+ * Every {@code sqrt(n)}-th page id doubles as a skip pointer, so intersecting a short list with
+ * a long one jumps over runs of the long list instead of stepping through them.
+ * Postings indexed without positions carry an empty position array and satisfy any
+ * positional condition.
+ */
+public class PostingList {
+    public static final PostingList EMPTY = new PostingList(new int[0], new int[0][]);
+
+    private final int[] pageIds;
+    private final int[][] positions;
+    private final int skipInterval;
+
+    public PostingList(int[] pageIds, int[][] positions) {
+        this.pageIds = pageIds;
+        this.positions = positions;
+        this.skipInterval = Math.max(1, (int) Math.sqrt(pageIds.length));
+    }
+
+    public int size() {
+        return pageIds.length;
+    }
+
+    public int pageId(int index) {
+        return pageIds[index];
+    }
+
+    public int[] positions(int index) {
+        return positions[index];
+    }
+
+    /**
+     * @return the first index at or after {@code from} whose page id is not less than the target
+     */
+    public int advance(int from, int target) {
+        int index = from;
+        while (index + skipInterval < pageIds.length && pageIds[index + skipInterval] <= target) {
+            index += skipInterval;
+        }
+        while (index < pageIds.length && pageIds[index] < target) {
+            index++;
+        }
+        return index;
+    }
+
+    public static PostingList intersect(PostingList first, PostingList second) {
+        return join(first, second, (a, b) -> a);
+    }
+
+    /**
+     * Pages where a position of {@code second} is exactly {@code offset} words after a position
+     * of {@code first}; the result keeps the positions of {@code first}.
+     */
+    public static PostingList followedBy(PostingList first, PostingList second, int offset) {
+        return join(first, second, (a, b) -> {
+            if (a.length == 0 || b.length == 0) {
+                return a;
+            }
+            int[] matched = new int[a.length];
+            int count = 0;
+            for (int position : a) {
+                if (Arrays.binarySearch(b, position + offset) >= 0) {
+                    matched[count++] = position;
+                }
+            }
+            return count == 0 ? null : Arrays.copyOf(matched, count);
+        });
+    }
+
+    /**
+     * Pages where the operands occur at most {@code distance} words apart, in any order.
+     */
+    public static PostingList near(PostingList first, PostingList second, int distance) {
+        return join(first, second, (a, b) -> {
+            if (a.length == 0 || b.length == 0) {
+                return a;
+            }
+            List<Integer> matched = new ArrayList<>();
+            int j = 0;
+            for (int position : a) {
+                while (j < b.length && b[j] < position - distance) {
+                    j++;
+                }
+                if (j < b.length && b[j] <= position + distance) {
+                    matched.add(position);
+                }
+            }
+            return matched.isEmpty() ? null : matched.stream().mapToInt(Integer::intValue).toArray();
+        });
+    }
+
+    public static PostingList union(PostingList first, PostingList second) {
+        int[] ids = new int[first.size() + second.size()];
+        int[][] merged = new int[ids.length][];
+        int i = 0;
+        int j = 0;
+        int count = 0;
+        while (i < first.size() || j < second.size()) {
+            boolean takeFirst = j >= second.size() || (i < first.size() && first.pageIds[i] <= second.pageIds[j]);
+            boolean takeSecond = i >= first.size() || (j < second.size() && second.pageIds[j] <= first.pageIds[i]);
+            ids[count] = takeFirst ? first.pageIds[i] : second.pageIds[j];
+            merged[count++] = takeFirst && takeSecond
+                    ? mergePositions(first.positions[i], second.positions[j])
+                    : takeFirst ? first.positions[i] : second.positions[j];
+            i += takeFirst ? 1 : 0;
+            j += takeSecond ? 1 : 0;
+        }
+        return new PostingList(Arrays.copyOf(ids, count), Arrays.copyOf(merged, count));
+    }
+
+    public static PostingList difference(PostingList first, PostingList excluded) {
+        int[] ids = new int[first.size()];
+        int[][] kept = new int[first.size()][];
+        int count = 0;
+        int j = 0;
+        for (int i = 0; i < first.size(); i++) {
+            j = excluded.advance(j, first.pageIds[i]);
+            if (j >= excluded.size() || excluded.pageIds[j] != first.pageIds[i]) {
+                ids[count] = first.pageIds[i];
+                kept[count++] = first.positions[i];
+            }
+        }
+        return new PostingList(Arrays.copyOf(ids, count), Arrays.copyOf(kept, count));
+    }
+
+    private static PostingList join(PostingList first, PostingList second, PositionMatcher matcher) {
+        PostingList shorter = first.size() <= second.size() ? first : second;
+        PostingList longer = shorter == first ? second : first;
+        int[] ids = new int[shorter.size()];
+        int[][] matched = new int[shorter.size()][];
+        int count = 0;
+        int j = 0;
+        for (int i = 0; i < shorter.size() && j < longer.size(); i++) {
+            j = longer.advance(j, shorter.pageIds[i]);
+            if (j < longer.size() && longer.pageIds[j] == shorter.pageIds[i]) {
+                int[] firstPositions = shorter == first ? shorter.positions[i] : longer.positions[j];
+                int[] secondPositions = shorter == first ? longer.positions[j] : shorter.positions[i];
+                int[] positions = matcher.match(firstPositions, secondPositions);
+                if (positions != null) {
+                    ids[count] = shorter.pageIds[i];
+                    matched[count++] = positions;
+                }
+            }
+        }
+        return new PostingList(Arrays.copyOf(ids, count), Arrays.copyOf(matched, count));
+    }
+
+    private static int[] mergePositions(int[] first, int[] second) {
+        int[] merged = new int[first.length + second.length];
+        System.arraycopy(first, 0, merged, 0, first.length);
+        System.arraycopy(second, 0, merged, first.length, second.length);
+        Arrays.sort(merged);
+        return merged;
+    }
+
+    private interface PositionMatcher {
+        int[] match(int[] firstPositions, int[] secondPositions);
+    }
+}
@@ -0,0 +1,98 @@
+package searchengine.services.search;
+
+import java.util.List;
+
+/**
+ * Syntax tree of a search query with operators, built by {@link QueryParser}.
+ */
+public abstract class QueryNode {
+    private QueryNode() {
+    }
+
+    public static final class Term extends QueryNode {
+        private final String word;
+
+        Term(String word) {
+            this.word = word;
+        }
+
+        public String getWord() {
+            return word;
+        }
+    }
+
+    public static final class Phrase extends QueryNode {
+        private final String text;
+
+        Phrase(String text) {
+            this.text = text;
+        }
+
+        public String getText() {
+            return text;
+        }
+    }
+
+    public static final class And extends QueryNode {
+        private final List<QueryNode> children;
+
+        And(List<QueryNode> children) {
+            this.children = children;
+        }
+
+        public List<QueryNode> getChildren() {
+            return children;
+        }
+    }
+
+    public static final class Or extends QueryNode {
+        private final List<QueryNode> children;
+
+        Or(List<QueryNode> children) {
+            this.children = children;
+        }
+
+        public List<QueryNode> getChildren() {
+            return children;
+        }
+    }
+
+    public static final class Not extends QueryNode {
+        private final QueryNode child;
+
+        Not(QueryNode child) {
+            this.child = child;
+        }
+
+        public QueryNode getChild() {
+            return child;
+        }
+    }
+
+    /**
+     * Both operands occur on the page at most {@code distance} words apart.
+     */
+    public static final class Near extends QueryNode {
+        private final QueryNode left;
+        private final QueryNode right;
+        private final int distance;
+
+        Near(QueryNode left, QueryNode right, int distance) {
+            this.left = left;
+            this.right = right;
+            this.distance = distance;
+        }
+
+        public QueryNode getLeft() {
+            return left;
+        }
+
+        public QueryNode getRight() {
+            return right;
+        }
+
+        public int getDistance() {
+            return distance;
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package searchengine.services.search;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Parses queries with operators:
+ * <pre>
+ *   "exact phrase"      words in this order, adjacent
+ *   a AND b, a b        both
+ *   a OR b              either
+ *   NOT a, -a           excludes pages with a
+ *   a NEAR/3 b          a and b at most 3 words apart (NEAR alone means 5)
+ *   ( ... )             grouping
+ * </pre>
+ * Precedence from lowest: OR, AND, NEAR, NOT.
+ */
+public final class QueryParser {
+    private static final Pattern TOKEN_PATTERN =
+            Pattern.compile("\"([^\"]*)\"?|\\(|\\)|-(?=[^\\s\\-])|NEAR(?:/(\\d+))?(?=\\s|$)|[^\\s()\"]+");
+    private static final Pattern OPERATOR_PATTERN =
+            Pattern.compile("\"|(^|[\\s(])-\\S|\\b(AND|OR|NOT|NEAR(/\\d+)?)\\b|[()]");
+    private static final int DEFAULT_NEAR_DISTANCE = 5;
+
+    private final List<String> tokens = new ArrayList<>();
+    private final List<String> phraseTexts = new ArrayList<>();
+    private int position;
+
+    private QueryParser(String query) {
+        Matcher matcher = TOKEN_PATTERN.matcher(query);
+        while (matcher.find()) {
+            String token = matcher.group();
+            tokens.add(token.startsWith("\"") ? "\"" : token);
+            phraseTexts.add(matcher.group(1));
+        }
+    }
+
+    /**
+     * @return true if the query uses any operator, so the plain lemma search would ignore its meaning
+     */
+    public static boolean hasOperators(String query) {
+        return OPERATOR_PATTERN.matcher(query).find();
+    }
+
+    /**
+     * @return the syntax tree, or null for a query without words
+     */
+    public static QueryNode parse(String query) {
+        QueryParser parser = new QueryParser(query);
+        QueryNode root = parser.parseOr();
+        while (parser.position < parser.tokens.size()) {
+            parser.position++;
+            root = and(root, parser.parseOr());
+        }
+        return root;
+    }
+
+    private QueryNode parseOr() {
+        List<QueryNode> children = new ArrayList<>();
+        addIfPresent(children, parseAnd());
+        while (accept("OR")) {
+            addIfPresent(children, parseAnd());
+        }
+        return children.isEmpty() ? null : children.size() == 1 ? children.get(0) : new QueryNode.Or(children);
+    }
+
+    private QueryNode parseAnd() {
+        List<QueryNode> children = new ArrayList<>();
+        addIfPresent(children, parseNear());
+        while (hasMore() && !peek().equals("OR") && !peek().equals(")")) {
+            accept("AND");
+            addIfPresent(children, parseNear());
+        }
+        return children.isEmpty() ? null : children.size() == 1 ? children.get(0) : new QueryNode.And(children);
+    }
+
+    private QueryNode parseNear() {
+        QueryNode left = parseUnary();
+        while (hasMore() && peek().startsWith("NEAR")) {
+            String operator = tokens.get(position++);
+            int distance = operator.contains("/")
+                    ? Integer.parseInt(operator.substring(operator.indexOf('/') + 1))
+                    : DEFAULT_NEAR_DISTANCE;
+            QueryNode right = parseUnary();
+            left = left == null || right == null ? and(left, right) : new QueryNode.Near(left, right, distance);
+        }
+        return left;
+    }
+
+    private QueryNode parseUnary() {
+        if (accept("NOT") || accept("-")) {
+            QueryNode child = parseUnary();
+            return child == null ? null : new QueryNode.Not(child);
+        }
+        return parsePrimary();
+    }
+
+    private QueryNode parsePrimary() {
+        if (!hasMore()) {
+            return null;
+        }
+        String token = tokens.get(position);
+        String phraseText = phraseTexts.get(position);
+        position++;
+        if (token.equals("(")) {
+            QueryNode inner = parseOr();
+            accept(")");
+            return inner;
+        }
+        if (token.equals("\"")) {
+            return phraseText.isBlank() ? null : new QueryNode.Phrase(phraseText);
+        }
+        if (token.equals(")") || token.equals("AND") || token.equals("OR")) {
+            return null;
+        }
+        return new QueryNode.Term(token);
+    }
+
+    private static QueryNode and(QueryNode first, QueryNode second) {
+        if (first == null || second == null) {
+            return first == null ? second : first;
+        }
+        return new QueryNode.And(List.of(first, second));
+    }
+
+    private static void addIfPresent(List<QueryNode> nodes, QueryNode node) {
+        if (node != null) {
+            nodes.add(node);
+        }
+    }
+
+    private boolean accept(String token) {
+        if (hasMore() && peek().equals(token)) {
+            position++;
+            return true;
+        }
+        return false;
+    }
+
+    private boolean hasMore() {
+        return position < tokens.size();
+    }
+
+    private String peek() {
+        return tokens.get(position);
+    }
+}
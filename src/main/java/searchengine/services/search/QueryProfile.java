@@ -0,0 +1,86 @@
+package searchengine.services.search;
+
+import searchengine.dto.search.SearchProfile;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Timings, cardinalities and database statements of one search. A phase lasts until the next
+ * one starts. Statements are counted for every thread the profile is bound to with
+ * {@link #run}, which lets the result building threads report into the request's profile.
+ */
+public class QueryProfile {
+    private static final ThreadLocal<QueryProfile> CURRENT = new ThreadLocal<>();
+
+    private final long startNanos = System.nanoTime();
+    private final AtomicInteger statements = new AtomicInteger();
+    private final List<SearchProfile.Phase> phases = new ArrayList<>();
+    private final Map<String, Long> counts = new LinkedHashMap<>();
+    private String phaseName;
+    private long phaseStartNanos;
+    private int phaseStartStatements;
+
+    public static <T> T run(QueryProfile profile, Supplier<T> action) {
+        QueryProfile previous = CURRENT.get();
+        CURRENT.set(profile);
+        try {
+            return action.get();
+        } finally {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        }
+    }
+
+    /** Called for every SQL statement Hibernate prepares. */
+    public static void statementPrepared() {
+        QueryProfile profile = CURRENT.get();
+        if (profile != null) {
+            profile.statements.incrementAndGet();
+        }
+    }
+
+    public synchronized void phase(String name) {
+        endPhase();
+        phaseName = name;
+        phaseStartNanos = System.nanoTime();
+        phaseStartStatements = statements.get();
+    }
+
+    public synchronized void count(String name, long value) {
+        counts.put(name, value);
+    }
+
+    public synchronized SearchProfile finish() {
+        endPhase();
+        SearchProfile profile = new SearchProfile();
+        profile.setTotalMillis(millis(System.nanoTime() - startNanos));
+        profile.setDbQueries(statements.get());
+        profile.setPhases(new ArrayList<>(phases));
+        profile.setCounts(new LinkedHashMap<>(counts));
+        return profile;
+    }
+
+    private void endPhase() {
+        if (phaseName == null) {
+            return;
+        }
+        SearchProfile.Phase phase = new SearchProfile.Phase();
+        phase.setName(phaseName);
+        phase.setMillis(millis(System.nanoTime() - phaseStartNanos));
+        phase.setDbQueries(statements.get() - phaseStartStatements);
+        phases.add(phase);
+        phaseName = null;
+    }
+
+    private static double millis(long nanos) {
+        return Math.round(nanos / 10_000.0) / 100.0;
+    }
+}
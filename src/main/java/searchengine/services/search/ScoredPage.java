@@ -0,0 +1,18 @@
+package searchengine.services.search;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.util.Comparator;
+
+/** A found page with its result score: text relevance blended with the static score. */
+@Getter
+@RequiredArgsConstructor
+public class ScoredPage {
+    public static final Comparator<ScoredPage> BEST_FIRST = Comparator
+            .comparingDouble(ScoredPage::getScore).reversed()
+            .thenComparingInt(ScoredPage::getPageId);
+
+    private final int pageId;
+    private final float score;
+}
@@ -0,0 +1,114 @@
+package searchengine.services.search;
+
+import org.springframework.stereotype.Component;
+import searchengine.config.SearchSettings;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Limits concurrent searches with a limit that adapts to latency (AIMD): every completion under
+ * the target latency raises it by 1/limit, about one slot per round of completions, and a slow
+ * or failed one cuts it by the backoff ratio, at most once per average latency so that one
+ * burst of slow queries counts as one signal. Heavy queries may only fill part of the limit,
+ * so cheap ones still get in while heavy ones queue. Waiting is bounded in length and time.
+ */
+@Component
+public class SearchAdmission {
+    private final SearchSettings.Admission settings;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition slotReleased = lock.newCondition();
+
+    private double limit;
+    private int inFlight;
+    private int waiting;
+    private double averageLatencyMillis;
+    private long lastDecreaseNanos;
+
+    public SearchAdmission(SearchSettings searchSettings) {
+        this.settings = searchSettings.getAdmission();
+        this.limit = settings.getInitialConcurrency();
+        this.averageLatencyMillis = settings.getTargetLatencyMillis() / 2.0;
+    }
+
+    /** @return whether the search may run; a search that got in must call {@link #release} */
+    public boolean acquire(boolean heavy) {
+        if (!settings.isEnabled()) {
+            return true;
+        }
+        lock.lock();
+        try {
+            if (!fits(heavy) && !await(heavy)) {
+                return false;
+            }
+            inFlight++;
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** @param startNanos {@link System#nanoTime()} taken when the search was admitted */
+    public void release(long startNanos, boolean succeeded) {
+        if (!settings.isEnabled()) {
+            return;
+        }
+        long now = System.nanoTime();
+        double latencyMillis = (now - startNanos) / 1_000_000.0;
+        lock.lock();
+        try {
+            inFlight--;
+            averageLatencyMillis += (latencyMillis - averageLatencyMillis) * 0.1;
+            if (!succeeded || latencyMillis > settings.getTargetLatencyMillis()) {
+                if (now - lastDecreaseNanos > averageLatencyMillis * 1_000_000) {
+                    limit = Math.max(settings.getMinConcurrency(), limit * settings.getBackoffRatio());
+                    lastDecreaseNanos = now;
+                }
+            } else {
+                limit = Math.min(settings.getMaxConcurrency(), limit + 1 / limit);
+            }
+            slotReleased.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Seconds after which a rejected client may expect a free slot. */
+    public long retryAfterSeconds() {
+        lock.lock();
+        try {
+            double rounds = (waiting + 1) / Math.max(1, limit);
+            return Math.max(1, (long) Math.ceil(rounds * averageLatencyMillis / 1000));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean await(boolean heavy) {
+        if (waiting >= settings.getMaxQueueLength()) {
+            return false;
+        }
+        waiting++;
+        try {
+            long remaining = TimeUnit.MILLISECONDS.toNanos(settings.getQueueTimeoutMillis());
+            while (!fits(heavy)) {
+                if (remaining <= 0) {
+                    return false;
+                }
+                remaining = slotReleased.awaitNanos(remaining);
+            }
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            waiting--;
+        }
+    }
+
+    private boolean fits(boolean heavy) {
+        int slots = heavy ? Math.max(1, (int) (limit * settings.getHeavyShare())) : (int) limit;
+        return inFlight < slots;
+    }
+}
@@ -0,0 +1,200 @@
+package searchengine.services.search;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import searchengine.services.MorphologyService;
+
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Builds result snippets. The page text is tokenized once and every distinct word is
+ * lemmatized once; the densest window of query matches is then found with a two-pointer scan
+ * and the matches in it are wrapped in {@code <b>}.
+ */
+@Component
+@RequiredArgsConstructor
+public class SnippetBuilder {
+    private static final Pattern WORD_PATTERN =
+            Pattern.compile("[а-яёa-z]+", Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE);
+    private static final int SNIPPET_LENGTH = 200;
+    private static final int LEADING_CONTEXT = 50;
+    private static final String ELLIPSIS = "...";
+
+    private final MorphologyService morphologyService;
+
+    /**
+     * @param text        plain page text
+     * @param queryLemmas lemmas to highlight
+     * @return HTML-escaped snippet with matches in {@code <b>}
+     */
+    public String build(String text, Collection<String> queryLemmas) {
+        if (text == null || text.isEmpty()) {
+            return "";
+        }
+        List<String> lemmas = new ArrayList<>(new LinkedHashSet<>(queryLemmas));
+        List<Match> matches = findMatches(text, lemmas);
+        if (matches.isEmpty()) {
+            return render(text, 0, wordEnd(text, Math.min(text.length(), SNIPPET_LENGTH), 0), matches);
+        }
+
+        int[] window = densestWindow(matches, lemmas.size());
+        int from = matches.get(window[0]).start;
+        int to = matches.get(window[1]).end;
+        int spare = SNIPPET_LENGTH - (to - from);
+        int start = wordStart(text, Math.max(0, from - Math.min(LEADING_CONTEXT, spare)), from);
+        int end = wordEnd(text, Math.min(text.length(), start + SNIPPET_LENGTH), to);
+        return render(text, start, end, matches);
+    }
+
+    public static String escapeHtml(String input) {
+        if (input == null || input.isEmpty()) {
+            return "";
+        }
+        StringBuilder escaped = new StringBuilder(input.length() + 16);
+        appendEscaped(escaped, input, 0, input.length());
+        return escaped.toString();
+    }
+
+    private List<Match> findMatches(String text, List<String> lemmas) {
+        Map<String, Integer> lemmaIndexes = new HashMap<>();
+        for (int i = 0; i < lemmas.size(); i++) {
+            lemmaIndexes.put(lemmas.get(i), i);
+        }
+        Map<String, Integer> wordIndexes = new HashMap<>();
+        List<Match> matches = new ArrayList<>();
+        Matcher matcher = WORD_PATTERN.matcher(text);
+        while (matcher.find()) {
+            String word = matcher.group().toLowerCase();
+            int lemmaIndex = wordIndexes.computeIfAbsent(word, key -> lemmaIndex(key, lemmaIndexes));
+            if (lemmaIndex >= 0) {
+                matches.add(new Match(matcher.start(), matcher.end(), lemmaIndex));
+            }
+        }
+        return matches;
+    }
+
+    private int lemmaIndex(String word, Map<String, Integer> lemmaIndexes) {
+        List<String> forms = morphologyService.isRussianWord(word)
+                ? morphologyService.getNormalForms(word)
+                : List.of(word);
+        for (String form : forms) {
+            Integer index = lemmaIndexes.get(form);
+            if (index != null) {
+                return index;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Window of matches spanning at most {@link #SNIPPET_LENGTH} characters with the most
+     * distinct lemmas, then the most matches.
+     *
+     * @return indexes of the first and last match of the window
+     */
+    private int[] densestWindow(List<Match> matches, int lemmaCount) {
+        int[] counts = new int[lemmaCount];
+        int distinct = 0;
+        int left = 0;
+        int[] best = {0, 0};
+        int bestDistinct = 0;
+        int bestMatches = 0;
+        for (int right = 0; right < matches.size(); right++) {
+            if (counts[matches.get(right).lemmaIndex]++ == 0) {
+                distinct++;
+            }
+            while (matches.get(right).end - matches.get(left).start > SNIPPET_LENGTH) {
+                if (--counts[matches.get(left).lemmaIndex] == 0) {
+                    distinct--;
+                }
+                left++;
+            }
+            int windowMatches = right - left + 1;
+            if (distinct > bestDistinct || (distinct == bestDistinct && windowMatches > bestMatches)) {
+                bestDistinct = distinct;
+                bestMatches = windowMatches;
+                best[0] = left;
+                best[1] = right;
+            }
+        }
+        return best;
+    }
+
+    private String render(String text, int start, int end, List<Match> matches) {
+        StringBuilder snippet = new StringBuilder(end - start + 32);
+        if (start > 0) {
+            snippet.append(ELLIPSIS);
+        }
+        int position = start;
+        for (Match match : matches) {
+            if (match.start < start) {
+                continue;
+            }
+            if (match.end > end) {
+                break;
+            }
+            appendEscaped(snippet, text, position, match.start);
+            snippet.append("<b>");
+            appendEscaped(snippet, text, match.start, match.end);
+            snippet.append("</b>");
+            position = match.end;
+        }
+        appendEscaped(snippet, text, position, end);
+        if (end < text.length()) {
+            snippet.append(ELLIPSIS);
+        }
+        return snippet.toString();
+    }
+
+    /** Moves {@code index} forward out of a word it cuts, but not past {@code limit}. */
+    private static int wordStart(String text, int index, int limit) {
+        if (index == 0 || !Character.isLetterOrDigit(text.charAt(index - 1))) {
+            return index;
+        }
+        int next = index;
+        while (next < limit && !Character.isWhitespace(text.charAt(next))) {
+            next++;
+        }
+        return next < limit ? next + 1 : index;
+    }
+
+    /** Moves {@code index} back out of a word it cuts, but not before {@code limit}. */
+    private static int wordEnd(String text, int index, int limit) {
+        if (index == text.length() || !Character.isLetterOrDigit(text.charAt(index))) {
+            return index;
+        }
+        int previous = index;
+        while (previous > limit && !Character.isWhitespace(text.charAt(previous - 1))) {
+            previous--;
+        }
+        return previous > limit ? previous - 1 : index;
+    }
+
+    private static void appendEscaped(StringBuilder target, String text, int from, int to) {
+        for (int i = from; i < to; i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '&': target.append("&amp;"); break;
+                case '<': target.append("&lt;"); break;
+                case '>': target.append("&gt;"); break;
+                case '"': target.append("&quot;"); break;
+                case '\'': target.append("&#39;"); break;
+                default: target.append(c);
+            }
+        }
+    }
+
+    private static class Match {
+        private final int start;
+        private final int end;
+        private final int lemmaIndex;
+
+        Match(int start, int end, int lemmaIndex) {
+            this.start = start;
+            this.end = end;
+            this.lemmaIndex = lemmaIndex;
+        }
+    }
+}
@@ -0,0 +1,249 @@
+package searchengine.services.search;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import searchengine.config.SearchSettings;
+import searchengine.repository.PagePosting;
+import searchengine.services.dictionary.TermEntry;
+import searchengine.services.rank.StaticScores;
+import searchengine.services.storage.PostingStore;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Picks the best {@code k} of the matching pages without reading every posting of the query.
+ * The postings of each lemma are read by falling rank in blocks that double every round. After
+ * a round, a page seen so far scores at least the ranks read for it and at most that plus the
+ * last rank read from every list it has not shown up in yet; a page not seen at all scores at
+ * most the sum of those ranks and the best static score of the sites. Reading stops once no other
+ * page can beat the {@code k}-th lower bound (the threshold test of NRA and MaxScore), and the
+ * exact scores of the {@code k} pages left come from one lookup of their postings.
+ *
+ * <p>So that a score is known before all postings are read, the text relevance of a page is its
+ * rank sum divided by the highest sum a page may reach: the sum over the query lemmas of their
+ * highest rank, taking the best row of a lemma found in several sites.
+ */
+@Component
+@RequiredArgsConstructor
+public class TopKSelector {
+    private final PostingStore postingStore;
+    private final StaticScores staticScores;
+    private final SearchSettings searchSettings;
+
+    /**
+     * @param pageIds ascending ids of the pages that match the query
+     * @param lemmas lemma rows whose ranks make up the text relevance
+     * @return the best {@code k} pages, best first
+     */
+    public List<ScoredPage> select(int[] pageIds, List<TermEntry> lemmas, int k, QueryProfile profile) {
+        if (pageIds.length == 0 || k <= 0) {
+            return Collections.emptyList();
+        }
+        if (lemmas.isEmpty()) {
+            List<ScoredPage> unranked = new ArrayList<>();
+            for (int i = 0; i < pageIds.length && i < k; i++) {
+                unranked.add(new ScoredPage(pageIds[i], 0));
+            }
+            return unranked;
+        }
+        Selection selection = new Selection(pageIds, lemmas, k);
+        List<ScoredPage> top = selection.run();
+        profile.count("rankedPostingsRead", selection.postingsRead);
+        profile.count("rankRounds", selection.rounds);
+        return top;
+    }
+
+    private class Selection {
+        private final int[] pageIds;
+        private final List<TermEntry> lemmas;
+        private final int k;
+        private final float weight = searchSettings.getStaticScoreWeight();
+        /** Highest rank of every lemma, the first posting read. */
+        private final float[] maxRanks;
+        /** Rank that the postings of every lemma not read yet may reach at most. */
+        private final float[] bounds;
+        private final boolean[] exhausted;
+        private final int[] offsets;
+        private final Map<Integer, SeenPage> seen = new HashMap<>();
+        private float maxRankSum;
+        private float maxStatic;
+        private long postingsRead;
+        private int rounds;
+
+        Selection(int[] pageIds, List<TermEntry> lemmas, int k) {
+            this.pageIds = pageIds;
+            this.lemmas = lemmas;
+            this.k = k;
+            this.maxRanks = new float[lemmas.size()];
+            this.bounds = new float[lemmas.size()];
+            this.exhausted = new boolean[lemmas.size()];
+            this.offsets = new int[lemmas.size()];
+        }
+
+        List<ScoredPage> run() {
+            maxStatic = staticScores.maxScore(lemmas.stream().map(TermEntry::getSiteId).collect(Collectors.toSet()));
+            int block = Math.max(k, searchSettings.getImpactBlockSize());
+            while (true) {
+                boolean more = readRound(block);
+                if (rounds == 1) {
+                    maxRankSum = maxRankSum();
+                }
+                if (!more) {
+                    return exactTop();
+                }
+                List<SeenPage> top = settledTop();
+                if (top != null) {
+                    return refine(top);
+                }
+                block *= 2;
+            }
+        }
+
+        /** @return whether any list has postings left */
+        private boolean readRound(int block) {
+            rounds++;
+            boolean more = false;
+            for (int i = 0; i < lemmas.size(); i++) {
+                if (exhausted[i]) {
+                    continue;
+                }
+                TermEntry lemma = lemmas.get(i);
+                List<PagePosting> postings = postingStore.findPostingsByRank(lemma.getId(), offsets[i], block);
+                offsets[i] += postings.size();
+                postingsRead += postings.size();
+                if (rounds == 1 && !postings.isEmpty()) {
+                    maxRanks[i] = postings.get(0).getRank();
+                }
+                for (PagePosting posting : postings) {
+                    bounds[i] = posting.getRank();
+                    if (Arrays.binarySearch(pageIds, posting.getPageId()) >= 0) {
+                        seen.computeIfAbsent(posting.getPageId(), pageId -> new SeenPage(pageId, lemma.getSiteId(),
+                                lemmas.size())).add(i, posting.getRank());
+                    }
+                }
+                if (postings.size() < block) {
+                    exhausted[i] = true;
+                    bounds[i] = 0;
+                } else {
+                    more = true;
+                }
+            }
+            return more;
+        }
+
+        private float maxRankSum() {
+            Map<String, Float> best = new HashMap<>();
+            for (int i = 0; i < lemmas.size(); i++) {
+                best.merge(lemmas.get(i).getLemma(), maxRanks[i], Math::max);
+            }
+            float sum = 0;
+            for (float rank : best.values()) {
+                sum += rank;
+            }
+            return sum;
+        }
+
+        /** @return the best {@code k} pages if no other page can beat them any more, otherwise null */
+        private List<SeenPage> settledTop() {
+            if (seen.size() < Math.min(k, pageIds.length)) {
+                return null;
+            }
+            PriorityQueue<SeenPage> top = new PriorityQueue<>(k + 1, Comparator.comparingDouble(page -> page.lower));
+            for (SeenPage page : seen.values()) {
+                page.lower = score(page.rankSum, page);
+                top.add(page);
+                if (top.size() > k) {
+                    top.poll();
+                }
+            }
+            float threshold = top.size() < k ? Float.NEGATIVE_INFINITY : top.peek().lower;
+            float remaining = 0;
+            for (float bound : bounds) {
+                remaining += bound;
+            }
+            if (seen.size() < pageIds.length && text(remaining) + weight * maxStatic > threshold) {
+                return null;
+            }
+            Set<SeenPage> settled = new HashSet<>(top);
+            for (SeenPage page : seen.values()) {
+                if (!settled.contains(page) && score(page.rankSum + remaining - page.seenBounds(bounds), page) > threshold) {
+                    return null;
+                }
+            }
+            return new ArrayList<>(top);
+        }
+
+        /** Every list was read to the end, so the rank sums are exact. */
+        private List<ScoredPage> exactTop() {
+            PriorityQueue<ScoredPage> top = new PriorityQueue<>(k + 1, ScoredPage.BEST_FIRST.reversed());
+            for (SeenPage page : seen.values()) {
+                top.add(new ScoredPage(page.pageId, score(page.rankSum, page)));
+                if (top.size() > k) {
+                    top.poll();
+                }
+            }
+            // matching pages without any of the ranking lemmas, e.g. from an OR with unranked words
+            for (int i = 0; i < pageIds.length && top.size() < k; i++) {
+                if (!seen.containsKey(pageIds[i])) {
+                    top.add(new ScoredPage(pageIds[i], 0));
+                }
+            }
+            List<ScoredPage> best = new ArrayList<>(top);
+            best.sort(ScoredPage.BEST_FIRST);
+            return best;
+        }
+
+        /** The set is settled but the order is not: the pages may still have postings not read yet. */
+        private List<ScoredPage> refine(List<SeenPage> top) {
+            List<Integer> topIds = top.stream().map(page -> page.pageId).collect(Collectors.toList());
+            List<Integer> lemmaIds = lemmas.stream().map(TermEntry::getId).collect(Collectors.toList());
+            Map<Integer, Float> rankSums = new HashMap<>();
+            for (PagePosting posting : postingStore.findPostings(topIds, lemmaIds)) {
+                rankSums.merge(posting.getPageId(), posting.getRank(), Float::sum);
+            }
+            List<ScoredPage> best = new ArrayList<>(top.size());
+            for (SeenPage page : top) {
+                best.add(new ScoredPage(page.pageId, score(rankSums.getOrDefault(page.pageId, page.rankSum), page)));
+            }
+            best.sort(ScoredPage.BEST_FIRST);
+            return best;
+        }
+
+        private float score(float rankSum, SeenPage page) {
+            return text(rankSum) + weight * staticScores.score(page.siteId, page.pageId);
+        }
+
+        private float text(float rankSum) {
+            return maxRankSum == 0 ? 0 : (1 - weight) * rankSum / maxRankSum;
+        }
+    }
+
+    private static class SeenPage {
+        private final int pageId;
+        private final int siteId;
+        /** Lemmas whose postings of this page have been read. */
+        private final BitSet lemmas;
+        private float rankSum;
+        private float lower;
+
+        SeenPage(int pageId, int siteId, int lemmaCount) {
+            this.pageId = pageId;
+            this.siteId = siteId;
+            this.lemmas = new BitSet(lemmaCount);
+        }
+
+        void add(int lemma, float rank) {
+            lemmas.set(lemma);
+            rankSum += rank;
+        }
+
+        float seenBounds(float[] bounds) {
+            float sum = 0;
+            for (int lemma = lemmas.nextSetBit(0); lemma >= 0; lemma = lemmas.nextSetBit(lemma + 1)) {
+                sum += bounds[lemma];
+            }
+            return sum;
+        }
+    }
+}
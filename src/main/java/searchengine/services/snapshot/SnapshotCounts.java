@@ -0,0 +1,63 @@
+package searchengine.services.snapshot;
+
+import lombok.Getter;
+
+@Getter
+public class SnapshotCounts {
+    private long sites;
+    private long pages;
+    private long lemmas;
+    private long postings;
+    private long pageLinks;
+    private long siteRanks;
+    private long pageHistory;
+
+    SnapshotCounts() {
+    }
+
+    SnapshotCounts(long sites, long pages, long lemmas, long postings,
+                   long pageLinks, long siteRanks, long pageHistory) {
+        this.sites = sites;
+        this.pages = pages;
+        this.lemmas = lemmas;
+        this.postings = postings;
+        this.pageLinks = pageLinks;
+        this.siteRanks = siteRanks;
+        this.pageHistory = pageHistory;
+    }
+
+    void addSite() {
+        sites++;
+    }
+
+    void addPage() {
+        pages++;
+    }
+
+    void addLemma() {
+        lemmas++;
+    }
+
+    void addPosting() {
+        postings++;
+    }
+
+    void addPageLinks() {
+        pageLinks++;
+    }
+
+    void addSiteRank() {
+        siteRanks++;
+    }
+
+    void addPageHistory() {
+        pageHistory++;
+    }
+
+    boolean matches(SnapshotCounts other) {
+        return sites == other.sites && pages == other.pages
+                && lemmas == other.lemmas && postings == other.postings
+                && pageLinks == other.pageLinks && siteRanks == other.siteRanks
+                && pageHistory == other.pageHistory;
+    }
+}
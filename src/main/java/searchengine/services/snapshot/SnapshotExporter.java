@@ -0,0 +1,246 @@
+package searchengine.services.snapshot;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Isolation;
+import org.springframework.transaction.annotation.Transactional;
+import searchengine.services.storage.Posting;
+import searchengine.services.storage.PostingStore;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.List;
+
+/**
+ * Writes the index tables into a snapshot. Tables are read in key order with keyset paging
+ * inside one repeatable-read transaction, so the image is consistent and memory use does not
+ * depend on the index size.
+ */
+@Component
+@RequiredArgsConstructor
+public class SnapshotExporter {
+    private static final int PAGE_BATCH_SIZE = 200;
+    private static final int ROW_BATCH_SIZE = 10_000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final PostingStore postingStore;
+
+    @Transactional(readOnly = true, isolation = Isolation.REPEATABLE_READ)
+    public SnapshotCounts export(OutputStream target) throws IOException {
+        SnapshotOutput output = new SnapshotOutput(target);
+        SnapshotCounts counts = new SnapshotCounts();
+        output.writeInt(SnapshotFormat.MAGIC);
+        output.writeInt(SnapshotFormat.VERSION);
+        try {
+            exportSites(output, counts);
+            exportPages(output, counts);
+            exportLemmas(output, counts);
+            exportPostings(output, counts);
+            exportPageLinks(output, counts);
+            exportSiteRanks(output, counts);
+            exportPageHistory(output, counts);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        output.writeVarint(SnapshotFormat.END);
+        output.writeVarint(counts.getSites());
+        output.writeVarint(counts.getPages());
+        output.writeVarint(counts.getLemmas());
+        output.writeVarint(counts.getPostings());
+        output.writeVarint(counts.getPageLinks());
+        output.writeVarint(counts.getSiteRanks());
+        output.writeVarint(counts.getPageHistory());
+        output.flush();
+        return counts;
+    }
+
+    private void exportSites(SnapshotOutput output, SnapshotCounts counts) {
+        jdbcTemplate.query("SELECT id, status, status_time, last_error, url, name FROM site ORDER BY id", rs -> {
+            write(() -> {
+                output.writeVarint(SnapshotFormat.SITE);
+                output.writeVarint(rs.getInt("id"));
+                output.writeString(rs.getString("status"));
+                writeTimestamp(output, rs.getTimestamp("status_time"));
+                output.writeString(rs.getString("last_error"));
+                output.writeString(rs.getString("url"));
+                output.writeString(rs.getString("name"));
+            });
+            counts.addSite();
+        });
+    }
+
+    private void exportPages(SnapshotOutput output, SnapshotCounts counts) {
+        int[] lastId = {0};
+        int batch;
+        do {
+            batch = jdbcTemplate.query(
+                    "SELECT p.id, p.site_id, p.path, p.code, p.content, p.fingerprint, p.duplicate_of, c.data " +
+                    "FROM page p LEFT JOIN page_content c ON c.page_id = p.id WHERE p.id > ? ORDER BY p.id LIMIT ?",
+                    rs -> {
+                        int rows = 0;
+                        while (rs.next()) {
+                            lastId[0] = rs.getInt("id");
+                            write(() -> writePage(output, rs, lastId[0]));
+                            counts.addPage();
+                            rows++;
+                        }
+                        return rows;
+                    }, lastId[0], PAGE_BATCH_SIZE);
+        } while (batch == PAGE_BATCH_SIZE);
+    }
+
+    private void writePage(SnapshotOutput output, ResultSet rs, int id) throws IOException, SQLException {
+        output.writeVarint(SnapshotFormat.PAGE);
+        output.writeVarint(id);
+        output.writeVarint(rs.getInt("site_id"));
+        output.writeString(rs.getString("path"));
+        output.writeVarint(rs.getInt("code"));
+        output.writeString(rs.getString("content"));
+        long fingerprint = rs.getLong("fingerprint");
+        output.writeVarint(rs.wasNull() ? 0 : 1);
+        output.writeLong(fingerprint);
+        int duplicateOf = rs.getInt("duplicate_of");
+        output.writeVarint(rs.wasNull() ? 0 : duplicateOf + 1L);
+        output.writeBytes(rs.getBytes("data"));
+    }
+
+    private void exportLemmas(SnapshotOutput output, SnapshotCounts counts) {
+        int[] lastId = {0};
+        int batch;
+        do {
+            batch = jdbcTemplate.query(
+                    "SELECT id, site_id, lemma, frequency FROM lemma WHERE id > ? ORDER BY id LIMIT ?",
+                    rs -> {
+                        int rows = 0;
+                        while (rs.next()) {
+                            lastId[0] = rs.getInt("id");
+                            write(() -> {
+                                output.writeVarint(SnapshotFormat.LEMMA);
+                                output.writeVarint(lastId[0]);
+                                output.writeVarint(rs.getInt("site_id"));
+                                output.writeString(rs.getString("lemma"));
+                                output.writeVarint(rs.getInt("frequency"));
+                            });
+                            counts.addLemma();
+                            rows++;
+                        }
+                        return rows;
+                    }, lastId[0], ROW_BATCH_SIZE);
+        } while (batch == ROW_BATCH_SIZE);
+    }
+
+    /**
+     * Postings are read from the posting store, so a snapshot also moves an index between store
+     * types. Page id is written as a gap; lemma id as a gap within the same page.
+     */
+    private void exportPostings(SnapshotOutput output, SnapshotCounts counts) throws IOException {
+        int lastPageId = 0;
+        int lastLemmaId = 0;
+        List<Posting> batch;
+        while (!(batch = postingStore.scan(lastPageId, lastLemmaId, ROW_BATCH_SIZE)).isEmpty()) {
+            for (Posting posting : batch) {
+                int pageGap = posting.getPageId() - lastPageId;
+                output.writeVarint(SnapshotFormat.POSTING);
+                output.writeVarint(pageGap);
+                output.writeVarint(pageGap == 0 ? posting.getLemmaId() - lastLemmaId : posting.getLemmaId());
+                output.writeFloat(posting.getRank());
+                output.writeBytes(posting.getPositions());
+                lastPageId = posting.getPageId();
+                lastLemmaId = posting.getLemmaId();
+                counts.addPosting();
+            }
+        }
+    }
+
+    private void exportPageLinks(SnapshotOutput output, SnapshotCounts counts) {
+        int[] lastId = {0};
+        int batch;
+        do {
+            batch = jdbcTemplate.query(
+                    "SELECT page_id, site_id, targets FROM page_links WHERE page_id > ? ORDER BY page_id LIMIT ?",
+                    rs -> {
+                        int rows = 0;
+                        while (rs.next()) {
+                            lastId[0] = rs.getInt("page_id");
+                            write(() -> {
+                                output.writeVarint(SnapshotFormat.PAGE_LINKS);
+                                output.writeVarint(lastId[0]);
+                                output.writeVarint(rs.getInt("site_id"));
+                                output.writeBytes(rs.getBytes("targets"));
+                            });
+                            counts.addPageLinks();
+                            rows++;
+                        }
+                        return rows;
+                    }, lastId[0], PAGE_BATCH_SIZE);
+        } while (batch == PAGE_BATCH_SIZE);
+    }
+
+    private void exportSiteRanks(SnapshotOutput output, SnapshotCounts counts) {
+        jdbcTemplate.query("SELECT site_id, computed_at, scores FROM site_rank ORDER BY site_id", rs -> {
+            write(() -> {
+                output.writeVarint(SnapshotFormat.SITE_RANK);
+                output.writeVarint(rs.getInt("site_id"));
+                writeTimestamp(output, rs.getTimestamp("computed_at"));
+                output.writeBytes(rs.getBytes("scores"));
+            });
+            counts.addSiteRank();
+        });
+    }
+
+    /** Ids are not written: nothing references the history, the target generates new ones. */
+    private void exportPageHistory(SnapshotOutput output, SnapshotCounts counts) {
+        int[] lastId = {0};
+        int batch;
+        do {
+            batch = jdbcTemplate.query(
+                    "SELECT id, url_hash, site_url, path, content_hash, visits, changes, observed_seconds, " +
+                    "failures, change_rate, last_fetched, next_fetch FROM page_history WHERE id > ? ORDER BY id LIMIT ?",
+                    rs -> {
+                        int rows = 0;
+                        while (rs.next()) {
+                            lastId[0] = rs.getInt("id");
+                            write(() -> {
+                                output.writeVarint(SnapshotFormat.PAGE_HISTORY);
+                                output.writeLong(rs.getLong("url_hash"));
+                                output.writeString(rs.getString("site_url"));
+                                output.writeString(rs.getString("path"));
+                                output.writeLong(rs.getLong("content_hash"));
+                                output.writeVarint(rs.getInt("visits"));
+                                output.writeVarint(rs.getInt("changes"));
+                                output.writeVarint(rs.getLong("observed_seconds"));
+                                output.writeVarint(rs.getInt("failures"));
+                                output.writeDouble(rs.getDouble("change_rate"));
+                                writeTimestamp(output, rs.getTimestamp("last_fetched"));
+                                writeTimestamp(output, rs.getTimestamp("next_fetch"));
+                            });
+                            counts.addPageHistory();
+                            rows++;
+                        }
+                        return rows;
+                    }, lastId[0], ROW_BATCH_SIZE);
+        } while (batch == ROW_BATCH_SIZE);
+    }
+
+    private static void writeTimestamp(SnapshotOutput output, Timestamp timestamp) throws IOException {
+        output.writeLong(timestamp.getTime());
+        output.writeVarint(timestamp.getNanos());
+    }
+
+    private static void write(RecordWriter writer) throws SQLException {
+        try {
+            writer.write();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private interface RecordWriter {
+        void write() throws IOException, SQLException;
+    }
+}
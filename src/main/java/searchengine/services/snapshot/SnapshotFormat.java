@@ -0,0 +1,26 @@
+package searchengine.services.snapshot;
+
+/**
+ * Layout of a snapshot file. After the header come tagged records in foreign key order
+ * (sites, pages, lemmas, postings), then the data derived from or kept beside the index (page
+ * links, site ranks, fetch history), then {@link #END} and the record counts for validation.
+ * Integers are unsigned varints; postings are ordered by page and lemma id and store both as
+ * gaps.
+ */
+final class SnapshotFormat {
+    static final int MAGIC = 0x53455350; // "SESP"
+    /** 2 added page links, site ranks and fetch history. */
+    static final int VERSION = 2;
+
+    static final int END = 0;
+    static final int SITE = 1;
+    static final int PAGE = 2;
+    static final int LEMMA = 3;
+    static final int POSTING = 4;
+    static final int PAGE_LINKS = 5;
+    static final int SITE_RANK = 6;
+    static final int PAGE_HISTORY = 7;
+
+    private SnapshotFormat() {
+    }
+}
@@ -0,0 +1,209 @@
+package searchengine.services.snapshot;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import searchengine.services.storage.Posting;
+import searchengine.services.storage.PostingStore;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Loads a snapshot into empty tables with batched inserts that keep the original ids. The file
+ * is parsed twice: a dry run validates it end to end, so a truncated or foreign file is
+ * rejected before anything is written.
+ */
+@Component
+@RequiredArgsConstructor
+public class SnapshotImporter {
+    private static final int PAGE_BATCH_SIZE = 200;
+    private static final int ROW_BATCH_SIZE = 5_000;
+
+    private static final String INSERT_SITE =
+            "INSERT INTO site (id, status, status_time, last_error, url, name) VALUES (?, ?, ?, ?, ?, ?)";
+    private static final String INSERT_PAGE =
+            "INSERT INTO page (id, site_id, path, code, content, fingerprint, duplicate_of) VALUES (?, ?, ?, ?, ?, ?, ?)";
+    private static final String INSERT_PAGE_CONTENT = "INSERT INTO page_content (page_id, data) VALUES (?, ?)";
+    private static final String INSERT_LEMMA = "INSERT INTO lemma (id, site_id, lemma, frequency) VALUES (?, ?, ?, ?)";
+    private static final String INSERT_PAGE_LINKS = "INSERT INTO page_links (page_id, site_id, targets) VALUES (?, ?, ?)";
+    private static final String INSERT_SITE_RANK = "INSERT INTO site_rank (site_id, computed_at, scores) VALUES (?, ?, ?)";
+    private static final String INSERT_PAGE_HISTORY =
+            "INSERT INTO page_history (url_hash, site_url, path, content_hash, visits, changes, observed_seconds, " +
+            "failures, change_rate, last_fetched, next_fetch) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final PostingStore postingStore;
+
+    public SnapshotCounts validate(Path file) throws IOException {
+        return read(file, null);
+    }
+
+    public SnapshotCounts load(Path file) throws IOException {
+        Batches batches = new Batches();
+        SnapshotCounts counts = read(file, batches);
+        batches.flushAll();
+        return counts;
+    }
+
+    private SnapshotCounts read(Path file, Batches batches) throws IOException {
+        try (SnapshotInput input = new SnapshotInput(file)) {
+            if (input.readInt() != SnapshotFormat.MAGIC) {
+                throw new IOException("Not a snapshot file");
+            }
+            int version = input.readInt();
+            if (version != SnapshotFormat.VERSION) {
+                throw new IOException("Unsupported snapshot version " + version);
+            }
+            SnapshotCounts counts = readRecords(input, batches);
+            SnapshotCounts expected = new SnapshotCounts(input.readVarint(), input.readVarint(), input.readVarint(),
+                    input.readVarint(), input.readVarint(), input.readVarint(), input.readVarint());
+            if (!counts.matches(expected)) {
+                throw new IOException("Snapshot record counts do not match its footer");
+            }
+            return counts;
+        }
+    }
+
+    private SnapshotCounts readRecords(SnapshotInput input, Batches batches) throws IOException {
+        SnapshotCounts counts = new SnapshotCounts();
+        int lastPageId = 0;
+        int lastLemmaId = 0;
+        while (true) {
+            int tag = input.readVarintInt();
+            switch (tag) {
+                case SnapshotFormat.END:
+                    return counts;
+                case SnapshotFormat.SITE:
+                    Object[] site = {input.readVarintInt(), input.readString(), readTimestamp(input),
+                            input.readString(), input.readString(), input.readString()};
+                    add(batches, INSERT_SITE, site, 1);
+                    counts.addSite();
+                    break;
+                case SnapshotFormat.PAGE:
+                    readPage(input, batches);
+                    counts.addPage();
+                    break;
+                case SnapshotFormat.LEMMA:
+                    Object[] lemma = {input.readVarintInt(), input.readVarintInt(), input.readString(), input.readVarintInt()};
+                    add(batches, INSERT_LEMMA, lemma, ROW_BATCH_SIZE);
+                    counts.addLemma();
+                    break;
+                case SnapshotFormat.POSTING:
+                    int pageGap = input.readVarintInt();
+                    int lemmaValue = input.readVarintInt();
+                    lastLemmaId = pageGap == 0 ? lastLemmaId + lemmaValue : lemmaValue;
+                    lastPageId += pageGap;
+                    Posting posting = new Posting(lastPageId, lastLemmaId, input.readFloat(), input.readBytes());
+                    if (batches != null) {
+                        batches.addPosting(posting);
+                    }
+                    counts.addPosting();
+                    break;
+                case SnapshotFormat.PAGE_LINKS:
+                    Object[] links = {input.readVarintInt(), input.readVarintInt(), input.readBytes()};
+                    add(batches, INSERT_PAGE_LINKS, links, PAGE_BATCH_SIZE);
+                    counts.addPageLinks();
+                    break;
+                case SnapshotFormat.SITE_RANK:
+                    Object[] rank = {input.readVarintInt(), readTimestamp(input), input.readBytes()};
+                    add(batches, INSERT_SITE_RANK, rank, 1);
+                    counts.addSiteRank();
+                    break;
+                case SnapshotFormat.PAGE_HISTORY:
+                    Object[] history = {input.readLong(), input.readString(), input.readString(), input.readLong(),
+                            input.readVarintInt(), input.readVarintInt(), input.readVarint(), input.readVarintInt(),
+                            input.readDouble(), readTimestamp(input), readTimestamp(input)};
+                    add(batches, INSERT_PAGE_HISTORY, history, ROW_BATCH_SIZE);
+                    counts.addPageHistory();
+                    break;
+                default:
+                    throw new IOException("Unknown snapshot record " + tag);
+            }
+        }
+    }
+
+    private Timestamp readTimestamp(SnapshotInput input) throws IOException {
+        Timestamp timestamp = new Timestamp(input.readLong());
+        timestamp.setNanos(input.readVarintInt());
+        return timestamp;
+    }
+
+    private void readPage(SnapshotInput input, Batches batches) throws IOException {
+        int id = input.readVarintInt();
+        int siteId = input.readVarintInt();
+        String path = input.readString();
+        int code = input.readVarintInt();
+        String content = input.readString();
+        boolean hasFingerprint = input.readVarint() != 0;
+        long fingerprint = input.readLong();
+        long duplicateOf = input.readVarint();
+        byte[] data = input.readBytes();
+        Object[] page = {id, siteId, path, code, content, hasFingerprint ? fingerprint : null,
+                duplicateOf == 0 ? null : (int) (duplicateOf - 1)};
+        add(batches, INSERT_PAGE, page, PAGE_BATCH_SIZE);
+        if (data != null) {
+            add(batches, INSERT_PAGE_CONTENT, new Object[]{id, data}, PAGE_BATCH_SIZE);
+        }
+    }
+
+    private void add(Batches batches, String sql, Object[] row, int batchSize) {
+        if (batches != null) {
+            batches.add(sql, row, batchSize);
+        }
+    }
+
+    /**
+     * Pending rows per statement. Rows reference earlier tables only, so flushing every earlier
+     * statement before a batch keeps foreign keys satisfied. Postings go to the posting store
+     * after all pending database rows, which include their pages and lemmas.
+     */
+    private class Batches {
+        private final List<String> statements = new ArrayList<>();
+        private final List<List<Object[]>> rows = new ArrayList<>();
+        private final List<Posting> postings = new ArrayList<>();
+
+        void addPosting(Posting posting) {
+            postings.add(posting);
+            if (postings.size() >= ROW_BATCH_SIZE) {
+                flushPostings();
+            }
+        }
+
+        private void flushPostings() {
+            flushUpTo(statements.size() - 1);
+            postingStore.insert(postings);
+            postings.clear();
+        }
+
+        void add(String sql, Object[] row, int batchSize) {
+            int index = statements.indexOf(sql);
+            if (index < 0) {
+                statements.add(sql);
+                rows.add(new ArrayList<>());
+                index = statements.size() - 1;
+            }
+            rows.get(index).add(row);
+            if (rows.get(index).size() >= batchSize) {
+                flushUpTo(index);
+            }
+        }
+
+        void flushAll() {
+            flushPostings();
+            flushUpTo(statements.size() - 1);
+        }
+
+        private void flushUpTo(int last) {
+            for (int i = 0; i <= last; i++) {
+                if (!rows.get(i).isEmpty()) {
+                    jdbcTemplate.batchUpdate(statements.get(i), rows.get(i));
+                    rows.get(i).clear();
+                }
+            }
+        }
+    }
+}
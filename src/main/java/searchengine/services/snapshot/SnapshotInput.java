@@ -0,0 +1,113 @@
+package searchengine.services.snapshot;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads a snapshot file through memory-mapped windows, so loading costs no read syscalls or
+ * buffer copies and files larger than one mapping are supported.
+ */
+class SnapshotInput implements Closeable {
+    private static final long WINDOW_SIZE = 256L << 20;
+
+    private final FileChannel channel;
+    private final long size;
+    private MappedByteBuffer window;
+    private long windowStart;
+
+    SnapshotInput(Path file) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        this.size = channel.size();
+        map(0);
+    }
+
+    int readInt() throws IOException {
+        require(Integer.BYTES);
+        return window.getInt();
+    }
+
+    long readLong() throws IOException {
+        require(Long.BYTES);
+        return window.getLong();
+    }
+
+    float readFloat() throws IOException {
+        require(Float.BYTES);
+        return window.getFloat();
+    }
+
+    double readDouble() throws IOException {
+        require(Double.BYTES);
+        return window.getDouble();
+    }
+
+    long readVarint() throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            require(1);
+            int b = window.get();
+            value |= (long) (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint at offset " + position());
+    }
+
+    int readVarintInt() throws IOException {
+        long value = readVarint();
+        if (value > Integer.MAX_VALUE) {
+            throw new IOException("Value out of range at offset " + position());
+        }
+        return (int) value;
+    }
+
+    byte[] readBytes() throws IOException {
+        int length = readVarintInt();
+        if (length == 0) {
+            return null;
+        }
+        byte[] value = new byte[length - 1];
+        require(value.length);
+        window.get(value);
+        return value;
+    }
+
+    String readString() throws IOException {
+        byte[] value = readBytes();
+        return value == null ? null : new String(value, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private long position() {
+        return windowStart + window.position();
+    }
+
+    private void require(int bytes) throws IOException {
+        if (window.remaining() >= bytes) {
+            return;
+        }
+        long position = position();
+        if (position + bytes > size) {
+            throw new IOException("Snapshot is truncated at offset " + position);
+        }
+        if (bytes > WINDOW_SIZE) {
+            throw new IOException("Record of " + bytes + " bytes at offset " + position + " is too large");
+        }
+        map(position);
+    }
+
+    private void map(long position) throws IOException {
+        windowStart = position;
+        window = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(WINDOW_SIZE, size - position));
+    }
+}
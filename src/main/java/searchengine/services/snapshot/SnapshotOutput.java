@@ -0,0 +1,60 @@
+package searchengine.services.snapshot;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/** Sequential writer of snapshot primitives. */
+class SnapshotOutput {
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final DataOutputStream output;
+
+    SnapshotOutput(OutputStream output) {
+        this.output = new DataOutputStream(new BufferedOutputStream(output, BUFFER_SIZE));
+    }
+
+    void writeInt(int value) throws IOException {
+        output.writeInt(value);
+    }
+
+    void writeLong(long value) throws IOException {
+        output.writeLong(value);
+    }
+
+    void writeFloat(float value) throws IOException {
+        output.writeFloat(value);
+    }
+
+    void writeDouble(double value) throws IOException {
+        output.writeDouble(value);
+    }
+
+    void writeVarint(long value) throws IOException {
+        while ((value & ~0x7fL) != 0) {
+            output.write((int) ((value & 0x7f) | 0x80));
+            value >>>= 7;
+        }
+        output.write((int) value);
+    }
+
+    /** Length + 1 followed by the bytes, so that 0 stands for null. */
+    void writeBytes(byte[] value) throws IOException {
+        if (value == null) {
+            writeVarint(0);
+            return;
+        }
+        writeVarint(value.length + 1L);
+        output.write(value);
+    }
+
+    void writeString(String value) throws IOException {
+        writeBytes(value == null ? null : value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    void flush() throws IOException {
+        output.flush();
+    }
+}
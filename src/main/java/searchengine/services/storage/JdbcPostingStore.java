@@ -0,0 +1,92 @@
+package searchengine.services.storage;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import searchengine.repository.IndexRepository;
+import searchengine.repository.PagePosting;
+import searchengine.repository.PagePositions;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Postings in the search_index table. Inserts go as JDBC batches, since Hibernate would send
+ * one statement per IDENTITY row; everything joins the surrounding transaction.
+ */
+@RequiredArgsConstructor
+public class JdbcPostingStore implements PostingStore {
+    private static final String INSERT_POSTING =
+            "INSERT INTO search_index (page_id, lemma_id, rank_value, positions) VALUES (?, ?, ?, ?)";
+
+    private final IndexRepository indexRepository;
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public List<Integer> findLemmaIds(int pageId) {
+        return indexRepository.findLemmaIdsByPageId(pageId);
+    }
+
+    @Override
+    public List<PagePosting> findPostingsByRank(int lemmaId, int offset, int limit) {
+        // LIMIT with OFFSET rather than a (rank, page) keyset: FLOAT columns do not compare equal
+        // to the bound float reliably, and the skipped entries come from the covering lemma_rank_index
+        return jdbcTemplate.query(
+                "SELECT page_id, rank_value FROM search_index WHERE lemma_id = ? " +
+                "ORDER BY rank_value DESC, page_id DESC LIMIT ? OFFSET ?",
+                (rs, row) -> new Posting(rs.getInt("page_id"), lemmaId, rs.getFloat("rank_value"), null),
+                lemmaId, limit, offset);
+    }
+
+    @Override
+    public List<PagePosting> findPostings(List<Integer> pageIds, List<Integer> lemmaIds) {
+        return indexRepository.findPostingsByPageIdsAndLemmaIds(pageIds, lemmaIds);
+    }
+
+    @Override
+    public List<PagePositions> findPositions(List<Integer> lemmaIds) {
+        return indexRepository.findPositionsByLemmaIds(lemmaIds);
+    }
+
+    @Override
+    public List<Integer> findPageIds(List<Integer> lemmaIds) {
+        return indexRepository.findPageIdsByLemmaIds(lemmaIds);
+    }
+
+    @Override
+    public List<Posting> scan(int afterPageId, int afterLemmaId, int limit) {
+        return jdbcTemplate.query(
+                "SELECT page_id, lemma_id, rank_value, positions FROM search_index " +
+                "WHERE (page_id, lemma_id) > (?, ?) ORDER BY page_id, lemma_id LIMIT ?",
+                (rs, row) -> new Posting(rs.getInt("page_id"), rs.getInt("lemma_id"),
+                        rs.getFloat("rank_value"), rs.getBytes("positions")),
+                afterPageId, afterLemmaId, limit);
+    }
+
+    @Override
+    public void insert(List<Posting> postings) {
+        if (postings.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(INSERT_POSTING, postings.stream()
+                .map(posting -> new Object[]{posting.getPageId(), posting.getLemmaId(),
+                        posting.getRank(), posting.getPositions()})
+                .collect(Collectors.toList()));
+    }
+
+    @Override
+    public void deletePage(int pageId) {
+        indexRepository.deleteByPageId(pageId);
+    }
+
+    @Override
+    public int deletePages(int siteId, List<Integer> pageIds) {
+        if (pageIds.isEmpty()) {
+            return 0;
+        }
+        return indexRepository.deleteBySiteIdAndPageIdBetween(siteId, pageIds.get(0), pageIds.get(pageIds.size() - 1));
+    }
+
+    @Override
+    public void close() {
+    }
+}
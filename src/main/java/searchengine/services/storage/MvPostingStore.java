@@ -0,0 +1,304 @@
+package searchengine.services.storage;
+
+import lombok.extern.slf4j.Slf4j;
+import org.h2.mvstore.Cursor;
+import org.h2.mvstore.MVMap;
+import org.h2.mvstore.MVStore;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import searchengine.config.PostingStoreSettings;
+import searchengine.repository.PagePosting;
+import searchengine.repository.PagePositions;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * Postings in a local H2 MVStore file, kept in three ordered maps: by lemma ((lemma id, page id)
+ * to rank and positions) for phrase matching and random access, by rank ((lemma id, falling
+ * rank), falling page id) for top-k selection and page id lists, and by page ((page id, lemma id))
+ * for re-indexing, deletion and snapshots. Reads and writes are map operations without SQL or
+ * entity mapping. The store commits to the file in the background; posting writes made inside a
+ * database transaction that rolls back are undone.
+ */
+@Slf4j
+public class MvPostingStore implements PostingStore {
+    private static final byte NO_POSITIONS = 0;
+    private static final byte WITH_POSITIONS = 1;
+
+    private final MVStore store;
+    private final MVMap<Long, byte[]> byLemma;
+    private final MVMap<Long, Boolean> byPage;
+    private final MVMap<long[], Boolean> byRank;
+
+    public MvPostingStore(PostingStoreSettings settings) {
+        Path file = Path.of(settings.getFile()).toAbsolutePath();
+        try {
+            Files.createDirectories(file.getParent());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot create the directory of " + file, e);
+        }
+        this.store = new MVStore.Builder()
+                .fileName(file.toString())
+                .cacheSize(settings.getCacheSizeMb())
+                .compress()
+                .open();
+        this.byLemma = store.openMap("postings_by_lemma");
+        this.byPage = store.openMap("postings_by_page");
+        this.byRank = store.openMap("postings_by_rank");
+        if (byRank.isEmpty() && !byLemma.isEmpty()) {
+            buildRankMap();
+        }
+        log.info("Posting store {} opened: {} postings", file, byLemma.sizeAsLong());
+    }
+
+    @Override
+    public List<Integer> findLemmaIds(int pageId) {
+        List<Integer> lemmaIds = new ArrayList<>();
+        Cursor<Long, Boolean> cursor = byPage.cursor(key(pageId, 0), key(pageId, Integer.MAX_VALUE), false);
+        while (cursor.hasNext()) {
+            lemmaIds.add(low(cursor.next()));
+        }
+        return lemmaIds;
+    }
+
+    @Override
+    public List<PagePosting> findPostingsByRank(int lemmaId, int offset, int limit) {
+        List<PagePosting> postings = new ArrayList<>(Math.min(limit, 10_000));
+        long first = byRank.getKeyIndex(new long[]{key(lemmaId, 0)});
+        long start = (first < 0 ? -first - 1 : first) + offset;
+        if (start >= byRank.sizeAsLong()) {
+            return postings;
+        }
+        Iterator<long[]> keys = byRank.keyIterator(byRank.getKey(start));
+        while (postings.size() < limit && keys.hasNext()) {
+            long[] rankKey = keys.next();
+            if (high(rankKey[0]) != lemmaId) {
+                break;
+            }
+            postings.add(new Posting(descending((int) rankKey[1]), lemmaId,
+                    Float.intBitsToFloat(descending(low(rankKey[0]))), null));
+        }
+        return postings;
+    }
+
+    @Override
+    public List<PagePosting> findPostings(List<Integer> pageIds, List<Integer> lemmaIds) {
+        List<PagePosting> postings = new ArrayList<>();
+        for (int pageId : pageIds) {
+            for (int lemmaId : lemmaIds) {
+                byte[] value = byLemma.get(key(lemmaId, pageId));
+                if (value != null) {
+                    postings.add(new Posting(pageId, lemmaId, rank(value), null));
+                }
+            }
+        }
+        return postings;
+    }
+
+    @Override
+    public List<PagePositions> findPositions(List<Integer> lemmaIds) {
+        List<PagePositions> postings = new ArrayList<>();
+        for (int lemmaId : lemmaIds) {
+            readLemma(lemmaId, postings::add);
+        }
+        postings.sort(Comparator.comparingInt(PagePositions::getPageId));
+        return postings;
+    }
+
+    @Override
+    public List<Integer> findPageIds(List<Integer> lemmaIds) {
+        // the rank map has no values to read, only keys
+        BitSet pageIds = new BitSet();
+        for (int lemmaId : lemmaIds) {
+            Iterator<long[]> keys = byRank.keyIterator(new long[]{key(lemmaId, 0)});
+            while (keys.hasNext()) {
+                long[] rankKey = keys.next();
+                if (high(rankKey[0]) != lemmaId) {
+                    break;
+                }
+                pageIds.set(descending((int) rankKey[1]));
+            }
+        }
+        List<Integer> result = new ArrayList<>(pageIds.cardinality());
+        pageIds.stream().forEach(result::add);
+        return result;
+    }
+
+    @Override
+    public List<Posting> scan(int afterPageId, int afterLemmaId, int limit) {
+        List<Posting> postings = new ArrayList<>(Math.min(limit, 10_000));
+        Cursor<Long, Boolean> cursor = byPage.cursor(key(afterPageId, afterLemmaId) + 1);
+        while (postings.size() < limit && cursor.hasNext()) {
+            long pageKey = cursor.next();
+            int pageId = high(pageKey);
+            int lemmaId = low(pageKey);
+            byte[] value = byLemma.get(key(lemmaId, pageId));
+            if (value != null) {
+                postings.add(decode(pageId, lemmaId, value));
+            }
+        }
+        return postings;
+    }
+
+    @Override
+    public void insert(List<Posting> postings) {
+        Undo undo = undo();
+        for (Posting posting : postings) {
+            byLemma.put(key(posting.getLemmaId(), posting.getPageId()), encode(posting));
+            byPage.put(key(posting.getPageId(), posting.getLemmaId()), Boolean.TRUE);
+            byRank.put(rankKey(posting.getLemmaId(), posting.getPageId(), posting.getRank()), Boolean.TRUE);
+            if (undo != null) {
+                undo.insertedPages.add(posting.getPageId());
+            }
+        }
+    }
+
+    @Override
+    public void deletePage(int pageId) {
+        remove(pageId, undo());
+    }
+
+    @Override
+    public int deletePages(int siteId, List<Integer> pageIds) {
+        Undo undo = undo();
+        int deleted = 0;
+        for (int pageId : pageIds) {
+            deleted += remove(pageId, undo);
+        }
+        return deleted;
+    }
+
+    @Override
+    public void close() {
+        store.close();
+    }
+
+    /** Fills the rank map of a store written before it existed. */
+    private void buildRankMap() {
+        log.info("Building the rank order of {} postings", byLemma.sizeAsLong());
+        Cursor<Long, byte[]> cursor = byLemma.cursor(null);
+        while (cursor.hasNext()) {
+            long lemmaKey = cursor.next();
+            byRank.put(rankKey(high(lemmaKey), low(lemmaKey), rank(cursor.getValue())), Boolean.TRUE);
+        }
+        store.commit();
+    }
+
+    private void readLemma(int lemmaId, Consumer<Posting> consumer) {
+        Cursor<Long, byte[]> cursor = byLemma.cursor(key(lemmaId, 0), key(lemmaId, Integer.MAX_VALUE), false);
+        while (cursor.hasNext()) {
+            long lemmaKey = cursor.next();
+            consumer.accept(decode(low(lemmaKey), lemmaId, cursor.getValue()));
+        }
+    }
+
+    private int remove(int pageId, Undo undo) {
+        List<Integer> lemmaIds = findLemmaIds(pageId);
+        boolean record = undo != null && !undo.insertedPages.contains(pageId);
+        for (int lemmaId : lemmaIds) {
+            byte[] removed = byLemma.remove(key(lemmaId, pageId));
+            byPage.remove(key(pageId, lemmaId));
+            if (removed != null) {
+                byRank.remove(rankKey(lemmaId, pageId, rank(removed)));
+            }
+            if (record && removed != null) {
+                undo.removed.putIfAbsent(key(lemmaId, pageId), removed);
+            }
+        }
+        return lemmaIds.size();
+    }
+
+    /** The undo log of the current database transaction, or null outside of one. */
+    private Undo undo() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return null;
+        }
+        Undo undo = (Undo) TransactionSynchronizationManager.getResource(this);
+        if (undo == null) {
+            undo = new Undo();
+            TransactionSynchronizationManager.bindResource(this, undo);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    Undo finished = (Undo) TransactionSynchronizationManager.unbindResourceIfPossible(MvPostingStore.this);
+                    if (finished != null && status != STATUS_COMMITTED) {
+                        rollBack(finished);
+                    }
+                }
+            });
+        }
+        return undo;
+    }
+
+    private void rollBack(Undo undo) {
+        undo.insertedPages.forEach(pageId -> remove(pageId, null));
+        undo.removed.forEach((lemmaKey, value) -> {
+            byLemma.put(lemmaKey, value);
+            byPage.put(key(low(lemmaKey), high(lemmaKey)), Boolean.TRUE);
+            byRank.put(rankKey(high(lemmaKey), low(lemmaKey), rank(value)), Boolean.TRUE);
+        });
+        log.debug("Posting writes of a rolled back transaction undone: {} pages, {} postings restored",
+                undo.insertedPages.size(), undo.removed.size());
+    }
+
+    private static long key(int high, int low) {
+        return (long) high << 32 | (low & 0xffffffffL);
+    }
+
+    private static int high(long key) {
+        return (int) (key >>> 32);
+    }
+
+    private static int low(long key) {
+        return (int) key;
+    }
+
+    /**
+     * Ranks are not negative, so the bits of the float order like its value; subtracting them
+     * and the page id from the largest int turns the ascending key order into a descending one.
+     */
+    private static long[] rankKey(int lemmaId, int pageId, float rank) {
+        return new long[]{key(lemmaId, descending(Float.floatToIntBits(rank))), descending(pageId)};
+    }
+
+    private static int descending(int value) {
+        return Integer.MAX_VALUE - value;
+    }
+
+    private static float rank(byte[] value) {
+        return ByteBuffer.wrap(value).getFloat();
+    }
+
+    private static byte[] encode(Posting posting) {
+        byte[] positions = posting.getPositions();
+        ByteBuffer buffer = ByteBuffer.allocate(Float.BYTES + 1 + (positions == null ? 0 : positions.length));
+        buffer.putFloat(posting.getRank());
+        buffer.put(positions == null ? NO_POSITIONS : WITH_POSITIONS);
+        if (positions != null) {
+            buffer.put(positions);
+        }
+        return buffer.array();
+    }
+
+    private static Posting decode(int pageId, int lemmaId, byte[] value) {
+        ByteBuffer buffer = ByteBuffer.wrap(value);
+        float rank = buffer.getFloat();
+        byte[] positions = null;
+        if (buffer.get() == WITH_POSITIONS) {
+            positions = new byte[buffer.remaining()];
+            buffer.get(positions);
+        }
+        return new Posting(pageId, lemmaId, rank, positions);
+    }
+
+    private static class Undo {
+        private final Set<Integer> insertedPages = new HashSet<>();
+        private final Map<Long, byte[]> removed = new HashMap<>();
+    }
+}
@@ -0,0 +1,17 @@
+package searchengine.services.storage;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import searchengine.repository.PagePosting;
+import searchengine.repository.PagePositions;
+
+/** One row of the inverted index: a lemma on a page with its rank and encoded word positions. */
+@Getter
+@RequiredArgsConstructor
+public class Posting implements PagePosting, PagePositions {
+    private final int pageId;
+    private final int lemmaId;
+    private final float rank;
+    /** Gap-encoded by PositionCodec; null when positions are not recorded. */
+    private final byte[] positions;
+}
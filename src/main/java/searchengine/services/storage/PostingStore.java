@@ -0,0 +1,50 @@
+package searchengine.services.storage;
+
+import searchengine.repository.PagePosting;
+import searchengine.repository.PagePositions;
+
+import java.util.List;
+
+/**
+ * Storage of the postings, the largest and most read part of the index. Sites, pages and
+ * lemmas stay in the database with either implementation. Writes made inside a transaction
+ * are undone when it rolls back.
+ */
+public interface PostingStore extends AutoCloseable {
+    /** Lemma ids of the postings of the page. */
+    List<Integer> findLemmaIds(int pageId);
+
+    /**
+     * Postings of the lemma by rank descending, ties by page id descending, without the first
+     * {@code offset} of them; top-k selection reads them block by block.
+     */
+    List<PagePosting> findPostingsByRank(int lemmaId, int offset, int limit);
+
+    /** Rank of the postings of the lemmas on the pages, in no particular order. */
+    List<PagePosting> findPostings(List<Integer> pageIds, List<Integer> lemmaIds);
+
+    /** Positions of every posting of the lemmas, ordered by page id. */
+    List<PagePositions> findPositions(List<Integer> lemmaIds);
+
+    /** Distinct ids of the pages with any of the lemmas, ascending. */
+    List<Integer> findPageIds(List<Integer> lemmaIds);
+
+    /**
+     * Postings ordered by page and lemma id, starting after the given pair; an empty list
+     * when there are no more.
+     */
+    List<Posting> scan(int afterPageId, int afterLemmaId, int limit);
+
+    void insert(List<Posting> postings);
+
+    void deletePage(int pageId);
+
+    /**
+     * @param pageIds ascending ids of pages of the site
+     * @return the number of postings deleted
+     */
+    int deletePages(int siteId, List<Integer> pageIds);
+
+    @Override
+    void close();
+}